@@ -0,0 +1,12 @@
+package com.sky.exception;
+
+/**
+ * 分页游标无效
+ */
+public class PageCursorInvalidException extends BaseException {
+
+    public PageCursorInvalidException(String msg) {
+        super(msg);
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.http-client")
+@Data
+public class HttpClientProperties {
+
+    /**
+     * 连接池最大连接数
+     */
+    private int maxTotal = 200;
+
+    /**
+     * 每个目标地址（如微信接口）的最大连接数
+     */
+    private int maxPerRoute = 50;
+
+    /**
+     * 建立连接、从连接池获取连接、读取数据的超时时间（毫秒）
+     */
+    private int timeoutMillis = 5000;
+
+    /**
+     * 连接空闲时最长保持时间（毫秒）
+     */
+    private long keepAliveMillis = 30000;
+
+    /**
+     * 关闭空闲超过该时间的连接（毫秒）
+     */
+    private long idleEvictMillis = 30000;
+
+}
@@ -23,4 +23,20 @@ public class JwtProperties {
     private long userTtl;
     private String userTokenName;
 
+    /**
+     * 已校验令牌缓存的最大数量
+     */
+    private long tokenCacheSize = 100000;
+
+    /**
+     * 已校验令牌在缓存中的最长保留时间(毫秒)，到期后重新校验并查询注销记录，
+     * 没有收到注销广播的节点最多在这段时间内继续接受已注销的令牌
+     */
+    private long tokenCacheTtl = 60000;
+
+    /**
+     * 各节点之间广播令牌注销的redis频道
+     */
+    private String revokedChannel = "sky:jwt:revoked";
+
 }
@@ -0,0 +1,42 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cache.menu")
+@Data
+public class MenuCacheProperties {
+
+    /**
+     * 本地缓存最多保存的key数量
+     */
+    private long maximumSize = 1000;
+
+    /**
+     * 本地缓存写入后的过期时间(秒)
+     */
+    private long expireSeconds = 60;
+
+    /**
+     * redis中缓存的过期时间(秒)，管理端修改时会主动清理，过期时间只是兜底
+     */
+    private long redisExpireSeconds = 3600;
+
+    /**
+     * 各节点之间广播缓存失效消息的redis频道
+     */
+    private String channel = "sky:cache:menu:evict";
+
+    /**
+     * 缓存重建时redis分布式锁的过期时间(毫秒)，应大于一次数据库查询的耗时
+     */
+    private long lockMillis = 3000;
+
+    /**
+     * 未抢到锁的节点等待其它节点重建完成通知的最长时间(毫秒)，超时后自行查询数据库
+     */
+    private long lockWaitMillis = 2000;
+
+}
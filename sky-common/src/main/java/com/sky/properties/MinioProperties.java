@@ -12,4 +12,8 @@ public class MinioProperties {
     private String accessKey;
     private String secretKey;
     private String bucketName;
+    /**
+     * 分片上传时每个分片的大小（字节），文件超过该大小时分片上传，不小于5MB
+     */
+    private long partSize = 10 * 1024 * 1024;
 }
@@ -0,0 +1,60 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order")
+@Data
+public class OrderProperties {
+
+    /**
+     * 当前节点的机器id(0~1023)，生成订单号使用，集群中每个节点必须不同
+     * 不配置时启动时从redis租用一个未被占用的机器id
+     */
+    private Long workerId;
+
+    /**
+     * 租用机器id的租约时间(秒)，定时续期，节点无法连接redis超过该时间后租约失效
+     */
+    private int workerLeaseSeconds = 600;
+
+    /**
+     * 下单后未支付自动取消的时间(分钟)
+     */
+    private int payTimeoutMinutes = 15;
+
+    /**
+     * 保存待取消订单的redis有序集合，member为订单id，score为取消时间(毫秒)
+     */
+    private String timeoutKey = "sky:order:timeout";
+
+    /**
+     * 每批取消的订单数量
+     */
+    private int timeoutBatchSize = 500;
+
+    /**
+     * 每次从redis预加载到内存时间轮的时间范围(秒)，必须小于时间轮的一圈
+     */
+    private int timeoutLoadAheadSeconds = 600;
+
+    /**
+     * 批量修改订单状态时每批修改的订单数量，每批单独提交，避免长时间锁表
+     */
+    private int bulkUpdateBatchSize = 500;
+
+    /**
+     * 每份菜品、套餐的打包费(元)
+     */
+    private int packFeePerItem = 1;
+
+    /**
+     * 每单的配送费(元)
+     */
+    private BigDecimal deliveryFee = new BigDecimal("6");
+
+}
@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cache.product")
+@Data
+public class ProductCacheProperties {
+
+    /**
+     * 本地缓存最多保存的商品数量
+     */
+    private long maximumSize = 10000;
+
+    /**
+     * 本地缓存写入后的过期时间(秒)，广播消息丢失时的兜底
+     */
+    private long expireSeconds = 1800;
+
+    /**
+     * 各节点之间广播商品缓存失效消息的redis频道
+     */
+    private String channel = "sky:cache:product:evict";
+
+}
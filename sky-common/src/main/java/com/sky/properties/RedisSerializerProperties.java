@@ -0,0 +1,22 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.redis.serializer")
+@Data
+public class RedisSerializerProperties {
+
+    /**
+     * redis value的序列化方式：json 或 jdk
+     */
+    private String type = "json";
+
+    /**
+     * 是否兼容读取旧的jdk序列化数据，切换序列化方式期间需要开启
+     */
+    private boolean readJdk = true;
+
+}
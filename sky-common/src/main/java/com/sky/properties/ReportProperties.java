@@ -0,0 +1,57 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.report")
+@Data
+public class ReportProperties {
+
+    /**
+     * 每晚重新计算最近多少天的每日汇总数据，覆盖订单完成、取消等状态变化的延迟
+     */
+    private int rebuildDays = 7;
+
+    /**
+     * 导出运营数据报表时未指定日期范围，默认导出最近多少天
+     */
+    private int exportDefaultDays = 30;
+
+    /**
+     * 导出时每次读取多少天的汇总数据，分段读取、逐行写出，内存占用与日期范围无关
+     */
+    private int exportChunkDays = 31;
+
+    /**
+     * 一次最多导出多少天，超出时拒绝导出
+     */
+    private int exportMaxDays = 366;
+
+    /**
+     * 营业额、用户、订单统计和销量排名一次最多查询多少天，超出时拒绝查询
+     */
+    private int statisticsMaxDays = 366;
+
+    /**
+     * 每日商品销量排名（redis有序集合）的key前缀
+     */
+    private String salesRankKeyPrefix = "sky:report:sales:";
+
+    /**
+     * 每日商品销量排名保留多少天
+     */
+    private int salesRankRetentionDays = 400;
+
+    /**
+     * 工作台计数器的redis key前缀
+     */
+    private String workspaceKeyPrefix = "sky:workspace:";
+
+    /**
+     * 工作台计数器与数据库核对的间隔（毫秒）
+     */
+    private long workspaceReconcileMillis = 300000;
+
+}
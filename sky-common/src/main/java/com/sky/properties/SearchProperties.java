@@ -0,0 +1,22 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.search")
+@Data
+public class SearchProperties {
+
+    /**
+     * 各节点之间广播菜品变化（需要更新搜索索引）的redis频道
+     */
+    private String dishChannel = "sky:search:dish";
+
+    /**
+     * 按名称分页查询菜品时，搜索命中的菜品数超过该值则退回数据库模糊查询，避免拼接过长的in列表
+     */
+    private int maxPageQueryIds = 1000;
+
+}
@@ -0,0 +1,42 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.shopping-cart")
+@Data
+public class ShoppingCartProperties {
+
+    /**
+     * 购物车存储方式：db（直接读写shopping_cart表）或 redis（redis为准，定时回写shopping_cart表）
+     */
+    private String store = "db";
+
+    /**
+     * redis中购物车数据的key前缀，规则：前缀+用户id
+     */
+    private String keyPrefix = "sky:cart:";
+
+    /**
+     * 购物车有变化、等待回写数据库的用户id集合
+     */
+    private String dirtyKey = "sky:cart:dirty";
+
+    /**
+     * 回写数据库的间隔(毫秒)
+     */
+    private long flushMillis = 5000;
+
+    /**
+     * 每次回写的最大用户数
+     */
+    private int flushBatchSize = 200;
+
+    /**
+     * 回写一个用户购物车时持有的锁的过期时间(秒)，同一用户同时只有一个节点回写
+     */
+    private long flushLockSeconds = 60;
+
+}
@@ -0,0 +1,34 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.thumbnail")
+@Data
+public class ThumbnailProperties {
+
+    /**
+     * 小图、中图的长边像素数
+     */
+    private int smallSize = 200;
+    private int mediumSize = 480;
+
+    /**
+     * JPEG压缩质量，0~1
+     */
+    private float quality = 0.8f;
+
+    /**
+     * 原图像素数超过该值时不生成缩略图
+     */
+    private long maxPixels = 40000000;
+
+    /**
+     * 生成缩略图的线程数和队列容量，队列满时跳过，前端使用原图
+     */
+    private int threads = 2;
+    private int queueCapacity = 200;
+
+}
@@ -0,0 +1,31 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.user-login")
+@Data
+public class UserLoginProperties {
+
+    /**
+     * 微信登录线程池：核心线程数、最大线程数、队列容量
+     * 线程池和队列都满时由请求线程自己执行
+     */
+    private int corePoolSize = 16;
+    private int maxPoolSize = 64;
+    private int queueCapacity = 2000;
+
+    /**
+     * openid -> 用户id缓存的最大数量和过期时间（分钟）
+     */
+    private long openidCacheSize = 100000;
+    private long openidCacheExpireMinutes = 1440;
+
+    /**
+     * 微信服务接口地址，code换取openid
+     */
+    private String wxLoginUrl = "https://api.weixin.qq.com/sns/jscode2session";
+
+}
@@ -0,0 +1,37 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.websocket")
+@Data
+public class WebSocketProperties {
+
+    /**
+     * 各节点之间广播推送消息的redis频道
+     */
+    private String channel = "sky:ws:push";
+
+    /**
+     * 每个连接待发送消息队列的容量，队列满时丢弃最早的消息
+     */
+    private int sendQueueCapacity = 256;
+
+    /**
+     * 连续丢弃多少条消息后断开连接（客户端处理过慢或网络不通），客户端重连后重新拉取数据
+     */
+    private int maxDroppedMessages = 1024;
+
+    /**
+     * 服务端发送心跳的间隔（毫秒）
+     */
+    private long heartbeatMillis = 30000;
+
+    /**
+     * 连接空闲多久（没有收到任何数据，包括心跳回应）后断开（毫秒）
+     */
+    private long maxIdleMillis = 90000;
+
+}
@@ -0,0 +1,87 @@
+package com.sky.result;
+
+import com.sky.constant.MessageConstant;
+import com.sky.exception.PageCursorInvalidException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页（按create_time、id倒序）的位置：上一页最后一条记录的创建时间和id
+ * 对外是不透明的base64字符串，下一页查询 (create_time, id) 小于该位置的记录，
+ * 不需要count查询，也不需要跳过offset行，翻到多深的页耗时都相同
+ */
+@Data
+@AllArgsConstructor
+public class PageCursor {
+
+    //未指定每页记录数时的默认值
+    public static final int DEFAULT_PAGE_SIZE = 10;
+
+    private static final String SEPARATOR = "_";
+
+    private LocalDateTime createTime;
+
+    private Long id;
+
+    /**
+     * 生成游标字符串
+     * @param createTime
+     * @param id
+     * @return
+     */
+    public static String encode(LocalDateTime createTime, Long id) {
+        String raw = createTime + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标字符串，空字符串表示第一页，返回null
+     * @param cursor
+     * @return
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int index = raw.lastIndexOf(SEPARATOR);
+            return new PageCursor(LocalDateTime.parse(raw.substring(0, index)), Long.valueOf(raw.substring(index + 1)));
+        } catch (RuntimeException e) {
+            throw new PageCursorInvalidException(MessageConstant.PAGE_CURSOR_INVALID);
+        }
+    }
+
+    /**
+     * 每页记录数，未指定时使用默认值
+     * @param pageSize
+     * @return
+     */
+    public static int pageSize(int pageSize) {
+        return pageSize > 0 ? pageSize : DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * 封装游标分页结果，rows为多查询1条的结果，多出的1条说明还有下一页
+     * @param rows
+     * @param pageSize
+     * @param createTime
+     * @param id
+     * @return
+     */
+    public static <T> PageResult page(List<T> rows, int pageSize, Function<T, LocalDateTime> createTime, Function<T, Long> id) {
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            T last = rows.get(pageSize - 1);
+            nextCursor = encode(createTime.apply(last), id.apply(last));
+        }
+        return new PageResult(PageResult.TOTAL_NOT_COUNTED, rows, nextCursor);
+    }
+}
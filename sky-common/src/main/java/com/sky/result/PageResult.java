@@ -15,8 +15,18 @@ import java.util.List;
 @NoArgsConstructor
 public class PageResult implements Serializable {
 
+    //不统计总记录数（跳过count查询或游标分页）时total的取值
+    public static final long TOTAL_NOT_COUNTED = -1;
+
     private long total; //总记录数
 
     private List records; //当前页数据集合
 
+    private String nextCursor; //游标分页时下一页的游标，没有下一页时为null
+
+    public PageResult(long total, List records) {
+        this.total = total;
+        this.records = records;
+    }
+
 }
@@ -0,0 +1,26 @@
+package com.sky.utils;
+
+import java.math.BigDecimal;
+
+/**
+ * 修改数据时比较提交的字段与数据库中的字段，只在有变化时才执行update
+ */
+public class ChangeUtil {
+
+    /**
+     * 提交的字段是否与数据库中的不同，未提交（null）的字段不会被修改
+     * @param submitted
+     * @param stored
+     * @return
+     */
+    public static boolean isChanged(Object submitted, Object stored) {
+        if (submitted == null) {
+            return false;
+        }
+        if (submitted instanceof BigDecimal && stored instanceof BigDecimal) {
+            //价格只比较数值，忽略精度
+            return ((BigDecimal) submitted).compareTo((BigDecimal) stored) != 0;
+        }
+        return !submitted.equals(stored);
+    }
+}
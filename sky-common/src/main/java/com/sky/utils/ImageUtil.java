@@ -0,0 +1,142 @@
+package com.sky.utils;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * 图片工具类，生成缩略图
+ * 缩略图统一为JPEG格式，对象名称为原图名称去掉后缀加上“_尺寸.jpg”，可以直接由原图地址推算出缩略图地址
+ * 缩略图是否已生成需要另外记录，推算出的地址不一定存在
+ */
+public class ImageUtil {
+
+    public static final String SMALL = "small";
+    public static final String MEDIUM = "medium";
+
+    public static final String THUMBNAIL_CONTENT_TYPE = "image/jpeg";
+    private static final String THUMBNAIL_EXTENSION = ".jpg";
+
+    /**
+     * 缩略图的对象名称或地址
+     * @param name 原图的对象名称或地址
+     * @param size 尺寸：SMALL、MEDIUM
+     * @return
+     */
+    public static String thumbnailName(String name, String size) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        int dot = name.lastIndexOf('.');
+        String base = dot > name.lastIndexOf('/') ? name.substring(0, dot) : name;
+        return base + "_" + size + THUMBNAIL_EXTENSION;
+    }
+
+    /**
+     * 图片地址中的对象名称（最后一个“/”之后的部分）
+     * @param url
+     * @return
+     */
+    public static String objectName(String url) {
+        if (url == null || url.isEmpty()) {
+            return null;
+        }
+        return url.substring(url.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * 读取图片，先只读取宽高，像素数超过maxPixels时不解码（避免超大尺寸图片占满内存）
+     * @param in
+     * @param maxPixels
+     * @return 不是支持的图片格式或尺寸过大时返回null
+     * @throws IOException
+     */
+    public static BufferedImage read(InputStream in, long maxPixels) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 生成JPEG缩略图，长边缩小到maxSize，原图更小时不放大
+     * 每次最多缩小一半，逐步缩小到目标尺寸，避免一次大比例缩小产生锯齿
+     * @param source
+     * @param maxSize
+     * @param quality JPEG压缩质量，0~1
+     * @return
+     * @throws IOException
+     */
+    public static byte[] thumbnail(BufferedImage source, int maxSize, float quality) throws IOException {
+        double scale = Math.min(1.0, (double) maxSize / Math.max(source.getWidth(), source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage image = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            image = resize(image, width, height);
+        } while (width != targetWidth || height != targetHeight);
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 缩放为RGB图片，JPEG不支持透明，透明部分填充为白色
+     */
+    private static BufferedImage resize(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+}
@@ -4,6 +4,7 @@ import io.minio.errors.ErrorResponseException;
 import io.minio.errors.InsufficientDataException;
 import io.minio.errors.InternalException;
 import io.minio.BucketExistsArgs;
+import io.minio.GetObjectArgs;
 import io.minio.MakeBucketArgs;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
@@ -11,6 +12,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 @Data
 @AllArgsConstructor
 @Slf4j
@@ -20,6 +22,8 @@ public class MinioUtil {
     private final String endpoint;  // 必须声明
     private final MinioClient minioClient;
     private final String bucketName;
+    // 分片上传时每个分片的大小，文件超过该大小时分片上传（不小于5MB）
+    private long partSize = 10 * 1024 * 1024;
 
     /**
      * 带参构造方法（推荐Spring注入使用）
@@ -43,7 +47,26 @@ public class MinioUtil {
      * 文件上传
      */
     public String upload(byte[] bytes, String objectName) {
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(bytes)) {
+        return upload(bytes, null, objectName);
+    }
+
+    /**
+     * 文件上传
+     */
+    public String upload(byte[] bytes, String contentType, String objectName) {
+        return upload(new ByteArrayInputStream(bytes), bytes.length, contentType, objectName);
+    }
+
+    /**
+     * 文件上传，从输入流边读边上传，不在内存中缓存整个文件；超过分片大小时分片上传
+     * @param stream 由调用方关闭
+     * @param size 文件大小，未知时为-1
+     * @param contentType 为空时使用application/octet-stream
+     * @param objectName
+     * @return 文件访问地址
+     */
+    public String upload(InputStream stream, long size, String contentType, String objectName) {
+        try {
             // 自动创建Bucket（按需开启）
             createBucketIfMissing();
 
@@ -52,8 +75,8 @@ public class MinioUtil {
                     PutObjectArgs.builder()
                             .bucket(bucketName)
                             .object(objectName)
-                            .stream(bis, bytes.length, -1)
-                            .contentType("application/octet-stream")
+                            .stream(stream, size, partSize)
+                            .contentType(contentType != null ? contentType : "application/octet-stream")
                             .build());
 
             // 生成访问地址
@@ -66,6 +89,22 @@ public class MinioUtil {
         }
     }
 
+    /**
+     * 文件下载
+     * @param objectName
+     * @return 文件内容，由调用方关闭
+     */
+    public InputStream download(String objectName) {
+        try {
+            return minioClient.getObject(GetObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(objectName)
+                    .build());
+        } catch (Exception e) {
+            throw new RuntimeException("文件下载失败：" + objectName, e);
+        }
+    }
+
     /**
      * 自动创建Bucket（可选）
      */
@@ -0,0 +1,78 @@
+package com.sky.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法id生成器
+ * 64位id = 1位符号位(0) + 41位时间戳(毫秒，相对EPOCH) + 10位机器id + 12位序列号
+ * 单个节点内单调递增，不同机器id的节点之间不会重复，生成过程无锁、无数据库访问
+ */
+public class SnowflakeIdGenerator {
+
+    //起始时间 2024-01-01 00:00:00 (UTC+8)，41位时间戳可以使用约69年
+    public static final long EPOCH = 1704038400000L;
+
+    private static final long WORKER_ID_BITS = 10L;
+    private static final long SEQUENCE_BITS = 12L;
+
+    public static final long MAX_WORKER_ID = ~(-1L << WORKER_ID_BITS);
+    private static final long SEQUENCE_MASK = ~(-1L << SEQUENCE_BITS);
+
+    private static final long WORKER_ID_SHIFT = SEQUENCE_BITS;
+    private static final long TIMESTAMP_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS;
+
+    private volatile long workerId;
+
+    //上一次生成id的状态：高位为相对时间戳，低12位为序列号，通过CAS更新
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(long workerId) {
+        setWorkerId(workerId);
+    }
+
+    /**
+     * 切换机器id，租用的机器id失效、重新租用后调用
+     * @param workerId
+     */
+    public void setWorkerId(long workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("workerId必须在0~" + MAX_WORKER_ID + "之间：" + workerId);
+        }
+        this.workerId = workerId;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * 生成下一个id
+     * 同一毫秒内序列号用完，或者系统时钟回拨时，不阻塞等待，而是沿用上一次的时间戳继续向后分配，保证单调递增
+     * @return
+     */
+    public long nextId() {
+        while (true) {
+            long now = System.currentTimeMillis() - EPOCH;
+            long last = state.get();
+            long lastTimestamp = last >>> SEQUENCE_BITS;
+
+            long next;
+            if (now > lastTimestamp) {
+                //新的毫秒，序列号从0开始
+                next = now << SEQUENCE_BITS;
+            } else if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                //同一毫秒（或时钟回拨），序列号加1
+                next = last + 1;
+            } else {
+                //序列号用完，借用下一毫秒
+                next = (lastTimestamp + 1) << SEQUENCE_BITS;
+            }
+
+            if (state.compareAndSet(last, next)) {
+                return ((next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT)
+                        | (workerId << WORKER_ID_SHIFT)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.sky.dto;
 import lombok.Data;
 
 import java.io.Serializable;
+import java.util.List;
 
 @Data
 public class DishPageQueryDTO implements Serializable {
@@ -19,4 +20,13 @@ public class DishPageQueryDTO implements Serializable {
     //状态 0表示禁用 1表示启用
     private Integer status;
 
+    //按名称搜索时由服务端根据搜索索引填充的菜品id，不为null时代替名称的模糊查询
+    private List<Long> ids;
+
+    //游标分页：不为null时按游标分页，空字符串表示第一页，之后传入上一页返回的nextCursor
+    private String cursor;
+
+    //是否跳过总记录数的统计，跳过时total返回-1
+    private boolean skipCount;
+
 }
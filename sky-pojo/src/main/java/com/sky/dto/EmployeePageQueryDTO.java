@@ -15,4 +15,10 @@ public class EmployeePageQueryDTO implements Serializable {
     //每页显示记录数
     private int pageSize;
 
+    //游标分页：不为null时按游标分页，空字符串表示第一页，之后传入上一页返回的nextCursor
+    private String cursor;
+
+    //是否跳过总记录数的统计，跳过时total返回-1
+    private boolean skipCount;
+
 }
@@ -19,4 +19,10 @@ public class SetmealPageQueryDTO implements Serializable {
     //状态 0表示禁用 1表示启用
     private Integer status;
 
+    //游标分页：不为null时按游标分页，空字符串表示第一页，之后传入上一页返回的nextCursor
+    private String cursor;
+
+    //是否跳过总记录数的统计，跳过时total返回-1
+    private boolean skipCount;
+
 }
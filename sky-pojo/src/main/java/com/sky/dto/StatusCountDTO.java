@@ -0,0 +1,24 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class StatusCountDTO implements Serializable {
+    //状态
+    private Integer status;
+
+    //数量
+    private Integer number;
+
+    //金额合计，只有订单统计时有值
+    private BigDecimal amount;
+}
@@ -26,10 +26,15 @@ public class DishVO implements Serializable {
     private BigDecimal price;
     //图片
     private String image;
+    //小图、中图（缩略图），上传后异步生成，尚未生成时为null，使用原图
+    private String imageSmall;
+    private String imageMedium;
     //描述信息
     private String description;
     //0 停售 1 起售
     private Integer status;
+    //创建时间
+    private LocalDateTime createTime;
     //更新时间
     private LocalDateTime updateTime;
     //分类名称
@@ -36,6 +36,12 @@ public class SetmealVO implements Serializable {
 
     //图片
     private String image;
+    //小图、中图（缩略图），上传后异步生成，尚未生成时为null，使用原图
+    private String imageSmall;
+    private String imageMedium;
+
+    //创建时间
+    private LocalDateTime createTime;
 
     //更新时间
     private LocalDateTime updateTime;
@@ -9,19 +9,31 @@ import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.annotation.Pointcut;
-import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
-import java.lang.reflect.Method;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 /**
  * 自定义切面，实现公共字段自动填充处理逻辑
+ * 每个实体类的setter只在第一次填充时查找一次，生成BiConsumer缓存起来，之后的调用与直接调用setter开销相当
  */
 @Aspect
 @Component
 @Slf4j
 public class AutoFillAspect {
 
+    //实体类 -> 公共字段的setter
+    private final Map<Class<?>, Setters> settersCache = new ConcurrentHashMap<>();
+
     /**
      * 切入点
      */
@@ -30,58 +42,92 @@ public class AutoFillAspect {
 
     /**
      * 前置通知，在通知中进行公共字段的赋值
+     * 参数为实体对象集合时（批量插入、批量修改），为集合中的每个对象赋值
      */
-    @Before("autoFillPointCut()")
-    public void autoFill(JoinPoint joinPoint){
-        log.info("开始进行公共字段自动填充...");
-
-        //获取到当前被拦截的方法上的数据库操作类型
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();//方法签名对象
-        AutoFill autoFill = signature.getMethod().getAnnotation(AutoFill.class);//获得方法上的注解对象
-        OperationType operationType = autoFill.value();//获得数据库操作类型
-
+    @Before("autoFillPointCut() && @annotation(autoFill)")
+    public void autoFill(JoinPoint joinPoint, AutoFill autoFill){
         //获取到当前被拦截的方法的参数--实体对象
         Object[] args = joinPoint.getArgs();
-        if(args == null || args.length == 0){
+        if(args == null || args.length == 0 || args[0] == null){
             return;
         }
 
-        Object entity = args[0];
-
         //准备赋值的数据
+        OperationType operationType = autoFill.value();
         LocalDateTime now = LocalDateTime.now();
         Long currentId = BaseContext.getCurrentId();
 
-        //根据当前不同的操作类型，为对应的属性通过反射来赋值
+        if (args[0] instanceof Collection) {
+            for (Object entity : (Collection<?>) args[0]) {
+                fill(entity, operationType, now, currentId);
+            }
+        } else {
+            fill(args[0], operationType, now, currentId);
+        }
+    }
+
+    private void fill(Object entity, OperationType operationType, LocalDateTime now, Long currentId) {
+        if (entity == null) {
+            return;
+        }
+        Setters setters = settersCache.computeIfAbsent(entity.getClass(), Setters::new);
+
+        //根据当前不同的操作类型，为对应的属性赋值
         if(operationType == OperationType.INSERT){
             //为4个公共字段赋值
-            try {
-                Method setCreateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
-                Method setCreateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_USER, Long.class);
-                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
-                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
-
-                //通过反射为对象属性赋值
-                setCreateTime.invoke(entity,now);
-                setCreateUser.invoke(entity,currentId);
-                setUpdateTime.invoke(entity,now);
-                setUpdateUser.invoke(entity,currentId);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            set(setters.setCreateTime, entity, now);
+            set(setters.setCreateUser, entity, currentId);
+            set(setters.setUpdateTime, entity, now);
+            set(setters.setUpdateUser, entity, currentId);
         }else if(operationType == OperationType.UPDATE){
             //为2个公共字段赋值
-            try {
-                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
-                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
+            set(setters.setUpdateTime, entity, now);
+            set(setters.setUpdateUser, entity, currentId);
+        }
+    }
 
-                //通过反射为对象属性赋值
-                setUpdateTime.invoke(entity,now);
-                setUpdateUser.invoke(entity,currentId);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    private static void set(BiConsumer<Object, Object> setter, Object entity, Object value) {
+        if (setter != null) {
+            setter.accept(entity, value);
         }
     }
 
+    /**
+     * 一个实体类的公共字段setter，实体类没有的字段为null
+     */
+    private static class Setters {
+        private final BiConsumer<Object, Object> setCreateTime;
+        private final BiConsumer<Object, Object> setCreateUser;
+        private final BiConsumer<Object, Object> setUpdateTime;
+        private final BiConsumer<Object, Object> setUpdateUser;
+
+        Setters(Class<?> type) {
+            setCreateTime = setter(type, AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
+            setCreateUser = setter(type, AutoFillConstant.SET_CREATE_USER, Long.class);
+            setUpdateTime = setter(type, AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
+            setUpdateUser = setter(type, AutoFillConstant.SET_UPDATE_USER, Long.class);
+            log.debug("公共字段自动填充：已解析{}的setter", type.getName());
+        }
+
+        /**
+         * 通过LambdaMetafactory为setter生成BiConsumer实现，调用时不再经过反射
+         */
+        @SuppressWarnings("unchecked")
+        private static BiConsumer<Object, Object> setter(Class<?> type, String name, Class<?> valueType) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                MethodHandle handle = lookup.findVirtual(type, name, MethodType.methodType(void.class, valueType));
+                CallSite callSite = LambdaMetafactory.metafactory(lookup, "accept",
+                        MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class),
+                        handle,
+                        MethodType.methodType(void.class, type, valueType));
+                return (BiConsumer<Object, Object>) callSite.getTarget().invokeExact();
+            } catch (NoSuchMethodException e) {
+                return null;
+            } catch (Throwable e) {
+                throw new IllegalStateException("解析公共字段setter失败：" + type.getName() + "." + name, e);
+            }
+        }
+    }
 }
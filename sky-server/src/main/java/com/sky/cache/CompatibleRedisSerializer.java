@@ -0,0 +1,44 @@
+package com.sky.cache;
+
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * 可切换的redis value序列化器
+ * 写入时使用配置的序列化器，读取时可兼容切换前写入的jdk序列化数据
+ */
+public class CompatibleRedisSerializer implements RedisSerializer<Object> {
+
+    //jdk序列化数据的魔数 0xACED
+    private static final byte JDK_MAGIC_0 = (byte) 0xAC;
+    private static final byte JDK_MAGIC_1 = (byte) 0xED;
+
+    private final RedisSerializer<Object> delegate;
+    private final JdkSerializationRedisSerializer jdkSerializer;
+
+    /**
+     * @param delegate 写入和读取使用的序列化器
+     * @param readJdk  是否兼容读取jdk序列化数据
+     */
+    public CompatibleRedisSerializer(RedisSerializer<Object> delegate, boolean readJdk) {
+        this.delegate = delegate;
+        this.jdkSerializer = readJdk ? new JdkSerializationRedisSerializer() : null;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        return delegate.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (jdkSerializer != null && bytes.length > 1 && bytes[0] == JDK_MAGIC_0 && bytes[1] == JDK_MAGIC_1) {
+            return jdkSerializer.deserialize(bytes);
+        }
+        return delegate.deserialize(bytes);
+    }
+}
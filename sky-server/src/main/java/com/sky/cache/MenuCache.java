@@ -0,0 +1,428 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sky.properties.MenuCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 小程序端菜单数据的两级缓存：进程内缓存 -> redis -> 数据库
+ * 管理端修改数据时通过redis发布订阅通知所有节点清理本地缓存
+ * 缓存未命中时同一个key只允许一个请求查询数据库：节点内合并并发请求，节点之间通过redis锁互斥
+ * 每次清理都会增加redis中的版本号，查询数据库期间发生过清理时查询结果不写入缓存，避免旧数据覆盖
+ */
+@Component
+@Slf4j
+public class MenuCache implements MessageListener {
+
+    //redis中的key规则：dish_v2_分类id、setmeal_v2_分类id、category_分类类型
+    //菜品、套餐列表的结构变化时（v2增加了缩略图字段）修改版本号，不再读取旧结构的缓存；旧版本的key没有过期时间，启动时删除一次
+    public static final String DISH_KEY_PREFIX = "dish_v2_";
+    public static final String SETMEAL_KEY_PREFIX = "setmeal_v2_";
+    public static final String CATEGORY_KEY_PREFIX = "category_";
+
+    //广播消息以该后缀结尾时，表示按前缀清理
+    private static final String PREFIX_WILDCARD = "*";
+
+    //旧版本菜品、套餐列表缓存的key：dish_分类id、setmeal_分类id
+    private static final String[] LEGACY_KEY_PATTERNS = {"dish_[0-9]*", "setmeal_[0-9]*"};
+
+    //旧版本的key已删除的标记
+    private static final String LEGACY_CLEANED_KEY = "sky:cache:menu:legacy-cleaned";
+
+    //SCAN每次遍历的key数量，也是每批删除的key数量
+    private static final int SCAN_COUNT = 500;
+
+    //缓存重建锁的key前缀，规则：lock:缓存key
+    private static final String LOCK_KEY_PREFIX = "lock:";
+
+    //广播消息以该前缀开头时，表示持锁节点已完成重建，规则：loaded:缓存key
+    private static final String LOADED_PREFIX = "loaded:";
+
+    //菜单缓存的版本号，每次清理加1
+    private static final String VERSION_KEY = "sky:cache:menu:version";
+
+    //只有锁的持有者才能释放锁，避免锁过期后误删其它节点的锁
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    //版本号与查询数据库之前读取的一致时才写入缓存，否则说明查询期间发生过清理
+    private static final DefaultRedisScript<Long> SET_IF_VERSION_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('get', KEYS[2]) or '0') == ARGV[1] then "
+                    + "redis.call('set', KEYS[1], ARGV[2], 'EX', ARGV[3]) return 1 end return 0",
+            Long.class);
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Autowired
+    private MenuCacheProperties menuCacheProperties;
+
+    private Cache<String, Object> localCache;
+
+    //正在重建的缓存，key -> 重建结果，同一节点内相同key的并发请求共享同一次查询
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    //正在等待其它节点重建的缓存，收到重建完成的广播后结束等待
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> waiting = new ConcurrentHashMap<>();
+
+    //本节点的清理次数，查询数据库期间发生过清理时不写入本地缓存
+    private final AtomicLong version = new AtomicLong();
+
+    //redis命中、未命中次数
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+    //查询数据库次数、合并到其它请求的次数、等待其它节点重建的次数、等待超时后自行查询数据库的次数
+    private final LongAdder dbLoads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder lockWaits = new LongAdder();
+    private final LongAdder lockWaitTimeouts = new LongAdder();
+    //查询期间发生清理、没有写入缓存的次数
+    private final LongAdder staleLoads = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(menuCacheProperties.getMaximumSize())
+                .expireAfterWrite(menuCacheProperties.getExpireSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(menuCacheProperties.getChannel()));
+    }
+
+    public static String dishKey(Long categoryId) {
+        return DISH_KEY_PREFIX + categoryId;
+    }
+
+    public static String setmealKey(Long categoryId) {
+        return SETMEAL_KEY_PREFIX + categoryId;
+    }
+
+    public static String categoryKey(Integer type) {
+        return CATEGORY_KEY_PREFIX + type;
+    }
+
+    /**
+     * 查询缓存，依次查询本地缓存、redis，都没有时调用loader查询数据库并写回两级缓存
+     * 返回的对象会被多个请求共享，调用方不能修改
+     * @param key
+     * @param loader
+     * @return
+     */
+    public <T> T get(String key, Supplier<T> loader) {
+        Object value = localCache.getIfPresent(key);
+        if (value != null) {
+            return (T) value;
+        }
+
+        value = redisTemplate.opsForValue().get(key);
+        if (value != null) {
+            redisHits.increment();
+            localCache.put(key, value);
+            return (T) value;
+        }
+
+        redisMisses.increment();
+        return (T) loadOnce(key, loader);
+    }
+
+    /**
+     * 节点内合并：同一个key同时只有一个线程执行重建，其它线程等待并共享其结果
+     * @param key
+     * @param loader
+     * @return
+     */
+    private Object loadOnce(String key, Supplier<?> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            Object value = loadWithLock(key, loader);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * 节点间互斥：抢到redis锁的节点查询数据库并写入缓存，完成后广播通知，
+     * 其它节点等待通知后读取redis，没有等到通知（如持锁节点宕机）或持锁节点没有写入缓存时自行查询数据库
+     * @param key
+     * @param loader
+     * @return
+     */
+    private Object loadWithLock(String key, Supplier<?> loader) {
+        String lockKey = LOCK_KEY_PREFIX + key;
+        String lockValue = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(lockKey, lockValue, menuCacheProperties.getLockMillis(), TimeUnit.MILLISECONDS);
+
+        if (Boolean.TRUE.equals(locked)) {
+            try {
+                //再次查询redis，可能其它节点刚刚释放锁并写入了缓存
+                Object value = redisTemplate.opsForValue().get(key);
+                if (value == null) {
+                    value = loadFromDb(key, loader);
+                } else {
+                    localCache.put(key, value);
+                }
+                return value;
+            } finally {
+                stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), lockValue);
+                stringRedisTemplate.convertAndSend(menuCacheProperties.getChannel(), LOADED_PREFIX + key);
+            }
+        }
+
+        lockWaits.increment();
+        //节点内的并发请求已经合并，每个节点每个key最多只有一个线程在这里等待
+        CompletableFuture<Void> loaded = waiting.computeIfAbsent(key, k -> new CompletableFuture<>());
+        try {
+            //开始等待之前持锁节点可能已经完成
+            Object value = redisTemplate.opsForValue().get(key);
+            if (value == null) {
+                loaded.get(menuCacheProperties.getLockWaitMillis(), TimeUnit.MILLISECONDS);
+                value = redisTemplate.opsForValue().get(key);
+            }
+            if (value != null) {
+                localCache.put(key, value);
+                return value;
+            }
+        } catch (TimeoutException | ExecutionException e) {
+            lockWaitTimeouts.increment();
+            log.warn("等待其它节点重建缓存超时，直接查询数据库：{}", key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waiting.remove(key, loaded);
+        }
+        return loadFromDb(key, loader);
+    }
+
+    /**
+     * 查询数据库并写入两级缓存，查询期间发生过清理时不写入
+     * @param key
+     * @param loader
+     * @return
+     */
+    private Object loadFromDb(String key, Supplier<?> loader) {
+        dbLoads.increment();
+        long localVersion = version.get();
+        String redisVersion = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+        Object value = loader.get();
+        if (value == null) {
+            return null;
+        }
+
+        Long written = (Long) redisTemplate.execute(SET_IF_VERSION_SCRIPT, RedisSerializer.byteArray(),
+                redisTemplate.getValueSerializer(), Arrays.asList(key, VERSION_KEY),
+                bytes(redisVersion != null ? redisVersion : "0"),
+                redisTemplate.getValueSerializer().serialize(value),
+                bytes(String.valueOf(menuCacheProperties.getRedisExpireSeconds())));
+        if (Long.valueOf(1).equals(written) && version.get() == localVersion) {
+            localCache.put(key, value);
+        } else {
+            staleLoads.increment();
+            log.info("查询期间缓存已被清理，查询结果不写入缓存：{}", key);
+        }
+        return value;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 清理指定key的缓存，并通知其它节点
+     * @param keys
+     */
+    public void evict(String... keys) {
+        evict(Arrays.asList(keys));
+    }
+
+    /**
+     * 清理指定key的缓存，并通知其它节点
+     * @param keys
+     */
+    public void evict(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+        version.incrementAndGet();
+        redisTemplate.delete(keys);
+        for (String key : keys) {
+            localCache.invalidate(key);
+            stringRedisTemplate.convertAndSend(menuCacheProperties.getChannel(), key);
+        }
+    }
+
+    /**
+     * 清理所有以prefix开头的缓存，并通知其它节点
+     * @param prefix
+     */
+    public void evictByPrefix(String prefix) {
+        stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+        version.incrementAndGet();
+        deleteByPattern(prefix + PREFIX_WILDCARD);
+        evictLocalByPrefix(prefix);
+        stringRedisTemplate.convertAndSend(menuCacheProperties.getChannel(), prefix + PREFIX_WILDCARD);
+    }
+
+    /**
+     * 应用启动后删除旧版本的菜品、套餐列表缓存，删除完成后记录标记，之后启动不再遍历
+     * 多个节点同时启动时可能重复删除，没有影响；删除失败时下次启动重试
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void deleteLegacyKeys() {
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(LEGACY_CLEANED_KEY))) {
+                return;
+            }
+            long deleted = 0;
+            for (String pattern : LEGACY_KEY_PATTERNS) {
+                deleted += deleteByPattern(pattern);
+            }
+            stringRedisTemplate.opsForValue().set(LEGACY_CLEANED_KEY, "1");
+            log.info("删除旧版本的菜单缓存：{}个", deleted);
+        } catch (Exception e) {
+            log.warn("删除旧版本的菜单缓存失败，下次启动时重试", e);
+        }
+    }
+
+    /**
+     * 用SCAN分批遍历匹配的key并删除，不使用遍历整个库期间阻塞redis的KEYS命令
+     * @param pattern
+     * @return 删除的key数量
+     */
+    private long deleteByPattern(String pattern) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(SCAN_COUNT).build();
+        List<Object> batch = new ArrayList<>(SCAN_COUNT);
+        long deleted = 0;
+        try (Cursor<Object> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() >= SCAN_COUNT) {
+                    redisTemplate.delete(batch);
+                    deleted += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            redisTemplate.delete(batch);
+            deleted += batch.size();
+        }
+        return deleted;
+    }
+
+    /**
+     * 接收其它节点（包括自己）广播的缓存失效消息，清理本地缓存
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String key = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (key.startsWith(LOADED_PREFIX)) {
+            CompletableFuture<Void> loaded = waiting.get(key.substring(LOADED_PREFIX.length()));
+            if (loaded != null) {
+                loaded.complete(null);
+            }
+            return;
+        }
+        version.incrementAndGet();
+        if (key.endsWith(PREFIX_WILDCARD)) {
+            evictLocalByPrefix(key.substring(0, key.length() - PREFIX_WILDCARD.length()));
+        } else {
+            localCache.invalidate(key);
+        }
+    }
+
+    private void evictLocalByPrefix(String prefix) {
+        localCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 缓存命中情况统计
+     * @return
+     */
+    public Map<String, Object> stats() {
+        CacheStats localStats = localCache.stats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("localSize", localCache.estimatedSize());
+        stats.put("localHits", localStats.hitCount());
+        stats.put("localMisses", localStats.missCount());
+        stats.put("localEvictions", localStats.evictionCount());
+        stats.put("redisHits", redisHits.sum());
+        stats.put("redisMisses", redisMisses.sum());
+        stats.put("dbLoads", dbLoads.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("lockWaits", lockWaits.sum());
+        stats.put("lockWaitTimeouts", lockWaitTimeouts.sum());
+        stats.put("staleLoads", staleLoads.sum());
+        return stats;
+    }
+
+    /**
+     * 定时输出缓存命中情况
+     */
+    @Scheduled(fixedRate = 5 * 60 * 1000)
+    public void logStats() {
+        log.info("菜单缓存统计：{}", stats());
+    }
+}
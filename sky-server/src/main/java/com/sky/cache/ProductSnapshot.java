@@ -0,0 +1,35 @@
+package com.sky.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * 菜品、套餐加入购物车时需要的信息快照
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    //名称
+    private String name;
+
+    //图片
+    private String image;
+
+    //价格
+    private BigDecimal price;
+
+    //0 停售 1 起售
+    private Integer status;
+}
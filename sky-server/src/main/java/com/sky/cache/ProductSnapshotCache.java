@@ -0,0 +1,151 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.properties.ProductCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 菜品、套餐信息快照的进程内缓存，加购时不再逐次查询菜品表、套餐表
+ * 管理端修改、起售停售、删除后清理，并通过redis发布订阅通知其它节点
+ * 每次清理都会增加版本号，清理前已开始的查询结果不会写入缓存，避免旧数据覆盖
+ */
+@Component
+@Slf4j
+public class ProductSnapshotCache implements MessageListener {
+
+    //缓存key规则：d菜品id、s套餐id，广播消息与缓存key相同
+    private static final String DISH_PREFIX = "d";
+    private static final String SETMEAL_PREFIX = "s";
+
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Autowired
+    private ProductCacheProperties productCacheProperties;
+
+    private Cache<String, ProductSnapshot> cache;
+
+    private final AtomicLong version = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(productCacheProperties.getMaximumSize())
+                .expireAfterWrite(productCacheProperties.getExpireSeconds(), TimeUnit.SECONDS)
+                .build();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(productCacheProperties.getChannel()));
+    }
+
+    /**
+     * 查询菜品快照，菜品不存在时返回null
+     * @param dishId
+     * @return
+     */
+    public ProductSnapshot getDish(Long dishId) {
+        return get(DISH_PREFIX + dishId, dishId, id -> {
+            Dish dish = dishMapper.getById(id);
+            return dish == null ? null : new ProductSnapshot(dish.getId(), dish.getName(), dish.getImage(),
+                    dish.getPrice(), dish.getStatus());
+        });
+    }
+
+    /**
+     * 查询套餐快照，套餐不存在时返回null
+     * @param setmealId
+     * @return
+     */
+    public ProductSnapshot getSetmeal(Long setmealId) {
+        return get(SETMEAL_PREFIX + setmealId, setmealId, id -> {
+            Setmeal setmeal = setmealMapper.getById(id);
+            return setmeal == null ? null : new ProductSnapshot(setmeal.getId(), setmeal.getName(), setmeal.getImage(),
+                    setmeal.getPrice(), setmeal.getStatus());
+        });
+    }
+
+    private ProductSnapshot get(String key, Long id, Function<Long, ProductSnapshot> loader) {
+        ProductSnapshot snapshot = cache.getIfPresent(key);
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        long loadVersion = version.get();
+        snapshot = loader.apply(id);
+        //查询期间没有发生清理才写入缓存
+        if (snapshot != null && version.get() == loadVersion) {
+            cache.put(key, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 菜品修改后调用，清理本节点并通知其它节点
+     * @param dishIds
+     */
+    public void evictDishes(Collection<Long> dishIds) {
+        evict(DISH_PREFIX, dishIds);
+    }
+
+    public void evictDish(Long dishId) {
+        evictDishes(Collections.singletonList(dishId));
+    }
+
+    /**
+     * 套餐修改后调用，清理本节点并通知其它节点
+     * @param setmealIds
+     */
+    public void evictSetmeals(Collection<Long> setmealIds) {
+        evict(SETMEAL_PREFIX, setmealIds);
+    }
+
+    public void evictSetmeal(Long setmealId) {
+        evictSetmeals(Collections.singletonList(setmealId));
+    }
+
+    private void evict(String prefix, Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        for (Long id : ids) {
+            String key = prefix + id;
+            version.incrementAndGet();
+            cache.invalidate(key);
+            stringRedisTemplate.convertAndSend(productCacheProperties.getChannel(), key);
+        }
+    }
+
+    /**
+     * 接收其它节点（包括自己）广播的失效消息
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        version.incrementAndGet();
+        cache.invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,181 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已校验jwt令牌的缓存，令牌摘要 -> 令牌中的用户id，最多保留sky.jwt.token-cache-ttl，且不超过令牌的过期时间
+ * 同一个令牌只在缓存期内第一次请求时验签、解析并查询注销记录，之后的请求只计算一次摘要并查询缓存
+ * 令牌注销后记录到redis（保留到令牌过期）并广播给各节点，各节点清理缓存并拒绝该令牌；
+ * 没有收到广播的节点（如与redis的订阅连接断开）在缓存到期后查询注销记录时拒绝该令牌
+ */
+@Component
+@Slf4j
+public class VerifiedTokenCache implements MessageListener {
+
+    //注销的令牌在redis中的key前缀
+    private static final String REVOKED_KEY_PREFIX = "sky:jwt:revoked:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Autowired
+    private JwtProperties jwtProperties;
+
+    //令牌摘要 -> 已校验的令牌
+    private Cache<String, VerifiedToken> verified;
+
+    //令牌摘要 -> 令牌过期时间，已注销的令牌
+    private Cache<String, Long> revoked;
+
+    @AllArgsConstructor
+    private static class VerifiedToken {
+        //用户id所在的claim名称，区分管理端和用户端的令牌
+        private final String claimName;
+        private final Long id;
+        //令牌的过期时间
+        private final long expireMillis;
+        //缓存的过期时间，不晚于令牌的过期时间
+        private final long cacheUntilMillis;
+    }
+
+    @PostConstruct
+    public void init() {
+        verified = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getTokenCacheSize())
+                .expireAfter(new ExpireAt<String, VerifiedToken>() {
+                    @Override
+                    long expireMillis(VerifiedToken value) {
+                        return value.cacheUntilMillis;
+                    }
+                })
+                .build();
+        revoked = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getTokenCacheSize())
+                .expireAfter(new ExpireAt<String, Long>() {
+                    @Override
+                    long expireMillis(Long value) {
+                        return value;
+                    }
+                })
+                .build();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(jwtProperties.getRevokedChannel()));
+    }
+
+    /**
+     * 校验令牌，返回令牌中claimName对应的用户id
+     * @param secretKey
+     * @param token
+     * @param claimName
+     * @return
+     * @throws RuntimeException 令牌无效、已过期或已注销
+     */
+    public Long verify(String secretKey, String token, String claimName) {
+        String digest = digest(token);
+        VerifiedToken cached = verified.getIfPresent(digest);
+        if (cached != null && cached.claimName.equals(claimName) && cached.cacheUntilMillis > System.currentTimeMillis()) {
+            return cached.id;
+        }
+
+        Claims claims = JwtUtil.parseJWT(secretKey, token);
+        if (revoked.getIfPresent(digest) != null
+                || Boolean.TRUE.equals(stringRedisTemplate.hasKey(REVOKED_KEY_PREFIX + digest))) {
+            throw new IllegalStateException("令牌已注销");
+        }
+        Long id = Long.valueOf(claims.get(claimName).toString());
+        long expireMillis = claims.getExpiration().getTime();
+        long cacheUntilMillis = Math.min(expireMillis, System.currentTimeMillis() + jwtProperties.getTokenCacheTtl());
+        verified.put(digest, new VerifiedToken(claimName, id, expireMillis, cacheUntilMillis));
+        return id;
+    }
+
+    /**
+     * 注销令牌，令牌过期之前所有节点都拒绝该令牌
+     * @param token
+     */
+    public void revoke(String token) {
+        if (token == null) {
+            return;
+        }
+        String digest = digest(token);
+        VerifiedToken cached = verified.getIfPresent(digest);
+        long expireMillis = cached != null ? cached.expireMillis
+                : System.currentTimeMillis() + Math.max(jwtProperties.getAdminTtl(), jwtProperties.getUserTtl());
+        long ttl = expireMillis - System.currentTimeMillis();
+        if (ttl <= 0) {
+            return;
+        }
+
+        revoked.put(digest, expireMillis);
+        verified.invalidate(digest);
+        stringRedisTemplate.opsForValue().set(REVOKED_KEY_PREFIX + digest, String.valueOf(expireMillis), ttl, TimeUnit.MILLISECONDS);
+        stringRedisTemplate.convertAndSend(jwtProperties.getRevokedChannel(), digest + ":" + expireMillis);
+    }
+
+    /**
+     * 接收其它节点（包括自己）广播的令牌注销消息
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.lastIndexOf(':');
+        String digest = body.substring(0, index);
+        revoked.put(digest, Long.valueOf(body.substring(index + 1)));
+        verified.invalidate(digest);
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 在value中记录的时间点过期
+     */
+    private abstract static class ExpireAt<K, V> implements Expiry<K, V> {
+
+        abstract long expireMillis(V value);
+
+        @Override
+        public long expireAfterCreate(K key, V value, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(expireMillis(value) - System.currentTimeMillis(), 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.sky.config;
+
+import com.sky.properties.HttpClientProperties;
+import com.sky.utils.HttpClientUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * 配置类，创建共享的带连接池的HttpClient，并注册到HttpClientUtil
+ */
+@Configuration
+@Slf4j
+public class HttpClientConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(HttpClientProperties httpClientProperties) {
+        log.info("开始创建HttpClient连接池：{}", httpClientProperties);
+        PoolingHttpClientConnectionManager manager = HttpClientUtil.createConnectionManager(
+                httpClientProperties.getMaxTotal(), httpClientProperties.getMaxPerRoute());
+        CloseableHttpClient httpClient = HttpClientUtil.createHttpClient(manager,
+                httpClientProperties.getTimeoutMillis(),
+                httpClientProperties.getKeepAliveMillis(),
+                httpClientProperties.getIdleEvictMillis());
+        HttpClientUtil.init(httpClient, manager);
+        return httpClient;
+    }
+
+    /**
+     * 每5分钟记录一次连接复用情况和连接池状态
+     */
+    @Scheduled(fixedDelay = 5 * 60 * 1000)
+    public void logStats() {
+        log.info("HttpClient连接池：{}", HttpClientUtil.stats());
+    }
+
+}
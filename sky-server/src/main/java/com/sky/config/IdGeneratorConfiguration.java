@@ -0,0 +1,27 @@
+package com.sky.config;
+
+import com.sky.properties.OrderProperties;
+import com.sky.task.WorkerIdLease;
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@Slf4j
+public class IdGeneratorConfiguration {
+    @Bean
+    @ConditionalOnMissingBean
+    public SnowflakeIdGenerator snowflakeIdGenerator(OrderProperties orderProperties, WorkerIdLease workerIdLease){
+        //配置了机器id时直接使用，由部署方保证各节点不同；没有配置时从redis租用，不会默认使用同一个机器id
+        if (orderProperties.getWorkerId() != null) {
+            log.info("开始创建订单号生成器对象，机器id：{}", orderProperties.getWorkerId());
+            return new SnowflakeIdGenerator(orderProperties.getWorkerId());
+        }
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(workerIdLease.acquire());
+        workerIdLease.onChange(generator::setWorkerId);
+        log.info("开始创建订单号生成器对象，租用的机器id：{}", generator.getWorkerId());
+        return generator;
+    }
+}
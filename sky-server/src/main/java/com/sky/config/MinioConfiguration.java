@@ -14,9 +14,11 @@ public class MinioConfiguration {
     @ConditionalOnMissingBean
     public MinioUtil minioUtil(MinioProperties minioProperties){
         log.info("开始创建阿里云服务器Minio上传工具类对象：{}", minioProperties);
-        return new MinioUtil(minioProperties.getEndpoint(),
+        MinioUtil minioUtil = new MinioUtil(minioProperties.getEndpoint(),
                 minioProperties.getAccessKey(),
                 minioProperties.getSecretKey(),
                 minioProperties.getBucketName());
+        minioUtil.setPartSize(minioProperties.getPartSize());
+        return minioUtil;
     }
 }
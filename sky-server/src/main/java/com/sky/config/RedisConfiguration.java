@@ -1,18 +1,36 @@
 package com.sky.config;
 
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sky.cache.CompatibleRedisSerializer;
+import com.sky.properties.RedisSerializerProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
 @Slf4j
 public class RedisConfiguration {
+
+    public static final String SERIALIZER_JSON = "json";
+    public static final String SERIALIZER_JDK = "jdk";
+
     @Bean
     //因为pom文件里已经引入了Redis的spring框架依赖，starter起步依赖会将RedisConnectionFactory工厂对象创建好并放到spring容器中
-    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory){
+    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory, RedisSerializer<Object> redisValueSerializer){
         log.info("开始创建redis模板对象...");
         RedisTemplate redisTemplate = new RedisTemplate();
         //设置redis的链接工厂对象
@@ -20,6 +38,58 @@ public class RedisConfiguration {
         //设置redis key的序列化器。如果注释掉也可以使用，会使用默认序列化器
         //使用StringRedisSerializer序列化器效果是，redis数据库key的值可以展示为string类型数据，而非二进制代码
         redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        //设置redis value的序列化器，由配置项sky.redis.serializer.type决定
+        redisTemplate.setValueSerializer(redisValueSerializer);
+        redisTemplate.setHashValueSerializer(redisValueSerializer);
         return redisTemplate;
     }
+
+    @Bean
+    //redis value序列化器，RedisTemplate和spring cache共用
+    public RedisSerializer<Object> redisValueSerializer(RedisSerializerProperties redisSerializerProperties){
+        log.info("redis value序列化方式：{}，兼容读取jdk序列化数据：{}",
+                redisSerializerProperties.getType(), redisSerializerProperties.isReadJdk());
+        RedisSerializer<Object> delegate;
+        if (SERIALIZER_JDK.equalsIgnoreCase(redisSerializerProperties.getType())) {
+            delegate = new JdkSerializationRedisSerializer();
+        } else if (SERIALIZER_JSON.equalsIgnoreCase(redisSerializerProperties.getType())) {
+            delegate = new GenericJackson2JsonRedisSerializer(redisObjectMapper());
+        } else {
+            throw new IllegalArgumentException("不支持的redis序列化方式：" + redisSerializerProperties.getType());
+        }
+        return new CompatibleRedisSerializer(delegate, redisSerializerProperties.isReadJdk());
+    }
+
+    @Bean
+    //spring cache(@Cacheable等注解)写入redis时使用同样的value序列化器
+    public RedisCacheConfiguration redisCacheConfiguration(RedisSerializer<Object> redisValueSerializer){
+        return RedisCacheConfiguration.defaultCacheConfig()
+                .disableCachingNullValues()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer));
+    }
+
+    @Bean
+    //redis发布订阅的监听容器，用于在多个节点之间广播缓存失效等消息
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory){
+        log.info("开始创建redis消息监听容器...");
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
+    }
+
+    /**
+     * json序列化使用的对象映射器
+     * 写入类型信息(@class)，读取时可还原为原来的java类型；时间类型完整保留到秒以下，不使用接口返回的格式
+     * @return
+     */
+    private ObjectMapper redisObjectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        objectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance,
+                ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        return objectMapper;
+    }
 }
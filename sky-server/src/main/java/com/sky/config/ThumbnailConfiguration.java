@@ -0,0 +1,29 @@
+package com.sky.config;
+
+import com.sky.properties.ThumbnailProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 配置类，创建生成缩略图的线程池
+ * 图片解码、缩放占用CPU和内存，线程数和队列都有上限，不影响上传请求的处理
+ */
+@Configuration
+@Slf4j
+public class ThumbnailConfiguration {
+
+    @Bean
+    public ThreadPoolTaskExecutor thumbnailExecutor(ThumbnailProperties thumbnailProperties) {
+        log.info("开始创建缩略图线程池：{}", thumbnailProperties);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(thumbnailProperties.getThreads());
+        executor.setMaxPoolSize(thumbnailProperties.getThreads());
+        executor.setQueueCapacity(thumbnailProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("thumbnail-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.sky.config;
+
+import com.sky.properties.UserLoginProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 配置类，创建微信登录专用的线程池
+ * 调用微信接口换取openid期间占用的是该线程池的线程，不占用Tomcat的请求处理线程
+ */
+@Configuration
+@Slf4j
+public class UserLoginConfiguration {
+
+    @Bean
+    public ThreadPoolTaskExecutor wxLoginExecutor(UserLoginProperties userLoginProperties) {
+        log.info("开始创建微信登录线程池：{}", userLoginProperties);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(userLoginProperties.getCorePoolSize());
+        executor.setMaxPoolSize(userLoginProperties.getMaxPoolSize());
+        executor.setQueueCapacity(userLoginProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("wx-login-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.MenuCache;
 import com.sky.dto.CategoryDTO;
 import com.sky.dto.CategoryPageQueryDTO;
 import com.sky.entity.Category;
@@ -24,6 +25,8 @@ public class CategoryController {
 
     @Autowired
     private CategoryService categoryService;
+    @Autowired
+    private MenuCache menuCache;
 
     /**
      * 新增分类
@@ -35,6 +38,8 @@ public class CategoryController {
     public Result<String> save(@RequestBody CategoryDTO categoryDTO){
         log.info("新增分类：{}", categoryDTO);
         categoryService.save(categoryDTO);
+        //清理小程序端的分类缓存
+        menuCache.evictByPrefix(MenuCache.CATEGORY_KEY_PREFIX);
         return Result.success();
     }
 
@@ -61,6 +66,8 @@ public class CategoryController {
     public Result<String> deleteById(Long id){
         log.info("删除分类：{}", id);
         categoryService.deleteById(id);
+        //清理小程序端的分类缓存
+        menuCache.evictByPrefix(MenuCache.CATEGORY_KEY_PREFIX);
         return Result.success();
     }
 
@@ -73,6 +80,8 @@ public class CategoryController {
     @ApiOperation("修改分类")
     public Result<String> update(@RequestBody CategoryDTO categoryDTO){
         categoryService.update(categoryDTO);
+        //清理小程序端的分类缓存
+        menuCache.evictByPrefix(MenuCache.CATEGORY_KEY_PREFIX);
         return Result.success();
     }
 
@@ -86,6 +95,8 @@ public class CategoryController {
     @ApiOperation("启用禁用分类")
     public Result<String> startOrStop(@PathVariable("status") Integer status, Long id){
         categoryService.startOrStop(status,id);
+        //清理小程序端的分类缓存
+        menuCache.evictByPrefix(MenuCache.CATEGORY_KEY_PREFIX);
         return Result.success();
     }
 
@@ -2,6 +2,7 @@ package com.sky.controller.admin;
 
 import com.sky.constant.MessageConstant;
 import com.sky.result.Result;
+import com.sky.task.ThumbnailTask;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +15,7 @@ import org.springframework.web.multipart.MultipartFile;
 import com.sky.utils.MinioUtil;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.UUID;
 
 
@@ -24,9 +26,13 @@ import java.util.UUID;
 public class CommonController {
     @Autowired
     private MinioUtil minioUtil;
+    @Autowired
+    private ThumbnailTask thumbnailTask;
 
     /**
      * 文件上传
+     * 上传的文件由容器写入临时文件，从临时文件读取并流式上传到minio，不在堆内存中缓存整个文件
+     * 上传的是图片时，异步生成小图、中图
      * @param file
      * @return
      */
@@ -44,7 +50,14 @@ public class CommonController {
             String objectName = UUID.randomUUID().toString() + extension;
 
             //文件的请求路径
-            String filePath = minioUtil.upload(file.getBytes(), objectName);
+            String contentType = file.getContentType();
+            String filePath;
+            try (InputStream in = file.getInputStream()) {
+                filePath = minioUtil.upload(in, file.getSize(), contentType, objectName);
+            }
+            if (contentType != null && contentType.startsWith("image/")) {
+                thumbnailTask.generate(objectName);
+            }
             return Result.success(filePath);
         } catch (IOException e) {
             log.error("文件上传失败：{}",e);
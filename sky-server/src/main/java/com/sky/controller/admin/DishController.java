@@ -1,5 +1,7 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.MenuCache;
+import com.sky.cache.ProductSnapshotCache;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
 import com.sky.dto.DishPageQueryDTO;
@@ -7,17 +9,16 @@ import com.sky.entity.Dish;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
 import com.sky.service.DishService;
+import com.sky.service.SetmealService;
 import com.sky.vo.DishVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
-import org.checkerframework.checker.units.qual.A;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -29,7 +30,11 @@ public class DishController {
     @Autowired
     private DishService dishService;
     @Autowired
-    private RedisTemplate redisTemplate;
+    private SetmealService setmealService;
+    @Autowired
+    private MenuCache menuCache;
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
     /**
      * 新增菜品
      * @param dishDTO
@@ -37,16 +42,13 @@ public class DishController {
      */
     @PostMapping
     @ApiOperation("新增菜品")
-    @CacheEvict(cacheNames = "dishCache",key = "#dishDTO.id")//key: dishCache::100
     public Result save(@RequestBody DishDTO dishDTO){
         log.info("新增菜品：{}",dishDTO);
         dishService.saveWithFlavor(dishDTO);
         //清理缓存数据
-        //新增后如果不清理，小程序用户端查询redis时，还是没有新增的菜品数据，则增加菜品没有意义了
-        //缓存清理的目的在于，任何数据更新先删除redis，再重新拉取数据库数据进入redis中
-        //以下代码注释原因：前面添加了@CacheEvict注解，每次方法执行时，调用注解同时删除指定cacheNames对应的缓存
-        //String key = "dish_"+dishDTO.getCategoryId();
-        //cleanCache(key);
+        //新增后如果不清理，小程序用户端查询缓存时，还是没有新增的菜品数据，则增加菜品没有意义了
+        //缓存清理的目的在于，任何数据更新先删除缓存，再重新拉取数据库数据进入缓存中
+        menuCache.evict(MenuCache.dishKey(dishDTO.getCategoryId()));
         return Result.success();
     }
 
@@ -70,14 +72,16 @@ public class DishController {
      */
     @DeleteMapping
     @ApiOperation("菜品批量删除")
-    @CacheEvict(cacheNames = "dishCache",allEntries = true)
     public Result delete(@RequestParam List<Long> ids){
         log.info("菜品批量删除：{}",ids);
+        //删除前先查出受影响的缓存key，删除后菜品数据就查不到了
+        Set<String> keys = relatedCacheKeys(ids);
         dishService.deleteBatch(ids);
-        //将所有菜品的缓存数据清理，所有以dish_开头的Key
+        //只清理受影响分类的缓存数据
         //注意，删除、修改操作需要清理缓存，不需要向redis中拉取数据
-        //因为，小程序用户端每次新请求时，如果redis中被清理过，会查数据库后主动向redis中拉取数据
-//        cleanCache("dish_*");
+        //因为，小程序用户端每次新请求时，如果缓存被清理过，会查数据库后主动写入缓存
+        menuCache.evict(keys);
+        productSnapshotCache.evictDishes(ids);
         return Result.success();
     }
 
@@ -101,12 +105,16 @@ public class DishController {
      */
     @PutMapping
     @ApiOperation("修改菜品")
-    @CacheEvict(cacheNames = "dishCache",allEntries = true)
     public Result update(@RequestBody DishDTO dishDTO){
         log.info("修改菜品：{}",dishDTO);
-        dishService.updateWithFlavor(dishDTO);
-        //将所有菜品缓存数据清理，所有以dish_开头的key
-//        cleanCache("dish_*");
+        //修改前菜品所属的分类，以及修改后的分类（菜品可能被移动到其它分类）
+        Set<String> keys = relatedCacheKeys(Collections.singletonList(dishDTO.getId()));
+        keys.add(MenuCache.dishKey(dishDTO.getCategoryId()));
+        //没有任何数据变化时不需要清理缓存
+        if (dishService.updateWithFlavor(dishDTO)) {
+            menuCache.evict(keys);
+            productSnapshotCache.evictDish(dishDTO.getId());
+        }
         return Result.success();
     }
 
@@ -118,20 +126,13 @@ public class DishController {
     @GetMapping("/list")
     @ApiOperation("根据分类id查询菜品")
     public Result<List<DishVO>> list(Long categoryId){
-        //构造redis中的key，规则：dish_分类id
-        String key = "dish_" + categoryId;
-        //查询redis中是否存在菜品数据
-        List<DishVO> list = (List<DishVO>)redisTemplate.opsForValue().get(key);
-        if (list != null && list.size() > 0){
-            //如果存在，直接返回，无须查询数据库
-            return Result.success(list);
-        }
-        Dish dish = new Dish();
-        dish.setCategoryId(categoryId);
-        dish.setStatus(StatusConstant.ENABLE);
-        //如果不存在，查询数据库，将查询到的数据放入redis中
-        list = dishService.listWithFlavor(dish);
-        redisTemplate.opsForValue().set(key,list);
+        //构造缓存的key，规则：dish_分类id，与小程序端共用同一份缓存
+        List<DishVO> list = menuCache.get(MenuCache.dishKey(categoryId), () -> {
+            Dish dish = new Dish();
+            dish.setCategoryId(categoryId);
+            dish.setStatus(StatusConstant.ENABLE);
+            return dishService.listWithFlavor(dish);
+        });
         return Result.success(list);
     }
 
@@ -143,17 +144,28 @@ public class DishController {
      */
     @PostMapping("/status/{status}")
     @ApiOperation("菜品起售停售")
-    @CacheEvict(cacheNames = "dishCache",allEntries = true)
     public Result<String> startOrStop(@PathVariable Integer status , Long id){
         dishService.startOrStop(status,id);
-        //将所有菜品缓存数据清理，所有以dish_开头的key
-//        cleanCache("dish_*");
+        //只清理该菜品所属分类以及包含该菜品的套餐所属分类的缓存
+        menuCache.evict(relatedCacheKeys(Collections.singletonList(id)));
+        productSnapshotCache.evictDish(id);
         return Result.success();
     }
-//使用EnableEnableCaching
-//    private void cleanCache(String pattern){
-//        Set keys = redisTemplate.keys(pattern);
-//        redisTemplate.delete(keys);
-//    }
+
+    /**
+     * 查询菜品变化时需要清理的缓存key：
+     * 菜品所属分类的菜品缓存dish_分类id，以及包含这些菜品的套餐所属分类的套餐缓存setmeal_分类id
+     * @param dishIds
+     * @return
+     */
+    private Set<String> relatedCacheKeys(List<Long> dishIds) {
+        Set<String> keys = new HashSet<>();
+        if (dishIds == null || dishIds.isEmpty()) {
+            return keys;
+        }
+        dishService.getCategoryIdsByIds(dishIds).forEach(categoryId -> keys.add(MenuCache.dishKey(categoryId)));
+        setmealService.getCategoryIdsByDishIds(dishIds).forEach(categoryId -> keys.add(MenuCache.setmealKey(categoryId)));
+        return keys;
+    }
 
 }
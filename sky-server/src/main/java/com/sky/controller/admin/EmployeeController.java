@@ -1,5 +1,6 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.VerifiedTokenCache;
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.dto.EmployeeDTO;
 import com.sky.dto.EmployeeLoginDTO;
@@ -17,6 +18,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -33,6 +35,8 @@ public class EmployeeController {
     private EmployeeService employeeService;
     @Autowired
     private JwtProperties jwtProperties;
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
 
     /**
      * 登录
@@ -65,12 +69,14 @@ public class EmployeeController {
     }
 
     /**
-     * 退出
+     * 退出，注销当前令牌
+     * @param request
      * @return
      */
     @PostMapping("/logout")
     @ApiOperation(value = "员工退出")
-    public Result<String> logout() {
+    public Result<String> logout(HttpServletRequest request) {
+        verifiedTokenCache.revoke(request.getHeader(jwtProperties.getAdminTokenName()));
         return Result.success();
     }
 
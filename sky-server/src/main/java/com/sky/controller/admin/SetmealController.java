@@ -1,5 +1,7 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.MenuCache;
+import com.sky.cache.ProductSnapshotCache;
 import com.sky.dto.SetmealDTO;
 import com.sky.dto.SetmealPageQueryDTO;
 import com.sky.result.PageResult;
@@ -10,7 +12,6 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -22,6 +23,10 @@ import java.util.List;
 public class SetmealController{
     @Autowired
     private SetmealService setmealService;
+    @Autowired
+    private MenuCache menuCache;
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
 
     /**
      * 新增套餐
@@ -30,9 +35,10 @@ public class SetmealController{
      */
     @PostMapping
     @ApiOperation("新增套餐")
-    @CacheEvict(cacheNames = "setmealCache",key = "#setmealDTO.categoryId")//key: setmealCache::100
     public Result save(@RequestBody SetmealDTO setmealDTO){
         setmealService.saveWithDish(setmealDTO);
+        //清理当前分类下的套餐缓存，key: setmeal_分类id
+        menuCache.evict(MenuCache.setmealKey(setmealDTO.getCategoryId()));
         return Result.success();
     }
 
@@ -55,9 +61,11 @@ public class SetmealController{
      */
     @DeleteMapping
     @ApiOperation("批量删除套餐")
-    @CacheEvict(cacheNames = "setmealCache",allEntries = true)
     public Result delete(@RequestParam List<Long> ids){
         setmealService.deleteBatch(ids);
+        //清理所有以setmeal_开头的套餐缓存
+        menuCache.evictByPrefix(MenuCache.SETMEAL_KEY_PREFIX);
+        productSnapshotCache.evictSetmeals(ids);
         return Result.success();
     }
 
@@ -80,9 +88,12 @@ public class SetmealController{
      */
     @PutMapping
     @ApiOperation("修改套餐")
-    @CacheEvict(cacheNames = "setmealCache",allEntries = true)
     public Result update(@RequestBody SetmealDTO setmealDTO) {
-        setmealService.update(setmealDTO);
+        //有数据变化时，清理所有以setmeal_开头的套餐缓存
+        if (setmealService.update(setmealDTO)) {
+            menuCache.evictByPrefix(MenuCache.SETMEAL_KEY_PREFIX);
+            productSnapshotCache.evictSetmeal(setmealDTO.getId());
+        }
         return Result.success();
     }
 
@@ -94,9 +105,11 @@ public class SetmealController{
      */
     @PostMapping("/status/{status}")
     @ApiOperation("套餐起售停售")
-    @CacheEvict(cacheNames = "setmealCache",allEntries = true)
     public Result startOrStop(@PathVariable Integer status, Long id) {
         setmealService.startOrStop(status, id);
+        //清理所有以setmeal_开头的套餐缓存
+        menuCache.evictByPrefix(MenuCache.SETMEAL_KEY_PREFIX);
+        productSnapshotCache.evictSetmeal(id);
         return Result.success();
     }
 }
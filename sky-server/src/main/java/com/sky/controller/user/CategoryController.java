@@ -1,5 +1,6 @@
 package com.sky.controller.user;
 
+import com.sky.cache.MenuCache;
 import com.sky.entity.Category;
 import com.sky.result.Result;
 import com.sky.service.CategoryService;
@@ -18,6 +19,8 @@ public class CategoryController {
 
     @Autowired
     private CategoryService categoryService;
+    @Autowired
+    private MenuCache menuCache;
 
     /**
      * 查询分类
@@ -27,7 +30,8 @@ public class CategoryController {
     @GetMapping("/list")
     @ApiOperation("查询分类")
     public Result<List<Category>> list(Integer type) {
-        List<Category> list = categoryService.list(type);
+        //key: category_分类类型
+        List<Category> list = menuCache.get(MenuCache.categoryKey(type), () -> categoryService.list(type));
         return Result.success(list);
     }
 }
@@ -1,19 +1,24 @@
 package com.sky.controller.user;
 
+import com.sky.cache.MenuCache;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Dish;
 import com.sky.result.Result;
+import com.sky.search.DishSearchIndex;
 import com.sky.service.DishService;
 import com.sky.vo.DishVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController("userDishController")
 @RequestMapping("/user/dish")
@@ -23,7 +28,9 @@ public class DishController {
     @Autowired
     private DishService dishService;
     @Autowired
-    private RedisTemplate redisTemplate;
+    private MenuCache menuCache;
+    @Autowired
+    private DishSearchIndex dishSearchIndex;
 
     /**
      * 根据分类id查询菜品
@@ -34,21 +41,52 @@ public class DishController {
     @GetMapping("/list")
     @ApiOperation("根据分类id查询菜品")
     public Result<List<DishVO>> list(Long categoryId){
-        //构造redis中的key，规则：dish_分类id
-        String key = "dish_" + categoryId;
-        //查询redis中是否存在菜品数据
-        List<DishVO> list = (List<DishVO>)redisTemplate.opsForValue().get(key);
-        if (list != null && list.size() > 0){
-            //如果存在，直接返回，无须查询数据库
-            return Result.success(list);
+        return Result.success(listByCategoryId(categoryId));
+    }
+
+    /**
+     * 根据名称搜索起售中的菜品
+     * 通过搜索索引查到菜品id后，从各分类的菜品缓存中取出菜品数据，正常情况下不需要查询数据库
+     * @param name
+     * @return
+     */
+    @GetMapping("/search")
+    @ApiOperation("根据名称搜索菜品")
+    public Result<List<DishVO>> search(String name){
+        if (name == null || name.trim().isEmpty()) {
+            return Result.success(new ArrayList<>());
+        }
+
+        Map<Long, Set<Long>> hits = dishSearchIndex.searchGroupByCategory(name, StatusConstant.ENABLE);
+        if (hits == null) {
+            //索引未就绪，查询数据库
+            Dish dish = new Dish();
+            dish.setName(name.trim());
+            dish.setStatus(StatusConstant.ENABLE);
+            return Result.success(dishService.listWithFlavor(dish));
         }
-        Dish dish = new Dish();
-        dish.setCategoryId(categoryId);
-        dish.setStatus(StatusConstant.ENABLE);
-        //如果不存在，查询数据库，将查询到的数据放入redis中
-        list = dishService.listWithFlavor(dish);
-        redisTemplate.opsForValue().set(key,list);
+
+        List<DishVO> list = new ArrayList<>();
+        hits.forEach((categoryId, ids) -> listByCategoryId(categoryId).stream()
+                .filter(dishVO -> ids.contains(dishVO.getId()))
+                .forEach(list::add));
         return Result.success(list);
     }
 
+    /**
+     * 查询分类下起售中的菜品
+     * 构造缓存的key，规则：dish_分类id
+     * 依次查询本地缓存、redis，都不存在时查询数据库，并将查询到的数据放入缓存中
+     * @param categoryId
+     * @return
+     */
+    private List<DishVO> listByCategoryId(Long categoryId) {
+        return menuCache.get(MenuCache.dishKey(categoryId), () -> {
+            Dish dish = new Dish();
+            dish.setCategoryId(categoryId);
+            dish.setStatus(StatusConstant.ENABLE);
+            return dishService.listWithFlavor(dish);
+        });
+    }
+
 }
@@ -19,6 +19,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/user/user")
@@ -33,17 +34,20 @@ public class UserController {
 
     /**
      * 微信登录
+     * 异步处理：请求线程提交登录任务后立即返回，登录完成后再写出响应，等待微信接口期间不占用请求线程
      * @param userLoginDTO
      * @return
      */
     @PostMapping("/login")
     @ApiOperation("微信登录")
-    public Result<UserLoginVO> login(@RequestBody UserLoginDTO userLoginDTO){
+    public CompletableFuture<Result<UserLoginVO>> login(@RequestBody UserLoginDTO userLoginDTO){
         log.info("微信用户登录授权码：{}",userLoginDTO.getCode());
 
         //微信登录
-        User user = userService.wxLogin(userLoginDTO);
+        return userService.wxLoginAsync(userLoginDTO).thenApply(this::loginSuccess);
+    }
 
+    private Result<UserLoginVO> loginSuccess(User user) {
         //为微信用户生成jwt令牌
         Map<String, Object> claims = new HashMap<>();
         claims.put(JwtClaimsConstant.USER_ID,user.getId());
@@ -1,10 +1,9 @@
 package com.sky.interceptor;
 
+import com.sky.cache.VerifiedTokenCache;
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.context.BaseContext;
 import com.sky.properties.JwtProperties;
-import com.sky.utils.JwtUtil;
-import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -23,6 +22,8 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
 
     @Autowired
     private JwtProperties jwtProperties;
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
 
     /**
      * 校验jwt
@@ -45,10 +46,9 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
 
         //2、校验令牌
         try {
-            log.info("jwt校验:{}", token);
-            Claims claims = JwtUtil.parseJWT(jwtProperties.getUserSecretKey(), token);
-            Long userid = Long.valueOf(claims.get(JwtClaimsConstant.USER_ID).toString());
-            log.info("当前用户id：{}", userid);
+            //已校验过的令牌直接从缓存中取出id，不再验签、解析
+            Long userid = verifiedTokenCache.verify(jwtProperties.getUserSecretKey(), token, JwtClaimsConstant.USER_ID);
+            log.debug("当前用户id：{}", userid);
             BaseContext.setCurrentId(userid);
             //3、通过，放行
             return true;
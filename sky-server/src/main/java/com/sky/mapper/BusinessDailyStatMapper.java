@@ -0,0 +1,27 @@
+package com.sky.mapper;
+
+import com.sky.entity.BusinessDailyStat;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface BusinessDailyStatMapper {
+
+    /**
+     * 查询日期范围内（包含begin和end）的每日汇总数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select * from business_daily_stat where stat_date between #{begin} and #{end} order by stat_date")
+    List<BusinessDailyStat> getByDateRange(LocalDate begin, LocalDate end);
+
+    /**
+     * 批量插入每日汇总数据，日期已存在时覆盖
+     * @param stats
+     */
+    void upsertBatch(List<BusinessDailyStat> stats);
+}
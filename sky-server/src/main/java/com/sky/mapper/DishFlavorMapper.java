@@ -30,4 +30,29 @@ public interface DishFlavorMapper {
      */
     @Select("select * from dish_flavor where dish_id = #{dishId}")
     List<DishFlavor> getByDishId(Long id);
+
+    /**
+     * 根据菜品id集合批量查询口味数据
+     * @param dishIds
+     * @return
+     */
+    List<DishFlavor> getByDishIds(List<Long> dishIds);
+
+    /**
+     * 根据菜品id集合批量删除口味数据
+     * @param dishIds
+     */
+    void deleteByDishIds(List<Long> dishIds);
+
+    /**
+     * 根据id批量修改口味的取值，一条update语句完成
+     * @param flavors
+     */
+    void updateBatch(List<DishFlavor> flavors);
+
+    /**
+     * 根据id集合批量删除口味数据
+     * @param ids
+     */
+    void deleteByIds(List<Long> ids);
 }
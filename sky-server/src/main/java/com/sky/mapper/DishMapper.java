@@ -3,8 +3,10 @@ package com.sky.mapper;
 import com.github.pagehelper.Page;
 import com.sky.annotation.AutoFill;
 import com.sky.dto.DishPageQueryDTO;
+import com.sky.dto.StatusCountDTO;
 import com.sky.entity.Dish;
 import com.sky.enumeration.OperationType;
+import com.sky.result.PageCursor;
 import com.sky.vo.DishVO;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Mapper;
@@ -37,6 +39,15 @@ public interface DishMapper {
      */
     Page<DishVO> pageQuery(DishPageQueryDTO dishPageQueryDTO);
 
+    /**
+     * 游标分页查询，按创建时间、id倒序，查询位于cursor之后的limit条记录
+     * @param dishPageQueryDTO
+     * @param cursor 为null时查询第一页
+     * @param limit
+     * @return
+     */
+    List<DishVO> pageQueryByCursor(DishPageQueryDTO dishPageQueryDTO, PageCursor cursor, int limit);
+
     /**
      * 根据主键查询菜品
      * @param id
@@ -73,4 +84,47 @@ public interface DishMapper {
      */
     @Select("select a.* from dish a left join setmeal_dish b on a.id = b.dish_id where b.setmeal_id = #{setmealId}")
     List<Dish> getBySetmealId(Long setmealId);
+
+    /**
+     * 根据菜品id集合查询菜品所属的分类id
+     * @param ids
+     * @return
+     */
+    List<Long> getCategoryIdsByIds(List<Long> ids);
+
+    /**
+     * 统计菜品id集合中指定状态的菜品数量
+     * @param ids
+     * @param status
+     * @return
+     */
+    Integer countByIdsAndStatus(List<Long> ids, Integer status);
+
+    /**
+     * 按状态统计菜品数量
+     * @return
+     */
+    @Select("select status, count(id) as number from dish group by status")
+    List<StatusCountDTO> countGroupByStatus();
+
+    /**
+     * 根据主键集合批量删除菜品
+     * @param ids
+     */
+    void deleteByIds(List<Long> ids);
+
+    /**
+     * 根据主键集合查询菜品
+     * @param ids
+     * @return
+     */
+    List<Dish> getByIds(List<Long> ids);
+
+    /**
+     * 查询使用指定图片的菜品所属的分类id，图片地址以 /对象名称 结尾
+     * @param objectName
+     * @return
+     */
+    @Select("select distinct category_id from dish where image like concat('%/', #{objectName})")
+    List<Long> getCategoryIdsByImage(String objectName);
 }
@@ -3,10 +3,13 @@ package com.sky.mapper;
 import com.github.pagehelper.Page;
 import com.sky.dto.EmployeePageQueryDTO;
 import com.sky.entity.Employee;
+import com.sky.result.PageCursor;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.List;
+
 @Mapper
 public interface EmployeeMapper {
 
@@ -34,6 +37,15 @@ public interface EmployeeMapper {
      */
     Page<Employee> pageQuery(EmployeePageQueryDTO employeePageQueryDTO);
 
+    /**
+     * 游标分页查询，按创建时间、id倒序，查询位于cursor之后的limit条记录
+     * @param employeePageQueryDTO
+     * @param cursor 为null时查询第一页
+     * @param limit
+     * @return
+     */
+    List<Employee> pageQueryByCursor(EmployeePageQueryDTO employeePageQueryDTO, PageCursor cursor, int limit);
+
     /**
      * 根据主键动态修改属性
      * @param employee
@@ -0,0 +1,27 @@
+package com.sky.mapper;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface ImageThumbnailMapper {
+
+    /**
+     * 记录已生成缩略图的原图，已有记录时忽略
+     * @param objectName
+     * @param createTime
+     */
+    @Insert("insert ignore into image_thumbnail (object_name, create_time) values (#{objectName}, #{createTime})")
+    void insert(String objectName, LocalDateTime createTime);
+
+    /**
+     * 查询其中已生成缩略图的原图
+     * @param objectNames
+     * @return
+     */
+    List<String> getByObjectNames(Collection<String> objectNames);
+}
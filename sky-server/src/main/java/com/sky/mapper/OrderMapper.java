@@ -1,8 +1,11 @@
 package com.sky.mapper;
 
 import com.github.pagehelper.Page;
+import com.sky.dto.DailyGoodsSalesDTO;
 import com.sky.dto.GoodsSalesDTO;
 import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.dto.StatusCountDTO;
+import com.sky.entity.BusinessDailyStat;
 import com.sky.entity.Orders;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
@@ -28,6 +31,14 @@ public interface OrderMapper {
     @Select("select * from orders where number = #{orderNumber}")
     Orders getByNumber(String orderNumber);
 
+    /**
+     * 根据id查询订单
+     * @param id
+     * @return
+     */
+    @Select("select * from orders where id = #{id}")
+    Orders getById(Long id);
+
     /**
      * 修改订单信息
      * @param orders
@@ -43,4 +54,92 @@ public interface OrderMapper {
     @Select("select * from orders where status = #{status} and order_time < #{orderTime}")
     List<Orders> getByStatusAndOrderTimeLT(Integer status , LocalDateTime orderTime);
 
+    /**
+     * 批量修改订单状态，只修改当前状态为fromStatus的订单，已被其它操作修改过状态的订单不受影响
+     * @param ids
+     * @param fromStatus
+     * @param orders 修改后的状态及取消原因、取消时间、送达时间、支付状态、结账时间
+     * @return 实际修改的行数
+     */
+    int updateStatusByIds(List<Long> ids, Integer fromStatus, Orders orders);
+
+    /**
+     * 按主键顺序分批查询指定状态、下单时间早于orderTime的订单id，每次从上一批最后一个id之后开始
+     * @param status
+     * @param orderTime
+     * @param lastId
+     * @param limit
+     * @return
+     */
+    @Select("select id from orders where status = #{status} and order_time < #{orderTime} and id > #{lastId} " +
+            "order by id limit #{limit}")
+    List<Long> getIdsByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime, Long lastId, int limit);
+
+    /**
+     * 按主键顺序分批查询指定状态、下单时间早于orderTime的订单id和下单时间，每次从上一批最后一个id之后开始
+     * @param status
+     * @param orderTime
+     * @param lastId
+     * @param limit
+     * @return
+     */
+    @Select("select id, order_time from orders where status = #{status} and order_time < #{orderTime} and id > #{lastId} " +
+            "order by id limit #{limit}")
+    List<Orders> getPageByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime, Long lastId, int limit);
+
+    /**
+     * 查询订单的下单日期（去重）
+     * @param ids
+     * @return
+     */
+    List<LocalDate> getOrderDatesByIds(List<Long> ids);
+
+    /**
+     * 按下单日期分组统计时间范围内的订单数、有效订单数和营业额，一条sql完成
+     * @param begin
+     * @param end 不包含
+     * @return 每个有订单的日期一条记录
+     */
+    List<BusinessDailyStat> sumByOrderDate(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 统计时间范围内已完成订单中销量排名前limit的商品
+     * @param begin
+     * @param end 不包含
+     * @param limit
+     * @return
+     */
+    List<GoodsSalesDTO> getSalesTop(LocalDateTime begin, LocalDateTime end, int limit);
+
+    /**
+     * 按下单日期、商品名称统计已完成订单的销量
+     * @param begin
+     * @param end 不包含
+     * @return
+     */
+    List<DailyGoodsSalesDTO> sumSalesByOrderDate(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 按下单日期、商品名称统计指定订单中已完成订单的销量
+     * @param ids
+     * @return
+     */
+    List<DailyGoodsSalesDTO> sumSalesByIds(List<Long> ids);
+
+    /**
+     * 按状态统计下单时间在范围内的订单数量和金额
+     * @param begin
+     * @param end 不包含
+     * @return
+     */
+    List<StatusCountDTO> countByOrderTimeGroupByStatus(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 按状态统计指定订单中下单时间不早于orderTime的订单数量和金额
+     * @param ids
+     * @param orderTime
+     * @return
+     */
+    List<StatusCountDTO> countByIdsAndOrderTimeGE(List<Long> ids, LocalDateTime orderTime);
+
 }
@@ -30,6 +30,24 @@ public interface SetmealDishMapper {
     @Delete("delete from setmeal_dish where setmeal_id = #{setmealId}")
     void deleteBySetmealId(Long setmealId);
 
+    /**
+     * 根据套餐id集合批量删除套餐和菜品的关联关系
+     * @param setmealIds
+     */
+    void deleteBySetmealIds(List<Long> setmealIds);
+
+    /**
+     * 根据id批量修改套餐和菜品关联关系的名称、价格、份数，一条update语句完成
+     * @param setmealDishes
+     */
+    void updateBatch(List<SetmealDish> setmealDishes);
+
+    /**
+     * 根据id集合批量删除套餐和菜品的关联关系
+     * @param ids
+     */
+    void deleteByIds(List<Long> ids);
+
     /**
      * 根据套餐id查询套餐和菜品的关联关系
      * @param setmealId
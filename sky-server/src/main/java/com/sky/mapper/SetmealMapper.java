@@ -3,9 +3,11 @@ package com.sky.mapper;
 import com.github.pagehelper.Page;
 import com.sky.annotation.AutoFill;
 import com.sky.dto.SetmealPageQueryDTO;
+import com.sky.dto.StatusCountDTO;
 import com.sky.entity.Setmeal;
 import com.sky.entity.SetmealDish;
 import com.sky.enumeration.OperationType;
+import com.sky.result.PageCursor;
 import com.sky.vo.DishItemVO;
 import com.sky.vo.SetmealVO;
 import org.apache.ibatis.annotations.Delete;
@@ -39,6 +41,15 @@ public interface SetmealMapper {
      */
     Page<SetmealVO> pageQuery(SetmealPageQueryDTO setmealPageQueryDTO);
 
+    /**
+     * 游标分页查询，按创建时间、id倒序，查询位于cursor之后的limit条记录
+     * @param setmealPageQueryDTO
+     * @param cursor 为null时查询第一页
+     * @param limit
+     * @return
+     */
+    List<SetmealVO> pageQueryByCursor(SetmealPageQueryDTO setmealPageQueryDTO, PageCursor cursor, int limit);
+
     /**
      * 根据id查询套餐
      * @param id
@@ -66,6 +77,7 @@ public interface SetmealMapper {
      * 更新套餐信息
      * @param setmeal
      */
+    @AutoFill(OperationType.UPDATE)
     void update(Setmeal setmeal);
 
     /**
@@ -84,4 +96,40 @@ public interface SetmealMapper {
             "from setmeal_dish sd left join dish d on sd.dish_id = d.id " +
             "where sd.setmeal_id = #{setmealId}")
     List<DishItemVO> getDishItemBySetmealId(Long setmealId);
+
+    /**
+     * 根据菜品id集合查询包含这些菜品的套餐所属的分类id
+     * @param dishIds
+     * @return
+     */
+    List<Long> getCategoryIdsByDishIds(List<Long> dishIds);
+
+    /**
+     * 统计套餐id集合中指定状态的套餐数量
+     * @param ids
+     * @param status
+     * @return
+     */
+    Integer countByIdsAndStatus(List<Long> ids, Integer status);
+
+    /**
+     * 按状态统计套餐数量
+     * @return
+     */
+    @Select("select status, count(id) as number from setmeal group by status")
+    List<StatusCountDTO> countGroupByStatus();
+
+    /**
+     * 根据id集合批量删除套餐
+     * @param ids
+     */
+    void deleteByIds(List<Long> ids);
+
+    /**
+     * 查询使用指定图片的套餐所属的分类id，图片地址以 /对象名称 结尾
+     * @param objectName
+     * @return
+     */
+    @Select("select distinct category_id from setmeal where image like concat('%/', #{objectName})")
+    List<Long> getCategoryIdsByImage(String objectName);
 }
@@ -1,9 +1,13 @@
 package com.sky.mapper;
 
+import com.sky.entity.BusinessDailyStat;
 import com.sky.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Mapper
 public interface UserMapper {
 
@@ -23,4 +27,20 @@ public interface UserMapper {
 
     @Select("select * from user where id = #{id}")
     User getById(Long userId);
+
+    /**
+     * 统计注册时间早于time的用户数
+     * @param time
+     * @return
+     */
+    @Select("select count(id) from user where create_time < #{time}")
+    Integer countByCreateTimeLT(LocalDateTime time);
+
+    /**
+     * 按注册日期分组统计时间范围内的新增用户数
+     * @param begin
+     * @param end 不包含
+     * @return 每个有新用户的日期一条记录
+     */
+    List<BusinessDailyStat> countByCreateDate(LocalDateTime begin, LocalDateTime end);
 }
@@ -0,0 +1,292 @@
+package com.sky.report;
+
+import com.sky.dto.DailyGoodsSalesDTO;
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.ReportProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 商品销量排名，代替每次查询时对订单明细表的分组统计
+ * 每天一个redis有序集合（member为商品名称，score为销量），订单完成时ZINCRBY累加；
+ * 按日期范围查询时ZUNIONSTORE合并各天的集合，再取前N名，耗时只与天数有关，与订单量无关
+ * 已经从数据库统计过的日期记录在另一个有序集合中（score为epochDay），没有统计过的日期在查询时先从数据库补算
+ * 每天另有一个累加版本号，重新统计时用来发现统计期间的累加
+ * 超出保留天数的日期不在redis中统计（写入后立即过期），包含这些日期的查询直接查询数据库
+ */
+@Component
+@Slf4j
+public class SalesRanking {
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    //已从数据库统计过的日期
+    private static final String DAYS_KEY = "days";
+
+    //每天的累加版本号key前缀
+    private static final String VERSION_PREFIX = "version:";
+
+    //重新统计期间有累加时，最多统计的次数
+    private static final int REBUILD_ATTEMPTS = 3;
+
+    //合并结果保留时间，同一范围的重复查询（多个管理端轮询）可以直接使用
+    private static final long UNION_TTL_SECONDS = 10;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private ReportProperties reportProperties;
+
+    /**
+     * 订单完成后累加销量，这些订单必须都是刚刚变为已完成的，否则会重复累加；需要在订单状态修改的事务提交后调用
+     * 还没有统计过的日期不需要累加，查询时会从数据库完整统计
+     * 累加前先增加这一天的累加版本号，正在重新统计这一天时可以发现，重新统计
+     * @param orderIds
+     */
+    public void increment(List<Long> orderIds) {
+        List<DailyGoodsSalesDTO> sales = orderMapper.sumSalesByIds(orderIds);
+        Map<LocalDate, Boolean> built = new HashMap<>();
+        for (DailyGoodsSalesDTO dto : sales) {
+            LocalDate date = dto.getOrderDate();
+            if (!built.containsKey(date)) {
+                String versionKey = versionKey(date);
+                stringRedisTemplate.opsForValue().increment(versionKey);
+                stringRedisTemplate.expireAt(versionKey, expireAt(date));
+                built.put(date, isBuilt(date));
+            }
+            if (built.get(date)) {
+                stringRedisTemplate.opsForZSet().incrementScore(dayKey(date), dto.getName(), dto.getNumber());
+            }
+        }
+    }
+
+    /**
+     * 查询日期范围内销量前n的商品
+     * @param begin
+     * @param end
+     * @param n
+     * @return
+     */
+    public List<GoodsSalesDTO> top(LocalDate begin, LocalDate end, int n) {
+        if (begin.isBefore(firstRetainedDay())) {
+            return orderMapper.getSalesTop(begin.atStartOfDay(), end.plusDays(1).atStartOfDay(), n);
+        }
+
+        //没有统计过的日期先从数据库补算
+        Set<String> builtDays = stringRedisTemplate.opsForZSet()
+                .rangeByScore(key(DAYS_KEY), begin.toEpochDay(), end.toEpochDay());
+        List<LocalDate> missing = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            if (builtDays == null || !builtDays.contains(date.format(DAY_FORMAT))) {
+                missing.add(date);
+            }
+            keys.add(dayKey(date));
+        }
+        if (!missing.isEmpty()) {
+            rebuild(missing);
+        }
+
+        String resultKey = keys.get(0);
+        if (keys.size() > 1) {
+            resultKey = key("union:" + begin.format(DAY_FORMAT) + ":" + end.format(DAY_FORMAT));
+            stringRedisTemplate.opsForZSet().unionAndStore(keys.get(0), keys.subList(1, keys.size()), resultKey);
+            stringRedisTemplate.expire(resultKey, UNION_TTL_SECONDS, TimeUnit.SECONDS);
+        }
+
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                .reverseRangeWithScores(resultKey, 0, n - 1);
+        List<GoodsSalesDTO> result = new ArrayList<>();
+        if (tuples != null) {
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                result.add(new GoodsSalesDTO(tuple.getValue(), tuple.getScore().intValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 从数据库重新统计日期范围内每一天的销量
+     * 每天的数据先写入临时key再RENAME，替换是原子的，查询不会看到统计了一半的数据
+     * 分组统计到RENAME之间的累加会被覆盖：统计前后比较每天的累加版本号，有变化的日期重新统计，最多REBUILD_ATTEMPTS次；
+     * 事务提交后迟迟没有执行、直到RENAME之后才累加的订单仍可能重复累加，由每晚的核对任务修正
+     * @param begin
+     * @param end
+     */
+    public void rebuild(LocalDate begin, LocalDate end) {
+        rebuild(begin, end, 1);
+    }
+
+    /**
+     * 从数据库重新统计指定日期的销量，连续的日期合并为一段统计
+     * @param dates
+     */
+    public void rebuild(Collection<LocalDate> dates) {
+        rebuild(dates, 1);
+    }
+
+    private void rebuild(Collection<LocalDate> dates, int attempt) {
+        List<LocalDate> sorted = dates.stream().distinct().sorted().collect(Collectors.toList());
+        int from = 0;
+        for (int i = 1; i <= sorted.size(); i++) {
+            if (i == sorted.size() || !sorted.get(i).equals(sorted.get(i - 1).plusDays(1))) {
+                rebuild(sorted.get(from), sorted.get(i - 1), attempt);
+                from = i;
+            }
+        }
+    }
+
+    private void rebuild(LocalDate begin, LocalDate end, int attempt) {
+        //超出保留天数的日期写入后立即过期，不统计也不记录为已统计
+        if (begin.isBefore(firstRetainedDay())) {
+            begin = firstRetainedDay();
+        }
+        if (begin.isAfter(end)) {
+            return;
+        }
+        List<String> versionKeys = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            versionKeys.add(versionKey(date));
+        }
+        List<String> versions = stringRedisTemplate.opsForValue().multiGet(versionKeys);
+
+        Map<LocalDate, Set<ZSetOperations.TypedTuple<String>>> salesMap = new HashMap<>();
+        for (DailyGoodsSalesDTO dto : orderMapper.sumSalesByOrderDate(begin.atStartOfDay(), end.plusDays(1).atStartOfDay())) {
+            salesMap.computeIfAbsent(dto.getOrderDate(), k -> new HashSet<>())
+                    .add(new DefaultTypedTuple<>(dto.getName(), dto.getNumber().doubleValue()));
+        }
+
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            String key = dayKey(date);
+            Set<ZSetOperations.TypedTuple<String>> tuples = salesMap.get(date);
+            if (tuples == null) {
+                stringRedisTemplate.delete(key);
+            } else {
+                String tempKey = key + ":" + UUID.randomUUID();
+                stringRedisTemplate.opsForZSet().add(tempKey, tuples);
+                stringRedisTemplate.rename(tempKey, key);
+                stringRedisTemplate.expireAt(key, expireAt(date));
+            }
+            stringRedisTemplate.opsForZSet().add(key(DAYS_KEY), date.format(DAY_FORMAT), date.toEpochDay());
+        }
+        log.info("重新统计商品销量排名：{} ~ {}", begin, end);
+
+        //统计期间有累加的日期重新统计
+        List<String> latest = stringRedisTemplate.opsForValue().multiGet(versionKeys);
+        List<LocalDate> changed = new ArrayList<>();
+        for (int i = 0; i < versionKeys.size(); i++) {
+            if (!Objects.equals(version(versions, i), version(latest, i))) {
+                changed.add(begin.plusDays(i));
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        if (attempt >= REBUILD_ATTEMPTS) {
+            log.warn("重新统计商品销量排名期间仍有累加，由核对任务修正：{}", changed);
+            return;
+        }
+        rebuild(changed, attempt + 1);
+    }
+
+    private static String version(List<String> versions, int index) {
+        return versions == null ? null : versions.get(index);
+    }
+
+    /**
+     * 与数据库核对日期范围内每一天的销量，不一致的日期重新统计
+     * @param begin
+     * @param end
+     * @return 不一致的天数
+     */
+    public int check(LocalDate begin, LocalDate end) {
+        if (begin.isBefore(firstRetainedDay())) {
+            begin = firstRetainedDay();
+        }
+        Map<LocalDate, Map<String, Integer>> expected = new HashMap<>();
+        for (DailyGoodsSalesDTO dto : orderMapper.sumSalesByOrderDate(begin.atStartOfDay(), end.plusDays(1).atStartOfDay())) {
+            expected.computeIfAbsent(dto.getOrderDate(), k -> new HashMap<>()).put(dto.getName(), dto.getNumber());
+        }
+
+        Set<LocalDate> mismatched = new TreeSet<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            Map<String, Integer> actual = new HashMap<>();
+            Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet().rangeWithScores(dayKey(date), 0, -1);
+            if (tuples != null) {
+                for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                    actual.put(tuple.getValue(), tuple.getScore().intValue());
+                }
+            }
+            if (!actual.equals(expected.getOrDefault(date, new HashMap<>()))) {
+                mismatched.add(date);
+            }
+        }
+
+        for (LocalDate date : mismatched) {
+            log.warn("商品销量排名与数据库不一致，重新统计：{}", date);
+            rebuild(date, date);
+        }
+        return mismatched.size();
+    }
+
+    /**
+     * 清理已过期日期的统计记录，各天的有序集合本身由过期时间自动删除
+     */
+    public void cleanup() {
+        long before = LocalDate.now().minusDays(reportProperties.getSalesRankRetentionDays()).toEpochDay();
+        stringRedisTemplate.opsForZSet().removeRangeByScore(key(DAYS_KEY), Double.NEGATIVE_INFINITY, before);
+    }
+
+    private boolean isBuilt(LocalDate date) {
+        return stringRedisTemplate.opsForZSet().score(key(DAYS_KEY), date.format(DAY_FORMAT)) != null;
+    }
+
+    /**
+     * 还在保留期内的最早日期，更早日期的有序集合已过期
+     * @return
+     */
+    private LocalDate firstRetainedDay() {
+        return LocalDate.now().minusDays(reportProperties.getSalesRankRetentionDays());
+    }
+
+    private Date expireAt(LocalDate date) {
+        return Date.from(date.plusDays(reportProperties.getSalesRankRetentionDays() + 1)
+                .atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private String versionKey(LocalDate date) {
+        return key(VERSION_PREFIX + date.format(DAY_FORMAT));
+    }
+
+    private String dayKey(LocalDate date) {
+        return key(date.format(DAY_FORMAT));
+    }
+
+    private String key(String suffix) {
+        return reportProperties.getSalesRankKeyPrefix() + suffix;
+    }
+}
@@ -0,0 +1,291 @@
+package com.sky.report;
+
+import com.sky.dto.StatusCountDTO;
+import com.sky.entity.BusinessDailyStat;
+import com.sky.entity.Orders;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.properties.ReportProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 工作台计数器，管理端工作台的各项数据从这里读取，不再每次轮询都执行count查询
+ * 当天订单保存在redis hash中：各状态的订单数（field为状态值）、营业额（单位：分）、新增用户数，下单、支付、批量修改状态（事务提交后）、注册时增量更新；
+ * 菜品、套餐按起售/停售的数量保存在redis hash中，数据有变化的事务提交后重新统计（数据量小且修改很少）
+ * 定时与数据库核对并覆盖，修正增量更新失败、并发覆盖等造成的偏差
+ */
+@Component
+@Slf4j
+public class WorkspaceCounter {
+
+    public static final String TURNOVER = "turnover";
+    public static final String NEW_USERS = "newUsers";
+
+    //已从数据库完整统计过的标记，没有该标记的hash只有零散的增量，读取前需要先统计
+    private static final String READY = "ready";
+
+    private static final String DISH = "dish";
+    private static final String SETMEAL = "setmeal";
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    //当天订单计数保留时间
+    private static final long ORDER_KEY_TTL_DAYS = 2;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private ReportProperties reportProperties;
+
+    /**
+     * 用户下单，在事务提交后累加，事务回滚时不计数
+     */
+    public void orderSubmitted() {
+        afterCommit(() -> increment(ordersKey(LocalDate.now()), Orders.PENDING_PAYMENT.toString(), 1));
+    }
+
+    /**
+     * 订单支付成功，在事务提交后累加
+     * @param orderTime
+     */
+    public void orderPaid(LocalDateTime orderTime) {
+        LocalDate date = orderTime.toLocalDate();
+        afterCommit(() -> {
+            if (date.equals(LocalDate.now())) {
+                increment(ordersKey(date), Orders.PENDING_PAYMENT.toString(), -1);
+                increment(ordersKey(date), Orders.TO_BE_CONFIRMED.toString(), 1);
+            }
+        });
+    }
+
+    /**
+     * 批量修改订单状态后调用，在事务提交后更新
+     * 所有订单都修改成功时，按其中当天订单的数量和金额增量更新；只有部分修改成功时无法区分，重新统计当天数据
+     * @param ids
+     * @param fromStatus
+     * @param toStatus
+     * @param rows 实际修改的订单数
+     */
+    public void ordersStatusChanged(List<Long> ids, Integer fromStatus, Integer toStatus, int rows) {
+        if (rows == 0) {
+            return;
+        }
+        List<Long> orderIds = new ArrayList<>(ids);
+        afterCommit(() -> applyStatusChange(orderIds, fromStatus, toStatus, rows));
+    }
+
+    private void applyStatusChange(List<Long> ids, Integer fromStatus, Integer toStatus, int rows) {
+        try {
+            LocalDate today = LocalDate.now();
+            List<StatusCountDTO> counts = orderMapper.countByIdsAndOrderTimeGE(ids, today.atStartOfDay());
+            StatusCountDTO changed = null;
+            for (StatusCountDTO count : counts) {
+                if (toStatus.equals(count.getStatus())) {
+                    changed = count;
+                }
+            }
+            if (changed == null) {
+                return;
+            }
+            if (rows < ids.size()) {
+                reconcileOrders(today);
+                return;
+            }
+
+            String key = ordersKey(today);
+            increment(key, fromStatus.toString(), -changed.getNumber());
+            increment(key, toStatus.toString(), changed.getNumber());
+            if (Orders.COMPLETED.equals(toStatus)) {
+                increment(key, TURNOVER, toCent(changed.getAmount()));
+            }
+        } catch (Exception e) {
+            log.error("更新工作台订单计数失败", e);
+        }
+    }
+
+    /**
+     * 新用户注册
+     */
+    public void userCreated() {
+        increment(ordersKey(LocalDate.now()), NEW_USERS, 1);
+    }
+
+    /**
+     * 菜品新增、删除、起售停售后调用，在事务提交后重新统计
+     */
+    public void dishChanged() {
+        afterCommit(() -> reconcileProducts(DISH, dishMapper.countGroupByStatus()));
+    }
+
+    /**
+     * 套餐新增、删除、起售停售后调用，在事务提交后重新统计
+     */
+    public void setmealChanged() {
+        afterCommit(() -> reconcileProducts(SETMEAL, setmealMapper.countGroupByStatus()));
+    }
+
+    /**
+     * 当天订单计数：各状态的订单数（key为状态值）、营业额（分）、新增用户数
+     * @return
+     */
+    public Map<String, Long> getOrderCounts() {
+        LocalDate today = LocalDate.now();
+        Map<String, Long> counts = entries(ordersKey(today));
+        if (!counts.containsKey(READY)) {
+            counts = reconcileOrders(today);
+        }
+        return counts;
+    }
+
+    /**
+     * 菜品计数：key为状态值
+     * @return
+     */
+    public Map<String, Long> getDishCounts() {
+        Map<String, Long> counts = entries(key(DISH));
+        return counts.containsKey(READY) ? counts : reconcileProducts(DISH, dishMapper.countGroupByStatus());
+    }
+
+    /**
+     * 套餐计数：key为状态值
+     * @return
+     */
+    public Map<String, Long> getSetmealCounts() {
+        Map<String, Long> counts = entries(key(SETMEAL));
+        return counts.containsKey(READY) ? counts : reconcileProducts(SETMEAL, setmealMapper.countGroupByStatus());
+    }
+
+    /**
+     * 定时与数据库核对，以数据库为准覆盖
+     */
+    @Scheduled(fixedDelayString = "${sky.report.workspace-reconcile-millis:300000}")
+    public void reconcile() {
+        try {
+            reconcileOrders(LocalDate.now());
+            reconcileProducts(DISH, dishMapper.countGroupByStatus());
+            reconcileProducts(SETMEAL, setmealMapper.countGroupByStatus());
+        } catch (Exception e) {
+            log.error("核对工作台计数失败", e);
+        }
+    }
+
+    private Map<String, Long> reconcileOrders(LocalDate date) {
+        LocalDateTime begin = date.atStartOfDay();
+        LocalDateTime end = date.plusDays(1).atStartOfDay();
+
+        Map<String, Long> counts = new HashMap<>();
+        for (int status = Orders.PENDING_PAYMENT; status <= Orders.CANCELLED; status++) {
+            counts.put(String.valueOf(status), 0L);
+        }
+        long turnover = 0;
+        for (StatusCountDTO count : orderMapper.countByOrderTimeGroupByStatus(begin, end)) {
+            counts.put(count.getStatus().toString(), count.getNumber().longValue());
+            if (Orders.COMPLETED.equals(count.getStatus())) {
+                turnover = toCent(count.getAmount());
+            }
+        }
+        counts.put(TURNOVER, turnover);
+        long newUsers = 0;
+        for (BusinessDailyStat stat : userMapper.countByCreateDate(begin, end)) {
+            newUsers += stat.getNewUserCount();
+        }
+        counts.put(NEW_USERS, newUsers);
+        counts.put(READY, 1L);
+
+        String key = ordersKey(date);
+        stringRedisTemplate.opsForHash().putAll(key, toStrings(counts));
+        stringRedisTemplate.expire(key, ORDER_KEY_TTL_DAYS, TimeUnit.DAYS);
+        return counts;
+    }
+
+    private Map<String, Long> reconcileProducts(String type, List<StatusCountDTO> statusCounts) {
+        Map<String, Long> counts = new HashMap<>();
+        counts.put("0", 0L);
+        counts.put("1", 0L);
+        for (StatusCountDTO count : statusCounts) {
+            counts.put(count.getStatus().toString(), count.getNumber().longValue());
+        }
+        counts.put(READY, 1L);
+        stringRedisTemplate.opsForHash().putAll(key(type), toStrings(counts));
+        return counts;
+    }
+
+    private void increment(String key, String field, long delta) {
+        try {
+            stringRedisTemplate.opsForHash().increment(key, field, delta);
+        } catch (Exception e) {
+            log.error("更新工作台计数失败：{} {}", key, field, e);
+        }
+    }
+
+    private void afterCommit(Runnable runnable) {
+        Runnable task = () -> {
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                log.error("更新工作台计数失败", e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
+    private Map<String, Long> entries(String key) {
+        Map<String, Long> counts = new HashMap<>();
+        stringRedisTemplate.opsForHash().entries(key)
+                .forEach((field, value) -> counts.put((String) field, Long.valueOf((String) value)));
+        return counts;
+    }
+
+    private static Map<String, String> toStrings(Map<String, Long> counts) {
+        Map<String, String> result = new HashMap<>();
+        counts.forEach((field, value) -> result.put(field, value.toString()));
+        return result;
+    }
+
+    private static long toCent(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).longValue();
+    }
+
+    private String ordersKey(LocalDate date) {
+        return key("orders:" + date.format(DAY_FORMAT));
+    }
+
+    private String key(String suffix) {
+        return reportProperties.getWorkspaceKeyPrefix() + suffix;
+    }
+}
@@ -0,0 +1,291 @@
+package com.sky.search;
+
+import com.sky.entity.Dish;
+import com.sky.mapper.DishMapper;
+import com.sky.properties.SearchProperties;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 菜品名称的进程内倒排索引，代替 name like '%关键字%' 的全表扫描
+ * 菜品名称按单字和相邻两字切分（中文没有空格分词，二元切分即可覆盖任意子串），
+ * 查询时取关键字中命中菜品最少的一个词的倒排列表，再校验名称包含关键字，结果与like完全一致
+ * 应用启动时从菜品表构建，菜品新增、修改、删除、起售停售提交后增量更新，并通过redis发布订阅通知其它节点
+ */
+@Component
+@Slf4j
+public class DishSearchIndex implements MessageListener {
+
+    private static final String ID_SEPARATOR = ",";
+
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Autowired
+    private SearchProperties searchProperties;
+
+    //词 -> 名称中包含该词的菜品id
+    private final ConcurrentHashMap<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    //菜品id -> 索引中的菜品信息
+    private final ConcurrentHashMap<Long, Doc> docs = new ConcurrentHashMap<>();
+
+    //索引构建完成前查询返回null，调用方退回数据库查询
+    private volatile boolean ready;
+
+    //构建期间收到变化的菜品id，构建完成后重新加载，避免构建时读到的旧数据覆盖较新的增量更新；不在构建时为null
+    private Set<Long> changedDuringBuild;
+
+    @AllArgsConstructor
+    private static class Doc {
+        private final String name;
+        private final Long categoryId;
+        private final Integer status;
+    }
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(searchProperties.getDishChannel()));
+    }
+
+    /**
+     * 应用启动后从菜品表构建索引
+     * 全量查询期间到达的增量更新先照常生效，全量数据写入索引后再重新加载一次这些菜品
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            changedDuringBuild = new HashSet<>();
+        }
+        List<Dish> dishList = dishMapper.list(new Dish());
+        List<Long> changed;
+        synchronized (this) {
+            dishList.forEach(this::put);
+            changed = new ArrayList<>(changedDuringBuild);
+            changedDuringBuild = null;
+        }
+        if (!changed.isEmpty()) {
+            reload(changed);
+        }
+        ready = true;
+        log.info("菜品搜索索引构建完成，菜品数：{}，词数：{}，耗时{}ms",
+                docs.size(), postings.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 查询名称包含关键字的菜品id
+     * @param keyword
+     * @return 索引未就绪时返回null
+     */
+    public List<Long> search(String keyword) {
+        return search(keyword, null);
+    }
+
+    /**
+     * 查询名称包含关键字、且状态为status的菜品id
+     * @param keyword
+     * @param status 为null时不限制状态
+     * @return 索引未就绪时返回null
+     */
+    public List<Long> search(String keyword, Integer status) {
+        if (!ready) {
+            return null;
+        }
+        String query = normalize(keyword);
+        if (query.isEmpty()) {
+            return new ArrayList<>(docs.keySet());
+        }
+
+        //取命中菜品最少的词作为候选集合
+        Set<Long> candidates = null;
+        for (String token : tokens(query)) {
+            Set<Long> ids = postings.get(token);
+            if (ids == null) {
+                return Collections.emptyList();
+            }
+            if (candidates == null || ids.size() < candidates.size()) {
+                candidates = ids;
+            }
+        }
+
+        List<Long> result = new ArrayList<>();
+        for (Long id : candidates) {
+            Doc doc = docs.get(id);
+            if (doc != null && doc.name.contains(query) && (status == null || status.equals(doc.status))) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 查询名称包含关键字、且状态为status的菜品id，按分类分组
+     * @param keyword
+     * @param status
+     * @return 索引未就绪时返回null
+     */
+    public Map<Long, Set<Long>> searchGroupByCategory(String keyword, Integer status) {
+        List<Long> ids = search(keyword, status);
+        if (ids == null) {
+            return null;
+        }
+        Map<Long, Set<Long>> result = new LinkedHashMap<>();
+        for (Long id : ids) {
+            Doc doc = docs.get(id);
+            if (doc != null) {
+                result.computeIfAbsent(doc.categoryId, k -> new LinkedHashSet<>()).add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 菜品发生变化后调用，在事务提交后重新加载这些菜品，并通知其它节点
+     * @param dishIds
+     */
+    public void refresh(Collection<Long> dishIds) {
+        if (dishIds == null || dishIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(dishIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(ids);
+                }
+            });
+        } else {
+            publish(ids);
+        }
+    }
+
+    private void publish(List<Long> ids) {
+        String message = ids.stream().map(String::valueOf).collect(Collectors.joining(ID_SEPARATOR));
+        stringRedisTemplate.convertAndSend(searchProperties.getDishChannel(), message);
+    }
+
+    /**
+     * 接收其它节点（包括自己）广播的菜品变化消息，重新加载这些菜品
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        List<Long> ids = new ArrayList<>();
+        for (String id : new String(message.getBody(), StandardCharsets.UTF_8).split(ID_SEPARATOR)) {
+            ids.add(Long.valueOf(id));
+        }
+        reload(ids);
+    }
+
+    private void reload(List<Long> ids) {
+        Map<Long, Dish> dishMap = new HashMap<>();
+        dishMapper.getByIds(ids).forEach(dish -> dishMap.put(dish.getId(), dish));
+        synchronized (this) {
+            if (changedDuringBuild != null) {
+                changedDuringBuild.addAll(ids);
+            }
+            for (Long id : ids) {
+                remove(id);
+                Dish dish = dishMap.get(id);
+                if (dish != null) {
+                    put(dish);
+                }
+            }
+        }
+    }
+
+    private void put(Dish dish) {
+        Doc doc = new Doc(normalize(dish.getName()), dish.getCategoryId(), dish.getStatus());
+        Doc previous = docs.put(dish.getId(), doc);
+        if (previous != null) {
+            removeTokens(dish.getId(), previous);
+        }
+        for (String token : allTokens(doc.name)) {
+            postings.computeIfAbsent(token, k -> ConcurrentHashMap.newKeySet()).add(dish.getId());
+        }
+    }
+
+    private void remove(Long id) {
+        Doc doc = docs.remove(id);
+        if (doc != null) {
+            removeTokens(id, doc);
+        }
+    }
+
+    private void removeTokens(Long id, Doc doc) {
+        for (String token : allTokens(doc.name)) {
+            postings.computeIfPresent(token, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * 建索引时的切分：所有单字和相邻两字
+     * @param name
+     * @return
+     */
+    private static Set<String> allTokens(String name) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (int i = 0; i < name.length(); i++) {
+            tokens.add(name.substring(i, i + 1));
+            if (i + 1 < name.length()) {
+                tokens.add(name.substring(i, i + 2));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 查询时的切分：单字关键字用单字，否则用相邻两字
+     * @param query
+     * @return
+     */
+    private static Set<String> tokens(String query) {
+        if (query.length() == 1) {
+            return Collections.singleton(query);
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        for (int i = 0; i + 1 < query.length(); i++) {
+            tokens.add(query.substring(i, i + 2));
+        }
+        return tokens;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase();
+    }
+}
@@ -36,10 +36,11 @@ public interface DishService {
     DishVO getByIdWithFlavor(Long id);
 
     /**
-     * 根据id修改菜品基本信息和对应口味信息
+     * 根据id修改菜品基本信息和对应口味信息，只修改有变化的数据
      * @param dishDTO
+     * @return 是否有数据发生变化
      */
-    void updateWithFlavor(DishDTO dishDTO);
+    boolean updateWithFlavor(DishDTO dishDTO);
 
     /**
      * 根据分类id查询菜品
@@ -61,4 +62,11 @@ public interface DishService {
      * @param id
      */
     void startOrStop(Integer status, Long id);
+
+    /**
+     * 根据菜品id集合查询菜品所属的分类id
+     * @param ids
+     * @return
+     */
+    List<Long> getCategoryIdsByIds(List<Long> ids);
 }
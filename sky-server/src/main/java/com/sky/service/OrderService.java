@@ -1,8 +1,12 @@
 package com.sky.service;
 
 import com.sky.dto.*;
+import com.sky.entity.Orders;
 import com.sky.vo.*;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 public interface OrderService {
 
     /**
@@ -25,4 +29,28 @@ public interface OrderService {
      */
     void paySuccess(String outTradeNo);
 
+    /**
+     * 客户催单
+     * @param id
+     */
+    void reminder(Long id);
+
+    /**
+     * 批量修改指定订单的状态，只修改当前状态为fromStatus的订单
+     * @param ids
+     * @param fromStatus
+     * @param orders 修改后的状态及取消原因、取消时间、送达时间
+     * @return 实际修改的行数
+     */
+    int updateStatusByIds(List<Long> ids, Integer fromStatus, Orders orders);
+
+    /**
+     * 批量修改指定状态、下单时间早于orderTime的订单状态
+     * @param fromStatus
+     * @param orderTime
+     * @param orders 修改后的状态及取消原因、取消时间、送达时间
+     * @return 实际修改的行数
+     */
+    int updateStatusByStatusAndOrderTimeLT(Integer fromStatus, LocalDateTime orderTime, Orders orders);
+
 }
@@ -0,0 +1,88 @@
+package com.sky.service;
+
+import com.sky.entity.BusinessDailyStat;
+import com.sky.vo.OrderReportVO;
+import com.sky.vo.SalesTop10ReportVO;
+import com.sky.vo.TurnoverReportVO;
+import com.sky.vo.UserReportVO;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface ReportService {
+
+    /**
+     * 营业额统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    TurnoverReportVO getTurnoverStatistics(LocalDate begin, LocalDate end);
+
+    /**
+     * 用户统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    UserReportVO getUserStatistics(LocalDate begin, LocalDate end);
+
+    /**
+     * 订单统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    OrderReportVO getOrderStatistics(LocalDate begin, LocalDate end);
+
+    /**
+     * 销量排名前10的商品
+     * @param begin
+     * @param end
+     * @return
+     */
+    SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end);
+
+    /**
+     * 查询日期范围内每一天的汇总数据，没有数据的日期也返回一条全为0的记录
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<BusinessDailyStat> getDailyStats(LocalDate begin, LocalDate end);
+
+    /**
+     * 订单完成后调用，更新商品销量排名，返回需要重新计算汇总数据的下单日期（当天的数据实时计算，不包括在内）
+     * 批量完成订单时每批调用一次，全部完成后对所有批次返回的日期调用一次rebuild，同一天只计算一次
+     * @param orderIds
+     * @param rows orderIds中实际变为已完成的订单数
+     * @return
+     */
+    Set<LocalDate> onOrdersCompleted(List<Long> orderIds, int rows);
+
+    /**
+     * 重新计算指定日期的每日汇总数据，连续的日期合并为一段计算
+     * @param dates
+     */
+    void rebuild(Collection<LocalDate> dates);
+
+    /**
+     * 重新计算日期范围内的每日汇总数据
+     * @param begin
+     * @param end
+     */
+    void rebuild(LocalDate begin, LocalDate end);
+
+    /**
+     * 导出运营数据报表，直接写入输出流
+     * @param begin
+     * @param end
+     * @param out
+     * @throws IOException
+     */
+    void exportBusinessData(LocalDate begin, LocalDate end, OutputStream out) throws IOException;
+}
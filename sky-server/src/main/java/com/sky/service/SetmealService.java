@@ -38,10 +38,11 @@ public interface SetmealService {
     SetmealVO getByIdWithDish(Long id);
 
     /**
-     * 修改套餐
+     * 修改套餐，只修改有变化的数据
      * @param setmealDTO
+     * @return 是否有数据发生变化
      */
-    void update(SetmealDTO setmealDTO);
+    boolean update(SetmealDTO setmealDTO);
 
     /**
      * 套餐起售、停售
@@ -55,7 +56,7 @@ public interface SetmealService {
      * @param setmeal
      * @return
      */
-    List<Setmeal> list(Setmeal setmeal);
+    List<SetmealVO> list(Setmeal setmeal);
 
     /**
      * 根据id查询菜品选项
@@ -63,4 +64,11 @@ public interface SetmealService {
      * @return
      */
     List<DishItemVO> getDishItemById(Long id);
+
+    /**
+     * 根据菜品id集合查询包含这些菜品的套餐所属的分类id
+     * @param dishIds
+     * @return
+     */
+    List<Long> getCategoryIdsByDishIds(List<Long> dishIds);
 }
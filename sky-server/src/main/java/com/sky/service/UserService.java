@@ -4,6 +4,8 @@ import com.sky.dto.UserLoginDTO;
 import com.sky.entity.User;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface UserService {
 
     /**
@@ -12,4 +14,11 @@ public interface UserService {
      * @return
      */
     User wxLogin(UserLoginDTO userLoginDTO);
+
+    /**
+     * 微信登录，在微信登录线程池中执行，不阻塞请求线程
+     * @param userLoginDTO
+     * @return
+     */
+    CompletableFuture<User> wxLoginAsync(UserLoginDTO userLoginDTO);
 }
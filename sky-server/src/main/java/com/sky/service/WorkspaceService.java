@@ -0,0 +1,33 @@
+package com.sky.service;
+
+import com.sky.vo.BusinessDataVO;
+import com.sky.vo.DishOverViewVO;
+import com.sky.vo.OrderOverViewVO;
+import com.sky.vo.SetmealOverViewVO;
+
+public interface WorkspaceService {
+
+    /**
+     * 今日运营数据
+     * @return
+     */
+    BusinessDataVO getBusinessData();
+
+    /**
+     * 今日订单管理数据
+     * @return
+     */
+    OrderOverViewVO getOrderOverView();
+
+    /**
+     * 菜品总览
+     * @return
+     */
+    DishOverViewVO getDishOverView();
+
+    /**
+     * 套餐总览
+     * @return
+     */
+    SetmealOverViewVO getSetmealOverView();
+}
@@ -13,8 +13,15 @@ import com.sky.exception.DeletionNotAllowedException;
 import com.sky.mapper.DishFlavorMapper;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
+import com.sky.properties.SearchProperties;
+import com.sky.result.PageCursor;
 import com.sky.result.PageResult;
+import com.sky.report.WorkspaceCounter;
+import com.sky.search.DishSearchIndex;
 import com.sky.service.DishService;
+import com.sky.task.ThumbnailTask;
+import com.sky.utils.ChangeUtil;
+import com.sky.utils.ImageUtil;
 import com.sky.vo.DishVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -24,7 +31,13 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -36,6 +49,14 @@ public class DishServiceImpl implements DishService {
     private DishFlavorMapper dishFlavorMapper;
     @Autowired
     private SetmealDishMapper setmealDishMapper;
+    @Autowired
+    private DishSearchIndex dishSearchIndex;
+    @Autowired
+    private SearchProperties searchProperties;
+    @Autowired
+    private WorkspaceCounter workspaceCounter;
+    @Autowired
+    private ThumbnailTask thumbnailTask;
     /**
      * 新增菜品和对应口味
      * @param dishDTO
@@ -61,33 +82,54 @@ public class DishServiceImpl implements DishService {
             //向口味表插入n条数据
             dishFlavorMapper.insertBatch(flavors);
         }
+        dishSearchIndex.refresh(Collections.singletonList(dishId));
+        workspaceCounter.dishChanged();
     }
 
     /**
      * 菜品分页查询
+     * 传入cursor时按游标分页，否则按页码分页，skipCount为true时不执行count查询
      * @param dishPageQueryDTO
      * @return
      */
     @Override
     public PageResult pageQuery(DishPageQueryDTO dishPageQueryDTO) {
-        PageHelper.startPage(dishPageQueryDTO.getPage(),dishPageQueryDTO.getPageSize());
+        //按名称搜索时先查询搜索索引，索引未就绪或命中的菜品太多时退回数据库模糊查询
+        dishPageQueryDTO.setIds(null);
+        String name = dishPageQueryDTO.getName();
+        if (name != null && !name.trim().isEmpty()) {
+            List<Long> ids = dishSearchIndex.search(name);
+            if (ids != null && ids.isEmpty()) {
+                return new PageResult(0, new ArrayList<>());
+            }
+            if (ids != null && ids.size() <= searchProperties.getMaxPageQueryIds()) {
+                dishPageQueryDTO.setIds(ids);
+            }
+        }
+
+        if (dishPageQueryDTO.getCursor() != null) {
+            int pageSize = PageCursor.pageSize(dishPageQueryDTO.getPageSize());
+            List<DishVO> rows = dishMapper.pageQueryByCursor(dishPageQueryDTO,
+                    PageCursor.decode(dishPageQueryDTO.getCursor()), pageSize + 1);
+            return PageCursor.page(rows, pageSize, DishVO::getCreateTime, DishVO::getId);
+        }
+        PageHelper.startPage(dishPageQueryDTO.getPage(),dishPageQueryDTO.getPageSize(),!dishPageQueryDTO.isSkipCount());
         Page<DishVO> page = dishMapper.pageQuery(dishPageQueryDTO);
         return new PageResult(page.getTotal(),page.getResult());
     }
 
     /**
      * 菜品批量删除
+     * 不论删除多少个菜品，都只执行4条sql：统计起售数量、查询关联套餐、删除菜品、删除口味
      * @param ids
      */
+    @Transactional
     @Override
     public void deleteBatch(List<Long> ids) {
         //判断当前菜品能否删除--是否存在起售中的菜品？
-        for (Long id:ids){
-            Dish dish = dishMapper.getById(id);
-            if (dish.getStatus() == StatusConstant.ENABLE){
-                //当前菜品处于起售中，不能删除
-                throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
-            }
+        if (dishMapper.countByIdsAndStatus(ids, StatusConstant.ENABLE) > 0){
+            //当前菜品处于起售中，不能删除
+            throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
         }
 
         //判断当前菜品是否能被删除--是否被套餐关联了？
@@ -98,11 +140,11 @@ public class DishServiceImpl implements DishService {
         }
 
         //删除菜品表中的菜品数据
-        for(Long id : ids){
-            dishMapper.deleteById(id);//后续步骤实现
-            //删除菜品关联的口味数据
-            dishFlavorMapper.deleteByDishId(id);//后续步骤实现
-        }
+        dishMapper.deleteByIds(ids);
+        //删除菜品关联的口味数据
+        dishFlavorMapper.deleteByDishIds(ids);
+        dishSearchIndex.refresh(ids);
+        workspaceCounter.dishChanged();
     }
 
     /**
@@ -128,29 +170,80 @@ public class DishServiceImpl implements DishService {
 
     /**
      * 根据id修改菜品基本信息和对应的口味信息
+     * 与数据库中的数据比较，菜品表只在有变化时修改；口味按名称比较，只新增、修改、删除有变化的口味
      * @param dishDTO
+     * @return 是否有数据发生变化
      */
+    @Transactional
     @Override
-    public void updateWithFlavor(DishDTO dishDTO) {
-        Dish dish = new Dish();
-        BeanUtils.copyProperties(dishDTO,dish);
+    public boolean updateWithFlavor(DishDTO dishDTO) {
+        Long dishId = dishDTO.getId();
+        Dish dishDB = dishMapper.getById(dishId);
+        if (dishDB == null) {
+            return false;
+        }
+        boolean changed = false;
 
         //修改菜品表基本信息
-        dishMapper.update(dish);
+        if (ChangeUtil.isChanged(dishDTO.getName(), dishDB.getName())
+                || ChangeUtil.isChanged(dishDTO.getCategoryId(), dishDB.getCategoryId())
+                || ChangeUtil.isChanged(dishDTO.getPrice(), dishDB.getPrice())
+                || ChangeUtil.isChanged(dishDTO.getImage(), dishDB.getImage())
+                || ChangeUtil.isChanged(dishDTO.getDescription(), dishDB.getDescription())
+                || ChangeUtil.isChanged(dishDTO.getStatus(), dishDB.getStatus())) {
+            Dish dish = new Dish();
+            BeanUtils.copyProperties(dishDTO,dish);
+            dishMapper.update(dish);
+            dishSearchIndex.refresh(Collections.singletonList(dishId));
+            //起售停售的菜品数量有变化，重新统计工作台计数
+            if (ChangeUtil.isChanged(dishDTO.getStatus(), dishDB.getStatus())) {
+                workspaceCounter.dishChanged();
+            }
+            changed = true;
+        }
 
-        //删除原有口味数据
-        dishFlavorMapper.deleteByDishId(dishDTO.getId());
+        //原有口味按名称分组，名称重复的多余口味直接删除
+        Map<String, DishFlavor> storedFlavors = new HashMap<>();
+        List<Long> deleteIds = new ArrayList<>();
+        for (DishFlavor flavor : dishFlavorMapper.getByDishId(dishId)) {
+            if (storedFlavors.putIfAbsent(flavor.getName(), flavor) != null) {
+                deleteIds.add(flavor.getId());
+            }
+        }
 
-        //重新插入口味数据
+        List<DishFlavor> insertFlavors = new ArrayList<>();
+        List<DishFlavor> updateFlavors = new ArrayList<>();
         List<DishFlavor> flavors = dishDTO.getFlavors();
-        if (flavors != null && flavors.size() > 0){
-            //遍历口味数据列表，将每个口味数据的dishId设置为当前菜品的ID
-            flavors.forEach(dishFlavor -> {
-                dishFlavor.setDishId(dishDTO.getId());
-            });
-            //向口味表插入n条数据
-            dishFlavorMapper.insertBatch(flavors);
+        if (flavors != null) {
+            for (DishFlavor flavor : flavors) {
+                flavor.setDishId(dishId);
+                DishFlavor stored = storedFlavors.remove(flavor.getName());
+                if (stored == null) {
+                    insertFlavors.add(flavor);
+                } else if (!Objects.equals(flavor.getValue(), stored.getValue())) {
+                    flavor.setId(stored.getId());
+                    updateFlavors.add(flavor);
+                }
+            }
         }
+        //提交的数据中没有的口味需要删除
+        storedFlavors.values().forEach(flavor -> deleteIds.add(flavor.getId()));
+
+        if (!deleteIds.isEmpty()) {
+            dishFlavorMapper.deleteByIds(deleteIds);
+        }
+        if (!updateFlavors.isEmpty()) {
+            dishFlavorMapper.updateBatch(updateFlavors);
+        }
+        if (!insertFlavors.isEmpty()) {
+            dishFlavorMapper.insertBatch(insertFlavors);
+        }
+        boolean flavorsChanged = !deleteIds.isEmpty() || !updateFlavors.isEmpty() || !insertFlavors.isEmpty();
+        if (flavorsChanged && !changed) {
+            //只有口味变化时也要更新菜品的修改时间、修改人
+            dishMapper.update(Dish.builder().id(dishId).build());
+        }
+        return changed || flavorsChanged;
     }
 
     /**
@@ -176,13 +269,27 @@ public class DishServiceImpl implements DishService {
         List<Dish> dishList = dishMapper.list(dish);
 
         List<DishVO> dishVOList = new ArrayList<>();
+        if (dishList == null || dishList.isEmpty()) {
+            return dishVOList;
+        }
+
+        //一次性查询出当前所有菜品的口味，再按菜品id分组，避免逐个菜品查询口味（N+1次查询）
+        List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = dishFlavorMapper.getByDishIds(dishIds).stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
+
+        //已生成缩略图的图片，没有生成的图片不返回缩略图地址
+        Set<String> thumbnails = thumbnailTask.generated(dishList.stream().map(Dish::getImage).collect(Collectors.toList()));
 
         for (Dish d : dishList) {
             DishVO dishVO = new DishVO();
             BeanUtils.copyProperties(d,dishVO);
+            if (thumbnails.contains(d.getImage())) {
+                dishVO.setImageSmall(ImageUtil.thumbnailName(d.getImage(), ImageUtil.SMALL));
+                dishVO.setImageMedium(ImageUtil.thumbnailName(d.getImage(), ImageUtil.MEDIUM));
+            }
 
-            //根据菜品id查询对应的口味
-            List<DishFlavor> flavors = dishFlavorMapper.getByDishId(d.getId());
+            List<DishFlavor> flavors = flavorMap.getOrDefault(d.getId(), new ArrayList<>());
 
             dishVO.setFlavors(flavors);
             dishVOList.add(dishVO);
@@ -205,5 +312,20 @@ public class DishServiceImpl implements DishService {
                 .updateUser(BaseContext.getCurrentId())
                 .build();
         dishMapper.update(dish);
+        dishSearchIndex.refresh(Collections.singletonList(id));
+        workspaceCounter.dishChanged();
+    }
+
+    /**
+     * 根据菜品id集合查询菜品所属的分类id
+     * @param ids
+     * @return
+     */
+    @Override
+    public List<Long> getCategoryIdsByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return dishMapper.getCategoryIdsByIds(ids);
     }
 }
@@ -14,6 +14,7 @@ import com.sky.exception.AccountLockedException;
 import com.sky.exception.AccountNotFoundException;
 import com.sky.exception.PasswordErrorException;
 import com.sky.mapper.EmployeeMapper;
+import com.sky.result.PageCursor;
 import com.sky.result.PageResult;
 import com.sky.service.EmployeeService;
 import org.springframework.beans.BeanUtils;
@@ -97,9 +98,16 @@ public class EmployeeServiceImpl implements EmployeeService {
      */
     @Override
     public PageResult pageQuery(EmployeePageQueryDTO employeePageQueryDTO) {
+        //传入cursor时按游标分页：select * from employee where (create_time, id) < 游标 order by create_time desc, id desc limit 11
+        if (employeePageQueryDTO.getCursor() != null) {
+            int pageSize = PageCursor.pageSize(employeePageQueryDTO.getPageSize());
+            List<Employee> rows = employeeMapper.pageQueryByCursor(employeePageQueryDTO,
+                    PageCursor.decode(employeePageQueryDTO.getCursor()), pageSize + 1);
+            return PageCursor.page(rows, pageSize, Employee::getCreateTime, Employee::getId);
+        }
         // select * from employee limit 0,10
-        //开始分页查询
-        PageHelper.startPage(employeePageQueryDTO.getPage(),employeePageQueryDTO.getPageSize());
+        //开始分页查询，skipCount为true时不执行count查询
+        PageHelper.startPage(employeePageQueryDTO.getPage(),employeePageQueryDTO.getPageSize(),!employeePageQueryDTO.isSkipCount());
         Page<Employee> page =  employeeMapper.pageQuery(employeePageQueryDTO);
         long total = page.getTotal();
         List<Employee> records = page.getResult();
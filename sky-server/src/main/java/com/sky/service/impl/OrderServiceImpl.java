@@ -0,0 +1,357 @@
+package com.sky.service.impl;
+
+import com.alibaba.fastjson.JSONObject;
+import com.sky.constant.MessageConstant;
+import com.sky.context.BaseContext;
+import com.sky.dto.OrdersPaymentDTO;
+import com.sky.dto.OrdersSubmitDTO;
+import com.sky.entity.AddressBook;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.entity.ShoppingCart;
+import com.sky.entity.User;
+import com.sky.exception.AddressBookBusinessException;
+import com.sky.exception.OrderBusinessException;
+import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.mapper.AddressBookMapper;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.properties.OrderProperties;
+import com.sky.report.WorkspaceCounter;
+import com.sky.service.OrderService;
+import com.sky.service.ReportService;
+import com.sky.service.ShoppingCartService;
+import com.sky.task.OrderTimeoutTask;
+import com.sky.utils.SnowflakeIdGenerator;
+import com.sky.utils.WeChatPayUtil;
+import com.sky.vo.OrderPaymentVO;
+import com.sky.vo.OrderSubmitVO;
+import com.sky.websocket.WebSocketBroadcaster;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+@Service
+@Slf4j
+public class OrderServiceImpl implements OrderService {
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+    @Autowired
+    private AddressBookMapper addressBookMapper;
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private WeChatPayUtil weChatPayUtil;
+    @Autowired
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+    @Autowired
+    private OrderTimeoutTask orderTimeoutTask;
+    @Autowired
+    private OrderProperties orderProperties;
+    @Autowired
+    private ReportService reportService;
+    @Autowired
+    private WorkspaceCounter workspaceCounter;
+    @Autowired
+    private WebSocketBroadcaster webSocketBroadcaster;
+
+    /**
+     * 用户下单
+     * 整个下单过程只有5条sql：查询地址、查询购物车、插入订单、批量插入订单明细、清空购物车
+     * 清空购物车和登记超时取消在事务提交后执行，下单失败回滚时购物车保持不变，也不会登记不存在的订单
+     * @param ordersSubmitDTO
+     * @return
+     */
+    @Transactional
+    @Override
+    public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO) {
+        Long userId = BaseContext.getCurrentId();
+
+        //1、校验地址簿：地址不存在或者不是当前用户的地址，不能下单
+        AddressBook addressBook = addressBookMapper.getById(ordersSubmitDTO.getAddressBookId());
+        if (addressBook == null || !userId.equals(addressBook.getUserId())) {
+            throw new AddressBookBusinessException(MessageConstant.ADDRESS_BOOK_IS_NULL);
+        }
+
+        //2、查询当前用户的购物车数据，购物车为空不能下单（购物车可能在数据库或redis中，由购物车服务决定）
+        List<ShoppingCart> shoppingCartList = shoppingCartService.showShoppingCart();
+        if (shoppingCartList == null || shoppingCartList.isEmpty()) {
+            throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
+        }
+
+        //3、向订单表插入1条数据，金额和打包费由服务端根据购物车计算，不使用前端提交的数据
+        LocalDateTime now = LocalDateTime.now();
+        Orders orders = new Orders();
+        BeanUtils.copyProperties(ordersSubmitDTO, orders, "amount", "packAmount");
+        int itemCount = 0;
+        BigDecimal amount = BigDecimal.ZERO;
+        for (ShoppingCart cart : shoppingCartList) {
+            itemCount += cart.getNumber();
+            amount = amount.add(cart.getAmount().multiply(BigDecimal.valueOf(cart.getNumber())));
+        }
+        int packAmount = itemCount * orderProperties.getPackFeePerItem();
+        orders.setPackAmount(packAmount);
+        orders.setAmount(amount.add(BigDecimal.valueOf(packAmount)).add(orderProperties.getDeliveryFee()));
+        //订单号由雪花算法在本地生成，多个节点并发下单也不会重复
+        orders.setNumber(String.valueOf(snowflakeIdGenerator.nextId()));
+        orders.setOrderTime(now);
+        orders.setStatus(Orders.PENDING_PAYMENT);
+        orders.setPayStatus(Orders.UN_PAID);
+        orders.setUserId(userId);
+        orders.setPhone(addressBook.getPhone());
+        orders.setConsignee(addressBook.getConsignee());
+        orders.setAddress(fullAddress(addressBook));
+        orderMapper.insert(orders);
+
+        //4、向订单明细表插入n条数据，一条多行insert语句完成
+        List<OrderDetail> orderDetailList = new ArrayList<>(shoppingCartList.size());
+        for (ShoppingCart cart : shoppingCartList) {
+            OrderDetail orderDetail = new OrderDetail();
+            BeanUtils.copyProperties(cart, orderDetail, "id");
+            orderDetail.setOrderId(orders.getId());
+            orderDetailList.add(orderDetail);
+        }
+        orderDetailMapper.insertBatch(orderDetailList);
+
+        //5、事务提交后清空当前用户的购物车数据，登记超时未支付自动取消
+        Long orderId = orders.getId();
+        afterCommit(() -> {
+            shoppingCartService.cleanShoppingCart();
+            orderTimeoutTask.schedule(orderId, now);
+        });
+        workspaceCounter.orderSubmitted();
+
+        //6、封装VO返回结果
+        return OrderSubmitVO.builder()
+                .id(orders.getId())
+                .orderNumber(orders.getNumber())
+                .orderAmount(orders.getAmount())
+                .orderTime(now)
+                .build();
+    }
+
+    /**
+     * 订单支付
+     * @param ordersPaymentDTO
+     * @return
+     */
+    @Override
+    public OrderPaymentVO payment(OrdersPaymentDTO ordersPaymentDTO) throws Exception {
+        Long userId = BaseContext.getCurrentId();
+
+        //只能支付当前用户自己的待付款订单
+        Orders orders = orderMapper.getByNumber(ordersPaymentDTO.getOrderNumber());
+        if (orders == null || !userId.equals(orders.getUserId())) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
+        if (!Orders.PENDING_PAYMENT.equals(orders.getStatus())) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+
+        User user = userMapper.getById(userId);
+
+        //调用微信支付接口，生成预支付交易单
+        JSONObject jsonObject = weChatPayUtil.pay(
+                orders.getNumber(), //商户订单号
+                orders.getAmount(), //支付金额，单位 元
+                "苍穹外卖订单", //商品描述
+                user.getOpenid() //微信用户的openid
+        );
+
+        if (jsonObject.getString("code") != null && jsonObject.getString("code").equals("ORDERPAID")) {
+            throw new OrderBusinessException("该订单已支付");
+        }
+
+        OrderPaymentVO vo = jsonObject.toJavaObject(OrderPaymentVO.class);
+        vo.setPackageStr(jsonObject.getString("package"));
+
+        return vo;
+    }
+
+    /**
+     * 支付成功，修改订单状态
+     * @param outTradeNo
+     */
+    @Override
+    public void paySuccess(String outTradeNo) {
+        //根据订单号查询订单
+        Orders ordersDB = orderMapper.getByNumber(outTradeNo);
+        if (ordersDB == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
+
+        //根据订单id更新订单的状态、支付状态、结账时间
+        //只修改待付款的订单：重复或迟到的支付通知不会把已接单、已取消（包括超时取消）的订单改回待接单
+        Orders orders = Orders.builder()
+                .status(Orders.TO_BE_CONFIRMED)
+                .payStatus(Orders.PAID)
+                .checkoutTime(LocalDateTime.now())
+                .build();
+        int rows = orderMapper.updateStatusByIds(Collections.singletonList(ordersDB.getId()), Orders.PENDING_PAYMENT, orders);
+        if (rows == 0) {
+            log.warn("订单不是待付款状态，忽略支付通知：{}，当前状态：{}", outTradeNo, ordersDB.getStatus());
+            return;
+        }
+
+        //已支付，不再需要自动取消
+        orderTimeoutTask.unschedule(ordersDB.getId());
+        workspaceCounter.orderPaid(ordersDB.getOrderTime());
+        //通过WebSocket向管理端推送来单提醒
+        webSocketBroadcaster.push(WebSocketBroadcaster.NEW_ORDER, ordersDB.getId(), "订单号：" + outTradeNo);
+    }
+
+    /**
+     * 客户催单
+     * @param id
+     */
+    @Override
+    public void reminder(Long id) {
+        Orders ordersDB = orderMapper.getById(id);
+        if (ordersDB == null || !ordersDB.getUserId().equals(BaseContext.getCurrentId())) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
+        webSocketBroadcaster.push(WebSocketBroadcaster.REMINDER, id, "订单号：" + ordersDB.getNumber());
+    }
+
+    /**
+     * 批量修改指定订单的状态
+     * 按id排序后分批修改，每批一条update语句并单独提交，锁的范围和持有时间都限制在一批之内；
+     * 订单完成时每日汇总数据在全部批次修改后重新计算一次，同一天不会每批都计算
+     * @param ids
+     * @param fromStatus
+     * @param orders
+     * @return
+     */
+    @Override
+    public int updateStatusByIds(List<Long> ids, Integer fromStatus, Orders orders) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        List<Long> sortedIds = new ArrayList<>(ids);
+        Collections.sort(sortedIds);
+
+        int batchSize = orderProperties.getBulkUpdateBatchSize();
+        long start = System.currentTimeMillis();
+        int rows = 0;
+        int batches = 0;
+        Set<LocalDate> reportDates = new TreeSet<>();
+        for (int i = 0; i < sortedIds.size(); i += batchSize) {
+            List<Long> batch = sortedIds.subList(i, Math.min(i + batchSize, sortedIds.size()));
+            int batchRows = orderMapper.updateStatusByIds(batch, fromStatus, orders);
+            afterStatusUpdated(batch, fromStatus, orders.getStatus(), batchRows, reportDates);
+            rows += batchRows;
+            batches++;
+        }
+        reportService.rebuild(reportDates);
+        logBulkUpdate(fromStatus, orders.getStatus(), rows, batches, start);
+        return rows;
+    }
+
+    /**
+     * 批量修改指定状态、下单时间早于orderTime的订单状态
+     * 按主键范围分批：每次查询上一批最后一个id之后的一批id再修改，不会对整张表加锁，也不会因offset越来越大而变慢
+     * @param fromStatus
+     * @param orderTime
+     * @param orders
+     * @return
+     */
+    @Override
+    public int updateStatusByStatusAndOrderTimeLT(Integer fromStatus, LocalDateTime orderTime, Orders orders) {
+        int batchSize = orderProperties.getBulkUpdateBatchSize();
+        long start = System.currentTimeMillis();
+        int rows = 0;
+        int batches = 0;
+        Long lastId = 0L;
+        Set<LocalDate> reportDates = new TreeSet<>();
+        while (true) {
+            List<Long> ids = orderMapper.getIdsByStatusAndOrderTimeLT(fromStatus, orderTime, lastId, batchSize);
+            if (ids == null || ids.isEmpty()) {
+                break;
+            }
+            int batchRows = orderMapper.updateStatusByIds(ids, fromStatus, orders);
+            afterStatusUpdated(ids, fromStatus, orders.getStatus(), batchRows, reportDates);
+            rows += batchRows;
+            batches++;
+            lastId = ids.get(ids.size() - 1);
+            if (ids.size() < batchSize) {
+                break;
+            }
+        }
+        reportService.rebuild(reportDates);
+        logBulkUpdate(fromStatus, orders.getStatus(), rows, batches, start);
+        return rows;
+    }
+
+    /**
+     * 每批订单状态修改后，更新统计数据，需要重新计算汇总数据的日期放入reportDates，全部批次修改后统一计算
+     * @param ids
+     * @param fromStatus
+     * @param status
+     * @param rows
+     * @param reportDates
+     */
+    private void afterStatusUpdated(List<Long> ids, Integer fromStatus, Integer status, int rows, Set<LocalDate> reportDates) {
+        workspaceCounter.ordersStatusChanged(ids, fromStatus, status, rows);
+        if (Orders.COMPLETED.equals(status)) {
+            reportDates.addAll(reportService.onOrdersCompleted(ids, rows));
+        }
+    }
+
+    private void logBulkUpdate(Integer fromStatus, Integer toStatus, int rows, int batches, long start) {
+        long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+        log.info("批量修改订单状态：{} -> {}，修改{}行，共{}批，耗时{}ms，{}行/秒",
+                fromStatus, toStatus, rows, batches, elapsed, rows * 1000L / elapsed);
+    }
+
+    /**
+     * 拼接完整的收货地址：省 + 市 + 区 + 详细地址
+     * @param addressBook
+     * @return
+     */
+    private String fullAddress(AddressBook addressBook) {
+        StringBuilder address = new StringBuilder();
+        for (String part : new String[]{addressBook.getProvinceName(), addressBook.getCityName(),
+                addressBook.getDistrictName(), addressBook.getDetail()}) {
+            if (part != null) {
+                address.append(part);
+            }
+        }
+        return address.toString();
+    }
+
+    /**
+     * 当前有事务时在事务提交后执行，否则立即执行
+     * @param runnable
+     */
+    private void afterCommit(Runnable runnable) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    runnable.run();
+                }
+            });
+        } else {
+            runnable.run();
+        }
+    }
+}
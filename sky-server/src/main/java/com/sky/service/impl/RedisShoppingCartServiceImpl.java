@@ -0,0 +1,263 @@
+package com.sky.service.impl;
+
+import com.sky.cache.ProductSnapshot;
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.context.BaseContext;
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.mapper.ShoppingCartMapper;
+import com.sky.properties.ShoppingCartProperties;
+import com.sky.service.ShoppingCartService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 购物车数据保存在redis中，sky.shopping-cart.store=redis时生效
+ * 每个用户两个hash：商品数量（前缀+用户id，field为商品标识，HINCRBY原子累加）和商品信息（前缀+用户id+:item）
+ * 加购只需要redis操作，不会因为先查后写导致重复插入；购物车有变化的用户记录到待回写集合，定时回写shopping_cart表
+ * 用户第一次使用redis购物车时先把shopping_cart表中的购物车载入redis（前缀+用户id+:loaded标记已载入），
+ * 切换存储方式后原有的购物车不会丢失，回写时也不会用空购物车覆盖数据库
+ */
+@Service
+@ConditionalOnProperty(prefix = "sky.shopping-cart", name = "store", havingValue = "redis")
+@Slf4j
+public class RedisShoppingCartServiceImpl implements ShoppingCartService {
+
+    private static final String ITEM_KEY_SUFFIX = ":item";
+    private static final String LOADED_KEY_SUFFIX = ":loaded";
+    private static final String LOADED = "1";
+    private static final String FLUSH_LOCK_KEY_SUFFIX = ":flush";
+
+    //释放回写锁：只删除自己持有的锁，避免锁过期后删除其他节点的锁
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    //载入数据库中的购物车：已载入则跳过；redis中已有购物车（切换前已使用redis）时只标记已载入，否则逐个累加数量
+    private static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[2]) == 1 then return 0 end "
+                    + "if redis.call('exists', KEYS[1]) == 0 then "
+                    + "for i = 1, #ARGV, 2 do redis.call('hincrby', KEYS[1], ARGV[i], ARGV[i + 1]) end "
+                    + "end "
+                    + "redis.call('set', KEYS[2], '" + LOADED + "') return 1",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisTemplate redisTemplate;
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
+    @Autowired
+    private ShoppingCartProperties shoppingCartProperties;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 添加购物车
+     * @param shoppingCartDTO
+     */
+    @Override
+    public void addShoppingCart(ShoppingCartDTO shoppingCartDTO) {
+        Long userId = BaseContext.getCurrentId();
+        String field = field(shoppingCartDTO.getDishId(), shoppingCartDTO.getDishFlavor(), shoppingCartDTO.getSetmealId());
+        ensureLoaded(userId);
+
+        //先写入商品信息（已存在则不覆盖），再累加数量，读取时有数量的商品一定有商品信息
+        if (!redisTemplate.opsForHash().hasKey(itemKey(userId), field)) {
+            ShoppingCart item = new ShoppingCart();
+            BeanUtils.copyProperties(shoppingCartDTO, item);
+            item.setUserId(userId);
+            ProductSnapshot product = shoppingCartDTO.getDishId() != null
+                    ? productSnapshotCache.getDish(shoppingCartDTO.getDishId())
+                    : productSnapshotCache.getSetmeal(shoppingCartDTO.getSetmealId());
+            //不存在或已停售的商品不能加入购物车
+            if (product == null || !StatusConstant.ENABLE.equals(product.getStatus())) {
+                throw new ShoppingCartBusinessException(MessageConstant.PRODUCT_NOT_AVAILABLE);
+            }
+            item.setName(product.getName());
+            item.setImage(product.getImage());
+            item.setAmount(product.getPrice());
+            item.setCreateTime(LocalDateTime.now());
+            redisTemplate.opsForHash().putIfAbsent(itemKey(userId), field, item);
+        }
+
+        stringRedisTemplate.opsForHash().increment(cartKey(userId), field, 1);
+        markDirty(userId);
+    }
+
+    /**
+     * 查看购物车
+     * @return
+     */
+    @Override
+    public List<ShoppingCart> showShoppingCart() {
+        Long userId = BaseContext.getCurrentId();
+        ensureLoaded(userId);
+        return list(userId);
+    }
+
+    /**
+     * 清空购物车商品
+     */
+    @Override
+    public void cleanShoppingCart() {
+        Long userId = BaseContext.getCurrentId();
+        //先标记已载入，清空后数据库中的旧购物车不会再被载入
+        ensureLoaded(userId);
+        stringRedisTemplate.delete(cartKey(userId));
+        redisTemplate.delete(itemKey(userId));
+        markDirty(userId);
+    }
+
+    /**
+     * 定时将有变化的购物车回写shopping_cart表，每个用户先删除再批量插入，在一个事务中完成
+     * 回写期间用户又修改了购物车时会被重新标记，下一次回写时覆盖
+     * 读取购物车到提交事务期间持有该用户的回写锁，避免多个节点同时回写时较早读取的购物车最后提交
+     */
+    @Scheduled(fixedDelayString = "${sky.shopping-cart.flush-millis:5000}")
+    public void flush() {
+        List<String> userIds = stringRedisTemplate.opsForSet()
+                .pop(shoppingCartProperties.getDirtyKey(), shoppingCartProperties.getFlushBatchSize());
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+
+        for (String id : userIds) {
+            Long userId = Long.valueOf(id);
+            String lockKey = flushLockKey(userId);
+            String token = UUID.randomUUID().toString();
+            if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(lockKey, token,
+                    shoppingCartProperties.getFlushLockSeconds(), TimeUnit.SECONDS))) {
+                //其他节点正在回写，重新标记，下一次回写时读取最新的购物车
+                markDirty(userId);
+                continue;
+            }
+            try {
+                ensureLoaded(userId);
+                List<ShoppingCart> shoppingCartList = list(userId);
+                transactionTemplate.executeWithoutResult(status -> {
+                    shoppingCartMapper.deleteByUserId(userId);
+                    if (!shoppingCartList.isEmpty()) {
+                        shoppingCartMapper.insertBatch(shoppingCartList);
+                    }
+                });
+            } catch (Exception e) {
+                log.error("购物车回写数据库失败，用户id：{}", userId, e);
+                markDirty(userId);
+            } finally {
+                stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+            }
+        }
+        log.debug("购物车回写数据库，用户数：{}", userIds.size());
+    }
+
+    private List<ShoppingCart> list(Long userId) {
+        Map<Object, Object> numbers = stringRedisTemplate.opsForHash().entries(cartKey(userId));
+        List<ShoppingCart> shoppingCartList = new ArrayList<>(numbers.size());
+        if (numbers.isEmpty()) {
+            return shoppingCartList;
+        }
+
+        Map<Object, Object> items = redisTemplate.opsForHash().entries(itemKey(userId));
+        for (Map.Entry<Object, Object> entry : numbers.entrySet()) {
+            ShoppingCart item = (ShoppingCart) items.get(entry.getKey());
+            if (item == null) {
+                continue;
+            }
+            item.setNumber(Integer.valueOf((String) entry.getValue()));
+            shoppingCartList.add(item);
+        }
+        //与数据库方式一致，按加入时间倒序
+        shoppingCartList.sort(Comparator.comparing(ShoppingCart::getCreateTime).reversed());
+        return shoppingCartList;
+    }
+
+    /**
+     * 用户的购物车还没有载入redis时，把shopping_cart表中的购物车载入redis
+     * 先写入商品信息再由脚本原子地累加数量并标记已载入，多个请求同时载入时只有一个生效
+     * @param userId
+     */
+    private void ensureLoaded(Long userId) {
+        String loadedKey = loadedKey(userId);
+        if (LOADED.equals(stringRedisTemplate.opsForValue().get(loadedKey))) {
+            return;
+        }
+
+        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(ShoppingCart.builder().userId(userId).build());
+        List<String> args = new ArrayList<>(shoppingCartList.size() * 2);
+        for (ShoppingCart shoppingCart : shoppingCartList) {
+            String field = field(shoppingCart.getDishId(), shoppingCart.getDishFlavor(), shoppingCart.getSetmealId());
+            args.add(field);
+            args.add(shoppingCart.getNumber().toString());
+
+            ShoppingCart item = new ShoppingCart();
+            BeanUtils.copyProperties(shoppingCart, item);
+            item.setId(null);
+            item.setNumber(null);
+            redisTemplate.opsForHash().putIfAbsent(itemKey(userId), field, item);
+        }
+        Long loaded = stringRedisTemplate.execute(LOAD_SCRIPT, Arrays.asList(cartKey(userId), loadedKey), args.toArray());
+        if (Long.valueOf(1).equals(loaded)) {
+            log.info("载入数据库中的购物车，用户id：{}，商品数：{}", userId, shoppingCartList.size());
+        }
+    }
+
+    private void markDirty(Long userId) {
+        stringRedisTemplate.opsForSet().add(shoppingCartProperties.getDirtyKey(), userId.toString());
+    }
+
+    /**
+     * 购物车中商品的标识：菜品为 d:菜品id:口味，套餐为 s:套餐id
+     * @param dishId
+     * @param dishFlavor
+     * @param setmealId
+     * @return
+     */
+    private String field(Long dishId, String dishFlavor, Long setmealId) {
+        if (dishId != null) {
+            return "d:" + dishId + ":" + (dishFlavor == null ? "" : dishFlavor);
+        }
+        return "s:" + setmealId;
+    }
+
+    private String cartKey(Long userId) {
+        return shoppingCartProperties.getKeyPrefix() + userId;
+    }
+
+    private String itemKey(Long userId) {
+        return shoppingCartProperties.getKeyPrefix() + userId + ITEM_KEY_SUFFIX;
+    }
+
+    private String flushLockKey(Long userId) {
+        return shoppingCartProperties.getKeyPrefix() + userId + FLUSH_LOCK_KEY_SUFFIX;
+    }
+
+    private String loadedKey(Long userId) {
+        return shoppingCartProperties.getKeyPrefix() + userId + LOADED_KEY_SUFFIX;
+    }
+}
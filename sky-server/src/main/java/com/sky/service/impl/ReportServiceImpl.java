@@ -0,0 +1,434 @@
+package com.sky.service.impl;
+
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.BusinessDailyStat;
+import com.sky.mapper.BusinessDailyStatMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.properties.ReportProperties;
+import com.sky.report.SalesRanking;
+import com.sky.service.ReportService;
+import com.sky.vo.BusinessDataVO;
+import com.sky.vo.OrderReportVO;
+import com.sky.vo.SalesTop10ReportVO;
+import com.sky.vo.TurnoverReportVO;
+import com.sky.vo.UserReportVO;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 数据统计
+ * 历史日期的数据从每日汇总表business_daily_stat按日期范围读取，只补算缺失的日期并写入汇总表；
+ * 当天的数据还在变化，实时计算，不写入汇总表
+ */
+@Service
+@Slf4j
+public class ReportServiceImpl implements ReportService {
+
+    private static final int TOP_N = 10;
+
+    //导出时内存中最多保留的行数，超出的行写入临时文件
+    private static final int EXPORT_ROW_WINDOW = 100;
+
+    private static final String[] EXPORT_HEADERS = {"日期", "营业额", "订单数", "有效订单数", "订单完成率", "平均客单价", "新增用户数"};
+
+    @Autowired
+    private BusinessDailyStatMapper businessDailyStatMapper;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private ReportProperties reportProperties;
+    @Autowired
+    private SalesRanking salesRanking;
+
+    /**
+     * 营业额统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Override
+    public TurnoverReportVO getTurnoverStatistics(LocalDate begin, LocalDate end) {
+        List<BusinessDailyStat> stats = getDailyStats(begin, end);
+        return TurnoverReportVO.builder()
+                .dateList(join(stats.stream().map(BusinessDailyStat::getStatDate)))
+                .turnoverList(join(stats.stream().map(BusinessDailyStat::getTurnover)))
+                .build();
+    }
+
+    /**
+     * 用户统计
+     * 每天的用户总数 = begin之前的用户总数 + 截止当天的新增用户数累计
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Override
+    public UserReportVO getUserStatistics(LocalDate begin, LocalDate end) {
+        List<BusinessDailyStat> stats = getDailyStats(begin, end);
+
+        long totalUser = userMapper.countByCreateTimeLT(begin.atStartOfDay());
+        List<Long> totalUserList = new ArrayList<>(stats.size());
+        for (BusinessDailyStat stat : stats) {
+            totalUser += stat.getNewUserCount();
+            totalUserList.add(totalUser);
+        }
+
+        return UserReportVO.builder()
+                .dateList(join(stats.stream().map(BusinessDailyStat::getStatDate)))
+                .totalUserList(join(totalUserList.stream()))
+                .newUserList(join(stats.stream().map(BusinessDailyStat::getNewUserCount)))
+                .build();
+    }
+
+    /**
+     * 订单统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Override
+    public OrderReportVO getOrderStatistics(LocalDate begin, LocalDate end) {
+        List<BusinessDailyStat> stats = getDailyStats(begin, end);
+
+        int totalOrderCount = stats.stream().mapToInt(BusinessDailyStat::getOrderCount).sum();
+        int validOrderCount = stats.stream().mapToInt(BusinessDailyStat::getValidOrderCount).sum();
+        double orderCompletionRate = totalOrderCount == 0 ? 0.0 : (double) validOrderCount / totalOrderCount;
+
+        return OrderReportVO.builder()
+                .dateList(join(stats.stream().map(BusinessDailyStat::getStatDate)))
+                .orderCountList(join(stats.stream().map(BusinessDailyStat::getOrderCount)))
+                .validOrderCountList(join(stats.stream().map(BusinessDailyStat::getValidOrderCount)))
+                .totalOrderCount(totalOrderCount)
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(orderCompletionRate)
+                .build();
+    }
+
+    /**
+     * 销量排名前10的商品，从redis中的每日销量排名合并得到，redis不可用时查询数据库
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Override
+    public SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end) {
+        List<GoodsSalesDTO> salesTop;
+        try {
+            salesTop = salesRanking.top(begin, end, TOP_N);
+        } catch (Exception e) {
+            log.error("查询商品销量排名失败，改为查询数据库", e);
+            salesTop = orderMapper.getSalesTop(begin.atStartOfDay(), end.plusDays(1).atStartOfDay(), TOP_N);
+        }
+        return SalesTop10ReportVO.builder()
+                .nameList(join(salesTop.stream().map(GoodsSalesDTO::getName)))
+                .numberList(join(salesTop.stream().map(GoodsSalesDTO::getNumber)))
+                .build();
+    }
+
+    /**
+     * 查询日期范围内每一天的汇总数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Override
+    public List<BusinessDailyStat> getDailyStats(LocalDate begin, LocalDate end) {
+        LocalDate today = LocalDate.now();
+        Map<LocalDate, BusinessDailyStat> statMap = new HashMap<>();
+
+        //历史日期：读取汇总表，只补算缺失的日期
+        LocalDate historyEnd = end.isBefore(today) ? end : today.minusDays(1);
+        if (!begin.isAfter(historyEnd)) {
+            businessDailyStatMapper.getByDateRange(begin, historyEnd)
+                    .forEach(stat -> statMap.put(stat.getStatDate(), stat));
+            if (statMap.size() < ChronoUnit.DAYS.between(begin, historyEnd) + 1) {
+                List<LocalDate> missing = new ArrayList<>();
+                for (LocalDate date = begin; !date.isAfter(historyEnd); date = date.plusDays(1)) {
+                    if (!statMap.containsKey(date)) {
+                        missing.add(date);
+                    }
+                }
+                rebuildDates(missing).forEach(stat -> statMap.put(stat.getStatDate(), stat));
+            }
+        }
+
+        //当天：实时计算
+        if (!begin.isAfter(today) && !end.isBefore(today)) {
+            compute(today, today).forEach(stat -> statMap.put(stat.getStatDate(), stat));
+        }
+
+        List<BusinessDailyStat> result = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            BusinessDailyStat stat = statMap.get(date);
+            result.add(stat != null ? stat : empty(date));
+        }
+        return result;
+    }
+
+    /**
+     * 订单完成后更新商品销量排名，返回这些订单的下单日期中需要重新计算汇总数据的历史日期（去重，不包括中间的其它日期）
+     * 商品销量排名在事务提交后更新：所有订单都是刚刚变为已完成时直接累加；否则无法确定哪些订单已经累加过，重新统计这些日期
+     * @param orderIds
+     * @param rows
+     * @return
+     */
+    @Override
+    public Set<LocalDate> onOrdersCompleted(List<Long> orderIds, int rows) {
+        Set<LocalDate> historyDates = new TreeSet<>();
+        if (orderIds == null || orderIds.isEmpty() || rows == 0) {
+            return historyDates;
+        }
+        List<LocalDate> dates = orderMapper.getOrderDatesByIds(orderIds);
+        if (dates.isEmpty()) {
+            return historyDates;
+        }
+
+        LocalDate today = LocalDate.now();
+        dates.stream().filter(date -> date.isBefore(today)).forEach(historyDates::add);
+
+        //事务提交后再更新，重新统计时才能读到这些订单，累加也不会在事务回滚后残留
+        afterCommit(() -> {
+            try {
+                if (rows == orderIds.size()) {
+                    salesRanking.increment(orderIds);
+                } else {
+                    salesRanking.rebuild(dates);
+                }
+            } catch (Exception e) {
+                //不影响订单状态修改，由每晚的核对任务修正
+                log.error("更新商品销量排名失败", e);
+            }
+        });
+        return historyDates;
+    }
+
+    private static void afterCommit(Runnable task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * 重新计算日期范围内的每日汇总数据
+     * @param begin
+     * @param end
+     */
+    @Override
+    public void rebuild(LocalDate begin, LocalDate end) {
+        rebuildAndGet(begin, end);
+    }
+
+    /**
+     * 导出运营数据报表：第一个sheet为整个日期范围的概览，第二个sheet为每天的明细
+     * 使用SXSSFWorkbook流式写出，明细按段读取汇总表，内存中只保留最近的若干行，占用与日期范围大小无关
+     * @param begin
+     * @param end
+     * @param out
+     * @throws IOException
+     */
+    @Override
+    public void exportBusinessData(LocalDate begin, LocalDate end, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXPORT_ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            CellStyle percentStyle = workbook.createCellStyle();
+            percentStyle.setDataFormat(workbook.createDataFormat().getFormat("0.00%"));
+            CellStyle amountStyle = workbook.createCellStyle();
+            amountStyle.setDataFormat(workbook.createDataFormat().getFormat("0.00"));
+
+            //概览sheet先创建，明细写完、合计出来后再填写
+            Sheet overviewSheet = workbook.createSheet("概览");
+            Sheet detailSheet = workbook.createSheet("明细");
+
+            Row header = detailSheet.createRow(0);
+            for (int i = 0; i < EXPORT_HEADERS.length; i++) {
+                header.createCell(i).setCellValue(EXPORT_HEADERS[i]);
+            }
+
+            BigDecimal turnover = BigDecimal.ZERO;
+            long orderCount = 0;
+            long validOrderCount = 0;
+            long newUsers = 0;
+            int rowNum = 1;
+            int chunkDays = Math.max(1, reportProperties.getExportChunkDays());
+            for (LocalDate from = begin; !from.isAfter(end); from = from.plusDays(chunkDays)) {
+                LocalDate to = from.plusDays(chunkDays - 1);
+                for (BusinessDailyStat stat : getDailyStats(from, to.isAfter(end) ? end : to)) {
+                    BusinessDataVO data = toBusinessData(stat.getTurnover(), stat.getOrderCount(),
+                            stat.getValidOrderCount(), stat.getNewUserCount());
+                    Row row = detailSheet.createRow(rowNum++);
+                    row.createCell(0).setCellValue(stat.getStatDate().toString());
+                    writeBusinessData(row, 1, data, stat.getOrderCount(), amountStyle, percentStyle);
+
+                    turnover = turnover.add(stat.getTurnover());
+                    orderCount += stat.getOrderCount();
+                    validOrderCount += stat.getValidOrderCount();
+                    newUsers += stat.getNewUserCount();
+                }
+            }
+
+            BusinessDataVO total = toBusinessData(turnover, orderCount, validOrderCount, newUsers);
+            Row title = overviewSheet.createRow(0);
+            title.createCell(0).setCellValue("时间：" + begin + "至" + end);
+            Row overviewHeader = overviewSheet.createRow(1);
+            for (int i = 1; i < EXPORT_HEADERS.length; i++) {
+                overviewHeader.createCell(i - 1).setCellValue(EXPORT_HEADERS[i]);
+            }
+            writeBusinessData(overviewSheet.createRow(2), 0, total, orderCount, amountStyle, percentStyle);
+
+            workbook.write(out);
+            out.flush();
+            log.info("导出运营数据报表：{} ~ {}，{}天", begin, end, rowNum - 1);
+        } finally {
+            //删除写出过程中产生的临时文件
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private static BusinessDataVO toBusinessData(BigDecimal turnover, long orderCount, long validOrderCount, long newUsers) {
+        return BusinessDataVO.builder()
+                .turnover(turnover.doubleValue())
+                .validOrderCount((int) validOrderCount)
+                .orderCompletionRate(orderCount == 0 ? 0.0 : (double) validOrderCount / orderCount)
+                .unitPrice(validOrderCount == 0 ? 0.0
+                        : turnover.divide(BigDecimal.valueOf(validOrderCount), 2, RoundingMode.HALF_UP).doubleValue())
+                .newUsers((int) newUsers)
+                .build();
+    }
+
+    /**
+     * 从第column列开始依次写入：营业额、订单数、有效订单数、订单完成率、平均客单价、新增用户数
+     */
+    private static void writeBusinessData(Row row, int column, BusinessDataVO data, long orderCount,
+                                          CellStyle amountStyle, CellStyle percentStyle) {
+        row.createCell(column).setCellValue(data.getTurnover());
+        row.getCell(column).setCellStyle(amountStyle);
+        row.createCell(column + 1).setCellValue(orderCount);
+        row.createCell(column + 2).setCellValue(data.getValidOrderCount());
+        row.createCell(column + 3).setCellValue(data.getOrderCompletionRate());
+        row.getCell(column + 3).setCellStyle(percentStyle);
+        row.createCell(column + 4).setCellValue(data.getUnitPrice());
+        row.getCell(column + 4).setCellStyle(amountStyle);
+        row.createCell(column + 5).setCellValue(data.getNewUsers());
+    }
+
+    /**
+     * 重新计算指定日期的每日汇总数据
+     * @param dates
+     */
+    @Override
+    public void rebuild(Collection<LocalDate> dates) {
+        if (!dates.isEmpty()) {
+            rebuildDates(dates);
+        }
+    }
+
+    /**
+     * 重新计算指定日期的每日汇总数据，连续的日期合并为一段计算，不计算中间不需要的日期
+     * @param dates
+     * @return
+     */
+    private List<BusinessDailyStat> rebuildDates(Collection<LocalDate> dates) {
+        List<LocalDate> sorted = dates.stream().distinct().sorted().collect(Collectors.toList());
+        List<BusinessDailyStat> stats = new ArrayList<>();
+        int from = 0;
+        for (int i = 1; i <= sorted.size(); i++) {
+            if (i == sorted.size() || !sorted.get(i).equals(sorted.get(i - 1).plusDays(1))) {
+                stats.addAll(rebuildAndGet(sorted.get(from), sorted.get(i - 1)));
+                from = i;
+            }
+        }
+        return stats;
+    }
+
+    private List<BusinessDailyStat> rebuildAndGet(LocalDate begin, LocalDate end) {
+        List<BusinessDailyStat> stats = compute(begin, end);
+        businessDailyStatMapper.upsertBatch(stats);
+        log.info("重新计算每日汇总数据：{} ~ {}", begin, end);
+        return stats;
+    }
+
+    /**
+     * 从订单表、用户表计算日期范围内每一天的汇总数据，各用一条分组查询
+     * @param begin
+     * @param end
+     * @return
+     */
+    private List<BusinessDailyStat> compute(LocalDate begin, LocalDate end) {
+        LocalDateTime beginTime = begin.atStartOfDay();
+        LocalDateTime endTime = end.plusDays(1).atStartOfDay();
+
+        Map<LocalDate, BusinessDailyStat> orderStats = new HashMap<>();
+        orderMapper.sumByOrderDate(beginTime, endTime).forEach(stat -> orderStats.put(stat.getStatDate(), stat));
+        Map<LocalDate, BusinessDailyStat> userStats = new HashMap<>();
+        userMapper.countByCreateDate(beginTime, endTime).forEach(stat -> userStats.put(stat.getStatDate(), stat));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<BusinessDailyStat> stats = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            BusinessDailyStat stat = empty(date);
+            BusinessDailyStat orderStat = orderStats.get(date);
+            if (orderStat != null) {
+                stat.setTurnover(orderStat.getTurnover());
+                stat.setOrderCount(orderStat.getOrderCount());
+                stat.setValidOrderCount(orderStat.getValidOrderCount());
+            }
+            BusinessDailyStat userStat = userStats.get(date);
+            if (userStat != null) {
+                stat.setNewUserCount(userStat.getNewUserCount());
+            }
+            stat.setUpdateTime(now);
+            stats.add(stat);
+        }
+        return stats;
+    }
+
+    private static BusinessDailyStat empty(LocalDate date) {
+        return BusinessDailyStat.builder()
+                .statDate(date)
+                .turnover(BigDecimal.ZERO)
+                .orderCount(0)
+                .validOrderCount(0)
+                .newUserCount(0)
+                .build();
+    }
+
+    private static String join(Stream<?> stream) {
+        return stream.map(String::valueOf).collect(Collectors.joining(","));
+    }
+}
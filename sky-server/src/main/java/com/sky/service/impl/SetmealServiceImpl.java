@@ -14,8 +14,13 @@ import com.sky.exception.SetmealEnableFailedException;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.mapper.SetmealMapper;
+import com.sky.report.WorkspaceCounter;
+import com.sky.result.PageCursor;
 import com.sky.result.PageResult;
 import com.sky.service.SetmealService;
+import com.sky.task.ThumbnailTask;
+import com.sky.utils.ChangeUtil;
+import com.sky.utils.ImageUtil;
 import com.sky.vo.DishItemVO;
 import com.sky.vo.SetmealVO;
 import lombok.extern.slf4j.Slf4j;
@@ -24,7 +29,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -36,6 +47,10 @@ public class SetmealServiceImpl implements SetmealService {
     private SetmealMapper setmealMapper;
     @Autowired
     private DishMapper dishMapper;
+    @Autowired
+    private WorkspaceCounter workspaceCounter;
+    @Autowired
+    private ThumbnailTask thumbnailTask;
 
     /**
      * 新增套餐，同时需要保存套餐和菜品的关联关系
@@ -59,6 +74,7 @@ public class SetmealServiceImpl implements SetmealService {
 
         //保存套餐和菜品的关联关系
         setmealDishMapper.insertBatch(setmealDishes);
+        workspaceCounter.setmealChanged();
     }
 
     /**
@@ -67,34 +83,40 @@ public class SetmealServiceImpl implements SetmealService {
      * @return
      */
     public PageResult pageQuery(SetmealPageQueryDTO setmealPageQueryDTO) {
+        //传入cursor时按游标分页
+        if (setmealPageQueryDTO.getCursor() != null) {
+            int limit = PageCursor.pageSize(setmealPageQueryDTO.getPageSize());
+            List<SetmealVO> rows = setmealMapper.pageQueryByCursor(setmealPageQueryDTO,
+                    PageCursor.decode(setmealPageQueryDTO.getCursor()), limit + 1);
+            return PageCursor.page(rows, limit, SetmealVO::getCreateTime, SetmealVO::getId);
+        }
+
         int pageNum = setmealPageQueryDTO.getPage();
         int pageSize = setmealPageQueryDTO.getPageSize();
 
-        PageHelper.startPage(pageNum, pageSize);
+        //skipCount为true时不执行count查询
+        PageHelper.startPage(pageNum, pageSize, !setmealPageQueryDTO.isSkipCount());
         Page<SetmealVO> page = setmealMapper.pageQuery(setmealPageQueryDTO);
         return new PageResult(page.getTotal(), page.getResult());
     }
 
     /**
      * 批量删除套餐
+     * 不论删除多少个套餐，都只执行3条sql：统计起售数量、删除套餐、删除套餐菜品关系
      * @param ids
      */
     @Transactional
     public void deleteBatch(List<Long> ids) {
-        ids.forEach(id -> {
-            Setmeal setmeal = setmealMapper.getById(id);
-            if(StatusConstant.ENABLE == setmeal.getStatus()){
-                //起售中的套餐不能删除
-                throw new DeletionNotAllowedException(MessageConstant.SETMEAL_ON_SALE);
-            }
-        });
+        if(setmealMapper.countByIdsAndStatus(ids, StatusConstant.ENABLE) > 0){
+            //起售中的套餐不能删除
+            throw new DeletionNotAllowedException(MessageConstant.SETMEAL_ON_SALE);
+        }
 
-        ids.forEach(setmealId -> {
-            //删除套餐表中的数据
-            setmealMapper.deleteById(setmealId);
-            //删除套餐菜品关系表中的数据
-            setmealDishMapper.deleteBySetmealId(setmealId);
-        });
+        //删除套餐表中的数据
+        setmealMapper.deleteByIds(ids);
+        //删除套餐菜品关系表中的数据
+        setmealDishMapper.deleteBySetmealIds(ids);
+        workspaceCounter.setmealChanged();
     }
 
     /**
@@ -116,28 +138,82 @@ public class SetmealServiceImpl implements SetmealService {
 
     /**
      * 修改套餐
+     * 与数据库中的数据比较，套餐表只在有变化时修改；套餐菜品关系按菜品id比较，只新增、修改、删除有变化的关系
      * @param setmealDTO
+     * @return 是否有数据发生变化
      */
     @Transactional
-    public void update(SetmealDTO setmealDTO) {
-        Setmeal setmeal = new Setmeal();
-        BeanUtils.copyProperties(setmealDTO, setmeal);
-
-        //1、修改套餐表，执行update
-        setmealMapper.update(setmeal);
-
+    public boolean update(SetmealDTO setmealDTO) {
         //套餐id
         Long setmealId = setmealDTO.getId();
+        Setmeal setmealDB = setmealMapper.getById(setmealId);
+        if (setmealDB == null) {
+            return false;
+        }
+        boolean changed = false;
+
+        //1、套餐基本信息有变化时修改套餐表，执行update
+        if (ChangeUtil.isChanged(setmealDTO.getCategoryId(), setmealDB.getCategoryId())
+                || ChangeUtil.isChanged(setmealDTO.getName(), setmealDB.getName())
+                || ChangeUtil.isChanged(setmealDTO.getPrice(), setmealDB.getPrice())
+                || ChangeUtil.isChanged(setmealDTO.getStatus(), setmealDB.getStatus())
+                || ChangeUtil.isChanged(setmealDTO.getDescription(), setmealDB.getDescription())
+                || ChangeUtil.isChanged(setmealDTO.getImage(), setmealDB.getImage())) {
+            Setmeal setmeal = new Setmeal();
+            BeanUtils.copyProperties(setmealDTO, setmeal);
+            setmealMapper.update(setmeal);
+            //起售停售的套餐数量有变化，重新统计工作台计数
+            if (ChangeUtil.isChanged(setmealDTO.getStatus(), setmealDB.getStatus())) {
+                workspaceCounter.setmealChanged();
+            }
+            changed = true;
+        }
 
-        //2、删除套餐和菜品的关联关系，操作setmeal_dish表，执行delete
-        setmealDishMapper.deleteBySetmealId(setmealId);
+        //2、原有的套餐菜品关系按菜品id分组，菜品重复的多余关系直接删除
+        Map<Long, SetmealDish> storedDishes = new HashMap<>();
+        List<Long> deleteIds = new ArrayList<>();
+        for (SetmealDish setmealDish : setmealDishMapper.getBySetmealId(setmealId)) {
+            if (storedDishes.putIfAbsent(setmealDish.getDishId(), setmealDish) != null) {
+                deleteIds.add(setmealDish.getId());
+            }
+        }
 
+        List<SetmealDish> insertDishes = new ArrayList<>();
+        List<SetmealDish> updateDishes = new ArrayList<>();
         List<SetmealDish> setmealDishes = setmealDTO.getSetmealDishes();
-        setmealDishes.forEach(setmealDish -> {
-            setmealDish.setSetmealId(setmealId);
-        });
-        //3、重新插入套餐和菜品的关联关系，操作setmeal_dish表，执行insert
-        setmealDishMapper.insertBatch(setmealDishes);
+        if (setmealDishes != null) {
+            for (SetmealDish setmealDish : setmealDishes) {
+                setmealDish.setSetmealId(setmealId);
+                SetmealDish stored = storedDishes.remove(setmealDish.getDishId());
+                if (stored == null) {
+                    insertDishes.add(setmealDish);
+                } else if (!Objects.equals(setmealDish.getName(), stored.getName())
+                        || !Objects.equals(setmealDish.getCopies(), stored.getCopies())
+                        || ChangeUtil.isChanged(setmealDish.getPrice(), stored.getPrice())) {
+                    setmealDish.setId(stored.getId());
+                    updateDishes.add(setmealDish);
+                }
+            }
+        }
+        //提交的数据中没有的菜品需要删除
+        storedDishes.values().forEach(setmealDish -> deleteIds.add(setmealDish.getId()));
+
+        //3、只对有变化的套餐菜品关系执行delete、update、insert，操作setmeal_dish表
+        if (!deleteIds.isEmpty()) {
+            setmealDishMapper.deleteByIds(deleteIds);
+        }
+        if (!updateDishes.isEmpty()) {
+            setmealDishMapper.updateBatch(updateDishes);
+        }
+        if (!insertDishes.isEmpty()) {
+            setmealDishMapper.insertBatch(insertDishes);
+        }
+        boolean dishesChanged = !deleteIds.isEmpty() || !updateDishes.isEmpty() || !insertDishes.isEmpty();
+        if (dishesChanged && !changed) {
+            //只有套餐菜品关系变化时也要更新套餐的修改时间、修改人
+            setmealMapper.update(Setmeal.builder().id(setmealId).build());
+        }
+        return changed || dishesChanged;
     }
 
     /**
@@ -164,6 +240,7 @@ public class SetmealServiceImpl implements SetmealService {
                 .status(status)
                 .build();
         setmealMapper.update(setmeal);
+        workspaceCounter.setmealChanged();
     }
 
     /**
@@ -171,9 +248,22 @@ public class SetmealServiceImpl implements SetmealService {
      * @param setmeal
      * @return
      */
-    public List<Setmeal> list(Setmeal setmeal) {
+    public List<SetmealVO> list(Setmeal setmeal) {
         List<Setmeal> list = setmealMapper.list(setmeal);
-        return list;
+
+        List<SetmealVO> setmealVOList = new ArrayList<>();
+        //已生成缩略图的图片，没有生成的图片不返回缩略图地址
+        Set<String> thumbnails = thumbnailTask.generated(list.stream().map(Setmeal::getImage).collect(Collectors.toList()));
+        for (Setmeal s : list) {
+            SetmealVO setmealVO = new SetmealVO();
+            BeanUtils.copyProperties(s, setmealVO);
+            if (thumbnails.contains(s.getImage())) {
+                setmealVO.setImageSmall(ImageUtil.thumbnailName(s.getImage(), ImageUtil.SMALL));
+                setmealVO.setImageMedium(ImageUtil.thumbnailName(s.getImage(), ImageUtil.MEDIUM));
+            }
+            setmealVOList.add(setmealVO);
+        }
+        return setmealVOList;
     }
 
     /**
@@ -184,4 +274,17 @@ public class SetmealServiceImpl implements SetmealService {
     public List<DishItemVO> getDishItemById(Long id) {
         return setmealMapper.getDishItemBySetmealId(id);
     }
+
+    /**
+     * 根据菜品id集合查询包含这些菜品的套餐所属的分类id
+     * @param dishIds
+     * @return
+     */
+    @Override
+    public List<Long> getCategoryIdsByDishIds(List<Long> dishIds) {
+        if (dishIds == null || dishIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return setmealMapper.getCategoryIdsByDishIds(dishIds);
+    }
 }
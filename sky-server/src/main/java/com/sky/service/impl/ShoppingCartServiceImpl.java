@@ -1,31 +1,37 @@
 package com.sky.service.impl;
 
+import com.sky.cache.ProductSnapshot;
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
-import com.sky.entity.Dish;
-import com.sky.entity.Setmeal;
 import com.sky.entity.ShoppingCart;
-import com.sky.mapper.DishMapper;
-import com.sky.mapper.SetmealMapper;
+import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.ShoppingCartMapper;
 import com.sky.result.Result;
 import com.sky.service.ShoppingCartService;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
+/**
+ * 购物车直接读写shopping_cart表，sky.shopping-cart.store=db（默认）时生效
+ */
 @Service
+@ConditionalOnProperty(prefix = "sky.shopping-cart", name = "store", havingValue = "db", matchIfMissing = true)
 public class ShoppingCartServiceImpl implements ShoppingCartService{
 
     @Autowired
     ShoppingCartMapper shoppingCartMapper;
     @Autowired
-    DishMapper dishMapper;
-    @Autowired
-    SetmealMapper setmealMapper;
+    ProductSnapshotCache productSnapshotCache;
     @Override
     public void addShoppingCart(ShoppingCartDTO shoppingCartDTO) {
         ShoppingCart shoppingCart = new ShoppingCart();
@@ -46,15 +52,17 @@ public class ShoppingCartServiceImpl implements ShoppingCartService{
             Long dishId = shoppingCartDTO.getDishId();
             if(dishId != null){
                 //判断商品为菜品
-                //拿前端dto中的dish_id从菜品表中查出对应菜品数据，并添加到购物车
-                Dish dish = dishMapper.getById(dishId);
+                //拿前端dto中的dish_id从菜品快照缓存中查出对应菜品数据，并添加到购物车
+                ProductSnapshot dish = productSnapshotCache.getDish(dishId);
+                checkAvailable(dish);
                 shoppingCart.setName(dish.getName());
                 shoppingCart.setImage(dish.getImage());
                 shoppingCart.setAmount(dish.getPrice());
             }else {
                 //判断商品为套餐
-                //拿前端表单提交参数封装dto中的setmeal_id从套餐表中查出对应套餐数据，并添加到购物车
-                Setmeal setmeal = setmealMapper.getById(shoppingCartDTO.getSetmealId());
+                //拿前端表单提交参数封装dto中的setmeal_id从套餐快照缓存中查出对应套餐数据，并添加到购物车
+                ProductSnapshot setmeal = productSnapshotCache.getSetmeal(shoppingCartDTO.getSetmealId());
+                checkAvailable(setmeal);
                 shoppingCart.setName(setmeal.getName());
                 shoppingCart.setImage(setmeal.getImage());
                 shoppingCart.setAmount(setmeal.getPrice());
@@ -67,6 +75,16 @@ public class ShoppingCartServiceImpl implements ShoppingCartService{
         }
     }
 
+    /**
+     * 不存在或已停售的商品不能加入购物车
+     * @param product
+     */
+    private void checkAvailable(ProductSnapshot product) {
+        if (product == null || !StatusConstant.ENABLE.equals(product.getStatus())) {
+            throw new ShoppingCartBusinessException(MessageConstant.PRODUCT_NOT_AVAILABLE);
+        }
+    }
+
     /**
      * 查看购物车
      * @return
@@ -81,7 +99,9 @@ public class ShoppingCartServiceImpl implements ShoppingCartService{
 
     /**
      * 清空购物车商品
+     * 下单后在订单事务提交后调用，此时原事务已提交，在新事务中删除才能提交
      */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void cleanShoppingCart() {
         shoppingCartMapper.deleteByUserId(BaseContext.getCurrentId());
     }
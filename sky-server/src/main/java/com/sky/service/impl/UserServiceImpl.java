@@ -2,31 +2,55 @@ package com.sky.service.impl;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.sky.constant.MessageConstant;
 import com.sky.dto.UserLoginDTO;
 import com.sky.entity.User;
 import com.sky.exception.LoginFailedException;
 import com.sky.mapper.UserMapper;
+import com.sky.properties.UserLoginProperties;
 import com.sky.properties.WeChatProperties;
+import com.sky.report.WorkspaceCounter;
 import com.sky.service.UserService;
 import com.sky.utils.HttpClientUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
 public class UserServiceImpl implements UserService {
-    //微信服务接口地址
-    public static final String WX_LOGIN = "https://api.weixin.qq.com/sns/jscode2session";
     @Autowired
     private WeChatProperties weChatProperties;
     @Autowired
     private UserMapper userMapper;
+    @Autowired
+    private WorkspaceCounter workspaceCounter;
+    @Autowired
+    private UserLoginProperties userLoginProperties;
+    @Autowired
+    private ThreadPoolTaskExecutor wxLoginExecutor;
+
+    //openid -> 用户id，老用户登录不再查询用户表（用户不会被删除，缓存不会过时）
+    private Cache<String, Long> userIdCache;
+
+    @PostConstruct
+    public void init() {
+        userIdCache = Caffeine.newBuilder()
+                .maximumSize(userLoginProperties.getOpenidCacheSize())
+                .expireAfterAccess(userLoginProperties.getOpenidCacheExpireMinutes(), TimeUnit.MINUTES)
+                .build();
+    }
+
     /**
      * 微信登录
      * @param userLoginDTO
@@ -34,11 +58,28 @@ public class UserServiceImpl implements UserService {
      */
     @Override
     public User wxLogin(UserLoginDTO userLoginDTO) {
-        String openid = getOpenid(userLoginDTO.getCode());
+        return loginByOpenid(getOpenid(userLoginDTO.getCode()));
+    }
+
+    /**
+     * 微信登录，调用微信接口和查询、注册用户都在微信登录线程池中执行
+     * @param userLoginDTO
+     * @return
+     */
+    @Override
+    public CompletableFuture<User> wxLoginAsync(UserLoginDTO userLoginDTO) {
+        return CompletableFuture.supplyAsync(() -> wxLogin(userLoginDTO), wxLoginExecutor);
+    }
+
+    private User loginByOpenid(String openid) {
         //判断openid是否为空，如果为空表示登录失败，抛出业务异常
         if (openid == null){
             throw new LoginFailedException(MessageConstant.LOGIN_FAILED);
         }
+        Long userId = userIdCache.getIfPresent(openid);
+        if (userId != null) {
+            return User.builder().id(userId).openid(openid).build();
+        }
         //判断当前用户是否新用户，如果是新用户也返回user对象，但该对象为null
         User user = userMapper.getByOpenid(openid);
         //如果是新用户，自动完成注册
@@ -48,7 +89,9 @@ public class UserServiceImpl implements UserService {
                     .createTime(LocalDateTime.now())
                     .build();
             userMapper.insert(user);
+            workspaceCounter.userCreated();
         }
+        userIdCache.put(openid, user.getId());
         //返回用户对象
         return user;
     }
@@ -65,7 +108,7 @@ public class UserServiceImpl implements UserService {
         map.put("secret",weChatProperties.getSecret());
         map.put("js_code",code);
         map.put("grant_type","authorization_code");
-        String json= HttpClientUtil.doGet(WX_LOGIN,map);
+        String json= HttpClientUtil.doGet(userLoginProperties.getWxLoginUrl(),map);
 
         //将微信接口服务返回的json格式字符串转化为jsonObject对象
         JSONObject jsonObject = JSON.parseObject(json);
@@ -0,0 +1,99 @@
+package com.sky.service.impl;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Orders;
+import com.sky.report.WorkspaceCounter;
+import com.sky.service.WorkspaceService;
+import com.sky.vo.BusinessDataVO;
+import com.sky.vo.DishOverViewVO;
+import com.sky.vo.OrderOverViewVO;
+import com.sky.vo.SetmealOverViewVO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+/**
+ * 工作台，数据全部从工作台计数器读取
+ */
+@Service
+public class WorkspaceServiceImpl implements WorkspaceService {
+
+    @Autowired
+    private WorkspaceCounter workspaceCounter;
+
+    /**
+     * 今日运营数据
+     * 营业额、有效订单只统计已完成的订单
+     * @return
+     */
+    @Override
+    public BusinessDataVO getBusinessData() {
+        Map<String, Long> counts = workspaceCounter.getOrderCounts();
+        long allOrders = allOrders(counts);
+        long validOrderCount = get(counts, Orders.COMPLETED);
+        double turnover = counts.getOrDefault(WorkspaceCounter.TURNOVER, 0L) / 100.0;
+
+        return BusinessDataVO.builder()
+                .turnover(turnover)
+                .validOrderCount((int) validOrderCount)
+                .orderCompletionRate(allOrders == 0 ? 0.0 : (double) validOrderCount / allOrders)
+                .unitPrice(validOrderCount == 0 ? 0.0 : turnover / validOrderCount)
+                .newUsers(counts.getOrDefault(WorkspaceCounter.NEW_USERS, 0L).intValue())
+                .build();
+    }
+
+    /**
+     * 今日订单管理数据
+     * @return
+     */
+    @Override
+    public OrderOverViewVO getOrderOverView() {
+        Map<String, Long> counts = workspaceCounter.getOrderCounts();
+        return OrderOverViewVO.builder()
+                .waitingOrders((int) get(counts, Orders.TO_BE_CONFIRMED))
+                .deliveredOrders((int) get(counts, Orders.CONFIRMED))
+                .completedOrders((int) get(counts, Orders.COMPLETED))
+                .cancelledOrders((int) get(counts, Orders.CANCELLED))
+                .allOrders((int) allOrders(counts))
+                .build();
+    }
+
+    /**
+     * 菜品总览
+     * @return
+     */
+    @Override
+    public DishOverViewVO getDishOverView() {
+        Map<String, Long> counts = workspaceCounter.getDishCounts();
+        return DishOverViewVO.builder()
+                .sold((int) get(counts, StatusConstant.ENABLE))
+                .discontinued((int) get(counts, StatusConstant.DISABLE))
+                .build();
+    }
+
+    /**
+     * 套餐总览
+     * @return
+     */
+    @Override
+    public SetmealOverViewVO getSetmealOverView() {
+        Map<String, Long> counts = workspaceCounter.getSetmealCounts();
+        return SetmealOverViewVO.builder()
+                .sold((int) get(counts, StatusConstant.ENABLE))
+                .discontinued((int) get(counts, StatusConstant.DISABLE))
+                .build();
+    }
+
+    private static long allOrders(Map<String, Long> counts) {
+        long allOrders = 0;
+        for (int status = Orders.PENDING_PAYMENT; status <= Orders.CANCELLED; status++) {
+            allOrders += get(counts, status);
+        }
+        return allOrders;
+    }
+
+    private static long get(Map<String, Long> counts, Integer status) {
+        return counts.getOrDefault(status.toString(), 0L);
+    }
+}
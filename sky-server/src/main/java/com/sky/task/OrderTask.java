@@ -0,0 +1,36 @@
+package com.sky.task;
+
+import com.sky.entity.Orders;
+import com.sky.service.OrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 订单相关定时任务
+ */
+@Component
+@Slf4j
+public class OrderTask {
+
+    @Autowired
+    private OrderService orderService;
+
+    /**
+     * 每天凌晨1点，将前一天及更早一直处于派送中的订单修改为已完成
+     */
+    @Scheduled(cron = "0 0 1 * * ?")
+    public void processDeliveryOrder() {
+        log.info("处理一直处于派送中的订单：{}", LocalDateTime.now());
+
+        Orders orders = Orders.builder()
+                .status(Orders.COMPLETED)
+                .deliveryTime(LocalDateTime.now())
+                .build();
+        orderService.updateStatusByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, LocalDate.now().atStartOfDay(), orders);
+    }
+}
@@ -0,0 +1,246 @@
+package com.sky.task;
+
+import com.sky.constant.MessageConstant;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import com.sky.report.WorkspaceCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 超时未支付订单的自动取消
+ * 待取消的订单保存在redis有序集合中（score为取消时间），重启后不丢失；
+ * 即将到期的订单预加载到内存时间轮，每秒转动一格，到期的订单批量取消；
+ * 每分钟扫描一次redis，取消已过期但未被时间轮处理的订单（其它节点下单、节点宕机等），并预加载下一段时间内到期的订单
+ */
+@Component
+@Slf4j
+public class OrderTimeoutTask {
+
+    //时间轮一圈的格数，每格1秒，必须大于预加载的时间范围
+    private static final int WHEEL_SIZE = 3600;
+
+    //标记历史待支付订单已导入redis，只需要导入一次
+    private static final String INIT_KEY_SUFFIX = ":init";
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderProperties orderProperties;
+    @Autowired
+    private WorkspaceCounter workspaceCounter;
+
+    //时间轮的每一格保存在该秒到期的订单id
+    private final Set<Long>[] wheel = new Set[WHEEL_SIZE];
+
+    //时间轮中的订单id -> 到期时间(秒)
+    private final ConcurrentHashMap<Long, Long> deadlines = new ConcurrentHashMap<>();
+
+    //时间轮已经处理到的时间(秒)，只由tick线程修改
+    private volatile long lastTick = currentSecond();
+
+    public OrderTimeoutTask() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = ConcurrentHashMap.newKeySet();
+        }
+    }
+
+    /**
+     * 下单后登记自动取消
+     * @param orderId
+     * @param orderTime
+     */
+    public void schedule(Long orderId, LocalDateTime orderTime) {
+        long deadlineMillis = orderTime.plusMinutes(orderProperties.getPayTimeoutMinutes())
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        stringRedisTemplate.opsForZSet().add(orderProperties.getTimeoutKey(), orderId.toString(), deadlineMillis);
+        addToWheel(orderId, deadlineMillis);
+    }
+
+    /**
+     * 支付成功等情况下取消登记
+     * @param orderId
+     */
+    public void unschedule(Long orderId) {
+        stringRedisTemplate.opsForZSet().remove(orderProperties.getTimeoutKey(), orderId.toString());
+        Long second = deadlines.remove(orderId);
+        if (second != null) {
+            wheel[(int) (second % WHEEL_SIZE)].remove(orderId);
+        }
+    }
+
+    /**
+     * 时间轮每秒转动一格，取消到期的订单
+     */
+    @Scheduled(fixedRate = 1000)
+    public void tick() {
+        long now = currentSecond();
+        //长时间停顿（如GC）后最多补转一圈
+        long from = Math.max(lastTick + 1, now - WHEEL_SIZE + 1);
+
+        List<Long> expired = new ArrayList<>();
+        for (long t = from; t <= now; t++) {
+            Iterator<Long> iterator = wheel[(int) (t % WHEEL_SIZE)].iterator();
+            while (iterator.hasNext()) {
+                Long orderId = iterator.next();
+                Long second = deadlines.get(orderId);
+                if (second == null) {
+                    iterator.remove();
+                } else if (second <= now) {
+                    iterator.remove();
+                    deadlines.remove(orderId, second);
+                    expired.add(orderId);
+                }
+            }
+        }
+        lastTick = now;
+
+        if (!expired.isEmpty()) {
+            cancel(expired);
+        }
+    }
+
+    /**
+     * 每分钟扫描一次redis：取消已过期的订单，预加载即将到期的订单
+     * 应用启动后立即执行一次，重启前登记的订单由此恢复
+     */
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void sweep() {
+        try {
+            importPendingOrders();
+
+            String key = orderProperties.getTimeoutKey();
+            int batchSize = orderProperties.getTimeoutBatchSize();
+            long nowMillis = System.currentTimeMillis();
+
+            //已过期的订单，分批取消
+            while (true) {
+                Set<String> members = stringRedisTemplate.opsForZSet().rangeByScore(key, 0, nowMillis, 0, batchSize);
+                if (members == null || members.isEmpty()) {
+                    break;
+                }
+                List<Long> ids = new ArrayList<>(members.size());
+                for (String member : members) {
+                    ids.add(Long.valueOf(member));
+                }
+                cancel(ids);
+                if (members.size() < batchSize) {
+                    break;
+                }
+            }
+
+            //即将到期的订单，加载到时间轮
+            long aheadMillis = TimeUnit.SECONDS.toMillis(orderProperties.getTimeoutLoadAheadSeconds());
+            Set<ZSetOperations.TypedTuple<String>> upcoming = stringRedisTemplate.opsForZSet()
+                    .rangeByScoreWithScores(key, nowMillis, nowMillis + aheadMillis);
+            if (upcoming != null) {
+                for (ZSetOperations.TypedTuple<String> tuple : upcoming) {
+                    addToWheel(Long.valueOf(tuple.getValue()), tuple.getScore().longValue());
+                }
+            }
+        } catch (Exception e) {
+            log.error("扫描超时订单失败", e);
+        }
+    }
+
+    /**
+     * 批量取消订单，只取消仍处于待付款状态的订单，已支付的订单不受影响；多个节点重复取消同一订单也没有影响
+     * @param ids
+     */
+    private void cancel(List<Long> ids) {
+        int batchSize = orderProperties.getTimeoutBatchSize();
+        for (int i = 0; i < ids.size(); i += batchSize) {
+            List<Long> batch = ids.subList(i, Math.min(i + batchSize, ids.size()));
+            Orders orders = Orders.builder()
+                    .status(Orders.CANCELLED)
+                    .cancelReason(MessageConstant.ORDER_PAY_TIMEOUT)
+                    .cancelTime(LocalDateTime.now())
+                    .build();
+            int rows = orderMapper.updateStatusByIds(batch, Orders.PENDING_PAYMENT, orders);
+            workspaceCounter.ordersStatusChanged(batch, Orders.PENDING_PAYMENT, Orders.CANCELLED, rows);
+
+            Object[] members = new Object[batch.size()];
+            for (int j = 0; j < batch.size(); j++) {
+                members[j] = batch.get(j).toString();
+            }
+            stringRedisTemplate.opsForZSet().remove(orderProperties.getTimeoutKey(), members);
+            log.info("自动取消超时订单：{}个，实际取消：{}个", batch.size(), rows);
+        }
+    }
+
+    /**
+     * 上线前产生的待付款订单不在redis中，首次运行时按主键分批导入
+     * 全部导入成功后才标记已导入，中途失败时下次扫描重新导入；重复导入同一订单只会覆盖相同的到期时间
+     */
+    private void importPendingOrders() {
+        String initKey = orderProperties.getTimeoutKey() + INIT_KEY_SUFFIX;
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(initKey))) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int batchSize = orderProperties.getTimeoutBatchSize();
+        long lastId = 0;
+        int count = 0;
+        while (true) {
+            List<Orders> ordersList = orderMapper.getPageByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT, now, lastId, batchSize);
+            if (ordersList.isEmpty()) {
+                break;
+            }
+            Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+            for (Orders orders : ordersList) {
+                long deadlineMillis = orders.getOrderTime().plusMinutes(orderProperties.getPayTimeoutMinutes())
+                        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                tuples.add(new DefaultTypedTuple<>(orders.getId().toString(), (double) deadlineMillis));
+            }
+            stringRedisTemplate.opsForZSet().add(orderProperties.getTimeoutKey(), tuples);
+            count += ordersList.size();
+            lastId = ordersList.get(ordersList.size() - 1).getId();
+            if (ordersList.size() < batchSize) {
+                break;
+            }
+        }
+        stringRedisTemplate.opsForValue().set(initKey, "1");
+        log.info("导入待付款订单到超时队列：{}个", count);
+    }
+
+    /**
+     * 加入时间轮，超出预加载范围的订单暂不加入，由后续扫描加载
+     * 已过期的订单放到下一格，下一秒立即处理
+     * @param orderId
+     * @param deadlineMillis
+     */
+    private void addToWheel(Long orderId, long deadlineMillis) {
+        long second = (deadlineMillis + 999) / 1000;
+        if (second - currentSecond() > orderProperties.getTimeoutLoadAheadSeconds()) {
+            return;
+        }
+        second = Math.max(second, lastTick + 1);
+        Long previous = deadlines.put(orderId, second);
+        if (previous != null && previous != second) {
+            wheel[(int) (previous % WHEEL_SIZE)].remove(orderId);
+        }
+        wheel[(int) (second % WHEEL_SIZE)].add(orderId);
+    }
+
+    private static long currentSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
@@ -0,0 +1,46 @@
+package com.sky.task;
+
+import com.sky.properties.ReportProperties;
+import com.sky.report.SalesRanking;
+import com.sky.service.ReportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * 数据统计相关定时任务
+ */
+@Component
+@Slf4j
+public class ReportTask {
+
+    @Autowired
+    private ReportService reportService;
+    @Autowired
+    private ReportProperties reportProperties;
+    @Autowired
+    private SalesRanking salesRanking;
+
+    /**
+     * 每天凌晨2点（派送中订单自动完成之后），重新计算最近几天的每日汇总数据
+     */
+    @Scheduled(cron = "0 0 2 * * ?")
+    public void rebuildDailyStats() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        reportService.rebuild(yesterday.minusDays(reportProperties.getRebuildDays() - 1), yesterday);
+    }
+
+    /**
+     * 每天凌晨2点半，与数据库核对最近几天的商品销量排名，并清理过期的统计记录
+     */
+    @Scheduled(cron = "0 30 2 * * ?")
+    public void checkSalesRanking() {
+        LocalDate today = LocalDate.now();
+        int mismatched = salesRanking.check(today.minusDays(reportProperties.getRebuildDays()), today.minusDays(1));
+        salesRanking.cleanup();
+        log.info("核对商品销量排名完成，不一致的天数：{}", mismatched);
+    }
+}
@@ -0,0 +1,111 @@
+package com.sky.task;
+
+import com.sky.cache.MenuCache;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.ImageThumbnailMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.properties.ThumbnailProperties;
+import com.sky.utils.ImageUtil;
+import com.sky.utils.MinioUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 异步生成图片的小图、中图，菜品、套餐列表返回缩略图地址，小程序不再下载原图
+ * 从minio读取原图，生成的缩略图上传到原图旁边，名称规则见ImageUtil.thumbnailName
+ * 两个缩略图都上传成功后记录到image_thumbnail表，列表只为有记录的图片返回缩略图地址
+ */
+@Component
+@Slf4j
+public class ThumbnailTask {
+
+    @Autowired
+    private MinioUtil minioUtil;
+    @Autowired
+    private ThumbnailProperties thumbnailProperties;
+    @Autowired
+    private ThreadPoolTaskExecutor thumbnailExecutor;
+    @Autowired
+    private ImageThumbnailMapper imageThumbnailMapper;
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private MenuCache menuCache;
+
+    /**
+     * 提交生成缩略图的任务，队列已满时跳过
+     * @param objectName 原图的对象名称
+     */
+    public void generate(String objectName) {
+        try {
+            thumbnailExecutor.execute(() -> doGenerate(objectName));
+        } catch (TaskRejectedException e) {
+            log.warn("缩略图任务队列已满，跳过：{}", objectName);
+        }
+    }
+
+    private void doGenerate(String objectName) {
+        try {
+            BufferedImage image;
+            try (InputStream in = minioUtil.download(objectName)) {
+                image = ImageUtil.read(in, thumbnailProperties.getMaxPixels());
+            }
+            if (image == null) {
+                log.info("不支持的图片格式或图片尺寸过大，不生成缩略图：{}", objectName);
+                return;
+            }
+            upload(image, objectName, ImageUtil.SMALL, thumbnailProperties.getSmallSize());
+            upload(image, objectName, ImageUtil.MEDIUM, thumbnailProperties.getMediumSize());
+            imageThumbnailMapper.insert(objectName, LocalDateTime.now());
+            //图片可能在缩略图生成之前已被菜品、套餐使用，只清理这些菜品、套餐所在分类的列表缓存，使其返回缩略图地址
+            List<String> keys = new ArrayList<>();
+            dishMapper.getCategoryIdsByImage(objectName).forEach(categoryId -> keys.add(MenuCache.dishKey(categoryId)));
+            setmealMapper.getCategoryIdsByImage(objectName).forEach(categoryId -> keys.add(MenuCache.setmealKey(categoryId)));
+            menuCache.evict(keys);
+        } catch (Exception e) {
+            log.error("生成缩略图失败：{}", objectName, e);
+        }
+    }
+
+    /**
+     * 查询其中已生成缩略图的图片
+     * @param images 图片地址
+     * @return 已生成缩略图的图片地址
+     */
+    public Set<String> generated(Collection<String> images) {
+        Set<String> objectNames = images.stream().map(ImageUtil::objectName)
+                .filter(Objects::nonNull).collect(Collectors.toSet());
+        Set<String> result = new HashSet<>();
+        if (objectNames.isEmpty()) {
+            return result;
+        }
+        Set<String> generated = new HashSet<>(imageThumbnailMapper.getByObjectNames(objectNames));
+        for (String image : images) {
+            if (image != null && generated.contains(ImageUtil.objectName(image))) {
+                result.add(image);
+            }
+        }
+        return result;
+    }
+
+    private void upload(BufferedImage image, String objectName, String size, int maxSize) throws Exception {
+        byte[] bytes = ImageUtil.thumbnail(image, maxSize, thumbnailProperties.getQuality());
+        minioUtil.upload(bytes, ImageUtil.THUMBNAIL_CONTENT_TYPE, ImageUtil.thumbnailName(objectName, size));
+    }
+}
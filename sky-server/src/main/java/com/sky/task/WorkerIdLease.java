@@ -0,0 +1,133 @@
+package com.sky.task;
+
+import com.sky.properties.OrderProperties;
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * 订单号生成器机器id的租约
+ * 没有配置机器id时，启动时从redis中租用一个未被占用的机器id(0~1023)：每个机器id对应一个带过期时间的key，SET NX成功即租用成功
+ * 定时续期，节点停止时释放；续期时发现租约已失效且被其它节点占用（如长时间无法连接redis），重新租用并切换机器id
+ * 所有机器id都被占用或无法连接redis时启动失败，不会退回默认机器id
+ */
+@Component
+@Slf4j
+public class WorkerIdLease {
+
+    private static final String KEY_PREFIX = "sky:order:worker:";
+
+    //每次从不同的机器id开始尝试，减少多个节点同时启动时的冲突
+    private static final String SEQUENCE_KEY = KEY_PREFIX + "seq";
+
+    //租约仍属于当前节点时续期
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('expire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    //租约仍属于当前节点时释放
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderProperties orderProperties;
+
+    //当前节点的租约标识
+    private final String token = UUID.randomUUID().toString();
+
+    //租用的机器id，没有租用时为null
+    private volatile Long workerId;
+
+    private volatile LongConsumer listener;
+
+    /**
+     * 租用一个未被占用的机器id
+     * @return
+     * @throws IllegalStateException 所有机器id都已被占用
+     */
+    public synchronized long acquire() {
+        long maxWorkers = SnowflakeIdGenerator.MAX_WORKER_ID + 1;
+        Long start = stringRedisTemplate.opsForValue().increment(SEQUENCE_KEY);
+        for (long i = 0; i < maxWorkers; i++) {
+            long id = Math.floorMod((start == null ? 0 : start) + i, maxWorkers);
+            Boolean acquired = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(KEY_PREFIX + id, token, orderProperties.getWorkerLeaseSeconds(), TimeUnit.SECONDS);
+            if (Boolean.TRUE.equals(acquired)) {
+                workerId = id;
+                log.info("租用订单号机器id：{}", id);
+                return id;
+            }
+        }
+        throw new IllegalStateException("没有可用的订单号机器id，请为各节点配置sky.order.worker-id");
+    }
+
+    /**
+     * 机器id变化时通知订单号生成器
+     * @param listener
+     */
+    public void onChange(LongConsumer listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 定时续期，租约已被其它节点占用时重新租用
+     */
+    @Scheduled(fixedDelayString = "${sky.order.worker-lease-renew-millis:60000}")
+    public synchronized void renew() {
+        Long id = workerId;
+        if (id == null) {
+            return;
+        }
+        try {
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(KEY_PREFIX + id),
+                    token, String.valueOf(orderProperties.getWorkerLeaseSeconds()));
+            if (Long.valueOf(1).equals(renewed)) {
+                return;
+            }
+            //租约已过期：没有被其它节点占用时继续使用原来的机器id，否则重新租用
+            Boolean reacquired = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(KEY_PREFIX + id, token, orderProperties.getWorkerLeaseSeconds(), TimeUnit.SECONDS);
+            if (Boolean.TRUE.equals(reacquired)) {
+                log.warn("订单号机器id租约已过期，重新租用原机器id：{}", id);
+                return;
+            }
+            long newId = acquire();
+            log.error("订单号机器id {} 已被其它节点占用，切换为：{}", id, newId);
+            LongConsumer current = listener;
+            if (current != null) {
+                current.accept(newId);
+            }
+        } catch (Exception e) {
+            log.error("订单号机器id续期失败：{}", id, e);
+        }
+    }
+
+    /**
+     * 节点停止时释放租约
+     */
+    @PreDestroy
+    public void release() {
+        Long id = workerId;
+        if (id == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(KEY_PREFIX + id), token);
+        } catch (Exception e) {
+            log.warn("释放订单号机器id租约失败：{}", id, e);
+        }
+    }
+}
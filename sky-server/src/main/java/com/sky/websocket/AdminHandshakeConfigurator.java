@@ -0,0 +1,71 @@
+package com.sky.websocket;
+
+import com.sky.cache.VerifiedTokenCache;
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.websocket.HandshakeResponse;
+import javax.websocket.server.HandshakeRequest;
+import javax.websocket.server.ServerEndpointConfig;
+import java.util.List;
+
+/**
+ * 管理端WebSocket握手时校验jwt令牌
+ * 令牌从请求头（与管理端接口相同的名称）或查询参数token中获取（浏览器的WebSocket不能设置请求头），
+ * 校验通过后把员工id保存到连接的属性中，未通过的连接在建立后立即关闭
+ */
+@Component
+@Slf4j
+public class AdminHandshakeConfigurator extends ServerEndpointConfig.Configurator {
+
+    //连接属性中保存员工id的名称
+    public static final String EMP_ID = "empId";
+
+    //查询参数中令牌的名称
+    public static final String TOKEN_PARAMETER = "token";
+
+    //配置器由容器创建，依赖保存在静态变量中
+    private static JwtProperties jwtProperties;
+    private static VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    public void setJwtProperties(JwtProperties jwtProperties) {
+        AdminHandshakeConfigurator.jwtProperties = jwtProperties;
+    }
+
+    @Autowired
+    public void setVerifiedTokenCache(VerifiedTokenCache verifiedTokenCache) {
+        AdminHandshakeConfigurator.verifiedTokenCache = verifiedTokenCache;
+    }
+
+    /**
+     * 握手时校验令牌，每个连接的ServerEndpointConfig是单独的副本，属性不会在连接之间共享
+     * @param sec
+     * @param request
+     * @param response
+     */
+    @Override
+    public void modifyHandshake(ServerEndpointConfig sec, HandshakeRequest request, HandshakeResponse response) {
+        sec.getUserProperties().remove(EMP_ID);
+        String token = first(request.getHeaders().get(jwtProperties.getAdminTokenName()));
+        if (token == null) {
+            token = first(request.getParameterMap().get(TOKEN_PARAMETER));
+        }
+        if (token == null) {
+            return;
+        }
+        try {
+            Long empId = verifiedTokenCache.verify(jwtProperties.getAdminSecretKey(), token, JwtClaimsConstant.EMP_ID);
+            sec.getUserProperties().put(EMP_ID, empId);
+        } catch (Exception e) {
+            log.debug("WebSocket握手令牌校验失败：{}", e.getMessage());
+        }
+    }
+
+    private static String first(List<String> values) {
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+}
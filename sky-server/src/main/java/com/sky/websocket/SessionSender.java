@@ -0,0 +1,98 @@
+package com.sky.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+/**
+ * 单个WebSocket连接的发送队列
+ * 同一时间只有一条消息在异步发送，发送完成后再发送下一条，推送线程只入队不等待网络；
+ * 队列有界：队列中已有相同消息时合并，队列满时丢弃最早的消息，连续丢弃过多时断开连接
+ */
+@Slf4j
+class SessionSender implements SendHandler {
+
+    private final Session session;
+    private final int capacity;
+    private final int maxDropped;
+
+    private final ArrayDeque<String> queue = new ArrayDeque<>();
+
+    //是否有消息正在发送
+    private boolean sending;
+
+    //上一次发送成功之后丢弃的消息数
+    private int dropped;
+
+    private boolean closed;
+
+    SessionSender(Session session, int capacity, int maxDropped) {
+        this.session = session;
+        this.capacity = capacity;
+        this.maxDropped = maxDropped;
+    }
+
+    /**
+     * 消息入队，没有正在发送的消息时立即发送
+     * @param text
+     */
+    synchronized void send(String text) {
+        if (closed || queue.contains(text)) {
+            return;
+        }
+        if (queue.size() >= capacity) {
+            queue.pollFirst();
+            if (++dropped > maxDropped) {
+                close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "slow consumer"));
+                return;
+            }
+        }
+        queue.offerLast(text);
+        if (!sending) {
+            sendNext();
+        }
+    }
+
+    /**
+     * 上一条消息发送完成
+     * @param result
+     */
+    @Override
+    public synchronized void onResult(SendResult result) {
+        if (!result.isOK()) {
+            log.warn("WebSocket消息发送失败，断开连接：{}", session.getId(), result.getException());
+            close(new CloseReason(CloseReason.CloseCodes.CLOSED_ABNORMALLY, "send failed"));
+            return;
+        }
+        dropped = 0;
+        sendNext();
+    }
+
+    synchronized void close(CloseReason reason) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.clear();
+        try {
+            session.close(reason);
+        } catch (IOException e) {
+            log.warn("关闭WebSocket连接失败：{}", session.getId(), e);
+        }
+    }
+
+    private void sendNext() {
+        String text = queue.pollFirst();
+        if (text == null || closed || !session.isOpen()) {
+            sending = false;
+            return;
+        }
+        sending = true;
+        session.getAsyncRemote().sendText(text, this);
+    }
+}
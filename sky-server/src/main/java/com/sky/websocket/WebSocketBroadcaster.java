@@ -0,0 +1,103 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.properties.WebSocketProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 向所有节点上的管理端连接推送消息
+ * 消息通过redis发布订阅广播，每个节点收到后推送给自己的连接；redis不可用时只推送给本节点的连接
+ */
+@Component
+@Slf4j
+public class WebSocketBroadcaster implements MessageListener {
+
+    //消息类型：0心跳 1来单提醒 2客户催单
+    public static final int HEARTBEAT = 0;
+    public static final int NEW_ORDER = 1;
+    public static final int REMINDER = 2;
+
+    private static final String HEARTBEAT_MESSAGE = JSON.toJSONString(message(HEARTBEAT, null, null));
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(webSocketProperties.getChannel()));
+    }
+
+    /**
+     * 推送订单消息，在事务中调用时等事务提交后再推送，回滚的订单不会推送给管理端
+     * @param type
+     * @param orderId
+     * @param content
+     */
+    public void push(int type, Long orderId, String content) {
+        String json = JSON.toJSONString(message(type, orderId, content));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(json);
+                }
+            });
+        } else {
+            publish(json);
+        }
+    }
+
+    private void publish(String json) {
+        try {
+            stringRedisTemplate.convertAndSend(webSocketProperties.getChannel(), json);
+        } catch (Exception e) {
+            log.error("广播推送消息失败，只推送给本节点的连接", e);
+            WebSocketServer.sendToAllClient(json);
+        }
+    }
+
+    /**
+     * 收到广播的推送消息，推送给本节点的连接
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        WebSocketServer.sendToAllClient(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 定时向本节点的连接发送心跳，保持连接不被代理、防火墙断开；已失效的连接发送失败后被关闭
+     */
+    @Scheduled(fixedDelayString = "${sky.websocket.heartbeat-millis:30000}")
+    public void heartbeat() {
+        WebSocketServer.sendToAllClient(HEARTBEAT_MESSAGE);
+    }
+
+    private static Map<String, Object> message(int type, Long orderId, String content) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", type);
+        map.put("orderId", orderId);
+        map.put("content", content);
+        return map;
+    }
+}
@@ -0,0 +1,120 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.websocket.CloseReason;
+import javax.websocket.OnClose;
+import javax.websocket.OnError;
+import javax.websocket.OnMessage;
+import javax.websocket.OnOpen;
+import javax.websocket.Session;
+import javax.websocket.server.PathParam;
+import javax.websocket.server.ServerEndpoint;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WebSocket服务，管理端连接后接收来单提醒、客户催单等推送
+ * 每个连接一个有界发送队列，推送只入队，慢连接不会拖慢其它连接和推送线程
+ * 握手时校验管理端令牌，未通过校验的连接立即关闭，不接收推送
+ */
+@Component
+@ServerEndpoint(value = "/ws/{sid}", configurator = AdminHandshakeConfigurator.class)
+@Slf4j
+public class WebSocketServer {
+
+    //客户端发送的心跳及回应
+    private static final String PING = "ping";
+    private static final String PONG = "pong";
+
+    //连接id -> 发送队列
+    private static final Map<String, SessionSender> SENDERS = new ConcurrentHashMap<>();
+
+    //每个连接都会创建一个WebSocketServer对象，配置保存在静态变量中
+    private static WebSocketProperties webSocketProperties;
+
+    @Autowired
+    public void setWebSocketProperties(WebSocketProperties webSocketProperties) {
+        WebSocketServer.webSocketProperties = webSocketProperties;
+    }
+
+    /**
+     * 连接建立成功
+     * @param session
+     * @param sid
+     */
+    @OnOpen
+    public void onOpen(Session session, @PathParam("sid") String sid) {
+        Object empId = session.getUserProperties().get(AdminHandshakeConfigurator.EMP_ID);
+        if (empId == null) {
+            log.warn("客户端{}未通过令牌校验，关闭连接", sid);
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "unauthorized"));
+            } catch (IOException e) {
+                log.warn("关闭WebSocket连接失败：{}", session.getId(), e);
+            }
+            return;
+        }
+        session.setMaxIdleTimeout(webSocketProperties.getMaxIdleMillis());
+        SENDERS.put(session.getId(), new SessionSender(session,
+                webSocketProperties.getSendQueueCapacity(), webSocketProperties.getMaxDroppedMessages()));
+        log.info("客户端{}（员工{}）建立连接，当前连接数：{}", sid, empId, SENDERS.size());
+    }
+
+    /**
+     * 收到客户端消息，目前只有心跳
+     * @param message
+     * @param session
+     */
+    @OnMessage
+    public void onMessage(String message, Session session) {
+        if (PING.equals(message)) {
+            SessionSender sender = SENDERS.get(session.getId());
+            if (sender != null) {
+                sender.send(PONG);
+            }
+        }
+    }
+
+    /**
+     * 连接关闭
+     * @param session
+     * @param sid
+     */
+    @OnClose
+    public void onClose(Session session, @PathParam("sid") String sid) {
+        SENDERS.remove(session.getId());
+        log.info("客户端{}断开连接，当前连接数：{}", sid, SENDERS.size());
+    }
+
+    /**
+     * 连接出错，容器随后会关闭连接
+     * @param session
+     * @param e
+     */
+    @OnError
+    public void onError(Session session, Throwable e) {
+        log.warn("WebSocket连接出错：{}", session.getId(), e);
+        SENDERS.remove(session.getId());
+    }
+
+    /**
+     * 向本节点的所有连接推送消息
+     * @param message
+     */
+    public static void sendToAllClient(String message) {
+        SENDERS.values().forEach(sender -> sender.send(message));
+    }
+
+    /**
+     * 本节点的连接数
+     * @return
+     */
+    public static int size() {
+        return SENDERS.size();
+    }
+}
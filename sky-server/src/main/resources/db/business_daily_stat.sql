@@ -0,0 +1,15 @@
+-- 每日经营数据汇总表，数据统计报表按日期范围读取，不再逐日聚合订单表和用户表
+-- 历史日期由定时任务和订单完成时增量维护，当天的数据实时计算
+create table if not exists business_daily_stat
+(
+    stat_date         date                     not null comment '日期' primary key,
+    turnover          decimal(12, 2) default 0 not null comment '营业额（已完成订单金额）',
+    order_count       int            default 0 not null comment '订单数',
+    valid_order_count int            default 0 not null comment '有效订单数（已完成）',
+    new_user_count    int            default 0 not null comment '新增用户数',
+    update_time       datetime                 null comment '更新时间'
+) comment '每日经营数据汇总';
+
+-- 汇总计算按下单时间、注册时间分组，需要以下索引
+-- create index idx_orders_order_time on orders (order_time);
+-- create index idx_user_create_time on user (create_time);
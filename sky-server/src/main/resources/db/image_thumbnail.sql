@@ -0,0 +1,7 @@
+-- 已生成缩略图的图片，缩略图全部上传成功后写入
+-- 菜品、套餐列表只为这里有记录的图片返回缩略图地址，没有记录时返回null，小程序使用原图
+create table if not exists image_thumbnail
+(
+    object_name varchar(255) not null comment '原图在minio中的对象名称' primary key,
+    create_time datetime     null comment '生成时间'
+) comment '已生成缩略图的图片';
@@ -0,0 +1,120 @@
+package com.sky.aspect;
+
+import com.sky.annotation.AutoFill;
+import com.sky.context.BaseContext;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.enumeration.OperationType;
+import org.aspectj.lang.JoinPoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AutoFillAspectTest {
+
+    private final AutoFillAspect autoFillAspect = new AutoFillAspect();
+
+    @BeforeEach
+    void setUp() {
+        BaseContext.setCurrentId(9L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    /**
+     * 插入时填充4个公共字段
+     */
+    @Test
+    void insertFillsAllFields() {
+        Dish dish = new Dish();
+
+        autoFillAspect.autoFill(joinPoint(dish), autoFill(OperationType.INSERT));
+
+        assertNotNull(dish.getCreateTime());
+        assertEquals(9L, dish.getCreateUser());
+        assertEquals(dish.getCreateTime(), dish.getUpdateTime());
+        assertEquals(9L, dish.getUpdateUser());
+    }
+
+    /**
+     * 修改时只填充修改时间和修改人
+     */
+    @Test
+    void updateFillsOnlyUpdateFields() {
+        Dish dish = new Dish();
+
+        autoFillAspect.autoFill(joinPoint(dish), autoFill(OperationType.UPDATE));
+
+        assertNull(dish.getCreateTime());
+        assertNull(dish.getCreateUser());
+        assertNotNull(dish.getUpdateTime());
+        assertEquals(9L, dish.getUpdateUser());
+    }
+
+    /**
+     * 参数为实体集合时（批量插入）为每个对象填充，跳过集合中的null
+     */
+    @Test
+    void collectionArgumentFillsEveryEntity() {
+        List<Setmeal> setmeals = Arrays.asList(new Setmeal(), null, new Setmeal());
+
+        autoFillAspect.autoFill(joinPoint(setmeals), autoFill(OperationType.INSERT));
+
+        for (Setmeal setmeal : Arrays.asList(setmeals.get(0), setmeals.get(2))) {
+            assertNotNull(setmeal.getCreateTime());
+            assertEquals(9L, setmeal.getCreateUser());
+            assertNotNull(setmeal.getUpdateTime());
+            assertEquals(9L, setmeal.getUpdateUser());
+        }
+    }
+
+    /**
+     * 没有公共字段的实体类不报错
+     */
+    @Test
+    void entityWithoutFieldsIsIgnored() {
+        assertDoesNotThrow(() -> autoFillAspect.autoFill(joinPoint(new DishFlavor()), autoFill(OperationType.INSERT)));
+    }
+
+    /**
+     * 每个实体类的setter只解析一次：多次填充不同实体类后缓存中每个类一项
+     */
+    @Test
+    void settersAreResolvedOncePerClass() {
+        for (int i = 0; i < 1000; i++) {
+            autoFillAspect.autoFill(joinPoint(new Dish()), autoFill(OperationType.UPDATE));
+            autoFillAspect.autoFill(joinPoint(Arrays.asList(new Setmeal(), new Setmeal())), autoFill(OperationType.INSERT));
+        }
+
+        Map<?, ?> settersCache = (Map<?, ?>) ReflectionTestUtils.getField(autoFillAspect, "settersCache");
+        assertEquals(2, settersCache.size());
+    }
+
+    private static JoinPoint joinPoint(Object arg) {
+        JoinPoint joinPoint = mock(JoinPoint.class);
+        when(joinPoint.getArgs()).thenReturn(new Object[]{arg});
+        return joinPoint;
+    }
+
+    private static AutoFill autoFill(OperationType operationType) {
+        AutoFill autoFill = mock(AutoFill.class);
+        when(autoFill.value()).thenReturn(operationType);
+        return autoFill;
+    }
+}
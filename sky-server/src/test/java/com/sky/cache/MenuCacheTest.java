@@ -0,0 +1,297 @@
+package com.sky.cache;
+
+import com.sky.properties.MenuCacheProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MenuCacheTest {
+
+    private static final String KEY = MenuCache.dishKey(11L);
+
+    /**
+     * 单节点500个并发请求同时未命中，只查询一次数据库
+     */
+    @Test
+    void missStormOnOneNodeLoadsOnce() throws Exception {
+        FakeRedis redis = new FakeRedis();
+        MenuCache node = redis.node();
+        AtomicInteger dbQueries = new AtomicInteger();
+
+        List<Object> results = storm(500, i -> node, () -> slowQuery(dbQueries));
+
+        assertEquals(1, dbQueries.get());
+        results.forEach(result -> assertEquals("dishes", result));
+        assertEquals("dishes", redis.values.get(KEY));
+    }
+
+    /**
+     * 两个节点各250个并发请求同时未命中，只有抢到锁的节点查询数据库，另一个节点等待重建完成的通知
+     */
+    @Test
+    void missStormAcrossNodesLoadsOnce() throws Exception {
+        FakeRedis redis = new FakeRedis();
+        MenuCache[] nodes = {redis.node(), redis.node()};
+        AtomicInteger dbQueries = new AtomicInteger();
+
+        List<Object> results = storm(500, i -> nodes[i % 2], () -> slowQuery(dbQueries));
+
+        assertEquals(1, dbQueries.get());
+        results.forEach(result -> assertEquals("dishes", result));
+        //没有抢到锁的节点只有一个线程在等待，且等到了重建完成的通知
+        assertEquals(1L, (Long) nodes[0].stats().get("lockWaits") + (Long) nodes[1].stats().get("lockWaits"));
+        assertEquals(0L, nodes[0].stats().get("lockWaitTimeouts"));
+        assertEquals(0L, nodes[1].stats().get("lockWaitTimeouts"));
+    }
+
+    /**
+     * 查询数据库期间发生清理，查询结果返回给调用方但不写入缓存
+     */
+    @Test
+    void loadOverlappingEvictionIsNotCached() {
+        FakeRedis redis = new FakeRedis();
+        MenuCache node = redis.node();
+        MenuCache admin = redis.node();
+
+        Object result = node.get(KEY, () -> {
+            admin.evict(KEY);
+            return "old dishes";
+        });
+
+        assertEquals("old dishes", result);
+        assertNull(redis.values.get(KEY));
+        assertEquals(1L, node.stats().get("staleLoads"));
+        assertEquals("new dishes", node.get(KEY, () -> "new dishes"));
+        assertEquals("new dishes", redis.values.get(KEY));
+    }
+
+    /**
+     * 写入redis的缓存带过期时间
+     */
+    @Test
+    void redisEntriesHaveTtl() {
+        FakeRedis redis = new FakeRedis();
+        redis.node().get(KEY, () -> "dishes");
+
+        assertEquals(3600L, redis.ttls.get(KEY));
+    }
+
+    /**
+     * 按前缀清理：用SCAN遍历匹配的key分批删除，不调用KEYS，其它前缀的缓存和其它节点的本地缓存按广播处理
+     */
+    @Test
+    void evictByPrefixScansInsteadOfKeys() {
+        FakeRedis redis = new FakeRedis();
+        MenuCache node = redis.node();
+        MenuCache other = redis.node();
+        for (long categoryId = 1; categoryId <= 1200; categoryId++) {
+            redis.values.put(MenuCache.dishKey(categoryId), "dishes");
+        }
+        redis.values.put(MenuCache.setmealKey(1L), "setmeals");
+        assertEquals("dishes", other.get(KEY, () -> "db"));
+
+        node.evictByPrefix(MenuCache.DISH_KEY_PREFIX);
+
+        assertEquals(1, redis.values.size());
+        assertEquals("setmeals", redis.values.get(MenuCache.setmealKey(1L)));
+        assertEquals("db", other.get(KEY, () -> "db"));
+        verify(redis.redisTemplates.get(0), never()).keys(any());
+        //1200个key分3批删除
+        verify(redis.redisTemplates.get(0), times(3)).delete(anyCollection());
+    }
+
+    /**
+     * 启动时删除旧版本（dish_分类id、setmeal_分类id）的列表缓存，当前版本和其它缓存不受影响，删除一次后不再遍历
+     */
+    @Test
+    void legacyKeysAreDeletedOnce() {
+        FakeRedis redis = new FakeRedis();
+        MenuCache node = redis.node();
+        redis.values.put("dish_11", "old");
+        redis.values.put("setmeal_12", "old");
+        redis.values.put(MenuCache.dishKey(11L), "dishes");
+        redis.values.put(MenuCache.setmealKey(12L), "setmeals");
+        redis.values.put(MenuCache.categoryKey(1), "categories");
+
+        node.deleteLegacyKeys();
+        node.deleteLegacyKeys();
+
+        assertNull(redis.values.get("dish_11"));
+        assertNull(redis.values.get("setmeal_12"));
+        assertEquals(3, redis.values.size());
+        verify(redis.redisTemplates.get(0), times(2)).scan(any(ScanOptions.class));
+    }
+
+    private static Object slowQuery(AtomicInteger dbQueries) {
+        dbQueries.incrementAndGet();
+        try {
+            Thread.sleep(200);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "dishes";
+    }
+
+    private interface NodeSelector {
+        MenuCache select(int i);
+    }
+
+    private static List<Object> storm(int requests, NodeSelector nodes, java.util.function.Supplier<Object> loader)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                MenuCache node = nodes.select(i);
+                futures.add(executor.submit((Callable<Object>) () -> {
+                    start.await();
+                    return node.get(KEY, loader);
+                }));
+            }
+            start.countDown();
+            List<Object> results = new ArrayList<>();
+            for (Future<Object> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 多个节点共享的内存redis，只实现菜单缓存用到的命令
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static class FakeRedis {
+
+        private final Map<String, Object> values = new ConcurrentHashMap<>();
+        private final Map<String, Long> ttls = new ConcurrentHashMap<>();
+        private final Map<String, String> strings = new ConcurrentHashMap<>();
+        private final List<MenuCache> nodes = new ArrayList<>();
+        private final List<RedisTemplate> redisTemplates = new ArrayList<>();
+        private final RedisSerializer<Object> serializer = new JdkSerializationRedisSerializer();
+
+        MenuCache node() {
+            RedisTemplate redisTemplate = mock(RedisTemplate.class);
+            ValueOperations valueOperations = mock(ValueOperations.class);
+            when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+            when(redisTemplate.getValueSerializer()).thenReturn(serializer);
+            when(valueOperations.get(any())).thenAnswer(invocation -> values.get(invocation.getArgument(0)));
+            when(redisTemplate.delete(anyCollection())).thenAnswer(invocation -> {
+                ((Collection<String>) invocation.getArgument(0)).forEach(values::remove);
+                return 1L;
+            });
+            when(redisTemplate.scan(any(ScanOptions.class))).thenAnswer(invocation -> {
+                //只用到 * 和 [0-9] 两种通配符
+                String regex = invocation.<ScanOptions>getArgument(0).getPattern().replace("*", ".*");
+                Iterator<String> iterator = values.keySet().stream().filter(key -> key.matches(regex))
+                        .collect(Collectors.toList()).iterator();
+                Cursor<String> cursor = mock(Cursor.class);
+                when(cursor.hasNext()).thenAnswer(i -> iterator.hasNext());
+                when(cursor.next()).thenAnswer(i -> iterator.next());
+                return cursor;
+            });
+            redisTemplates.add(redisTemplate);
+            when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class),
+                    anyList(), any(), any(), any())).thenAnswer(invocation -> {
+                List<String> keys = invocation.getArgument(3);
+                synchronized (this) {
+                    String version = strings.getOrDefault(keys.get(1), "0");
+                    if (!version.equals(string(invocation.getArgument(4)))) {
+                        return 0L;
+                    }
+                    values.put(keys.get(0), serializer.deserialize(invocation.getArgument(5)));
+                    ttls.put(keys.get(0), Long.valueOf(string(invocation.getArgument(6))));
+                    return 1L;
+                }
+            });
+
+            StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+            ValueOperations<String, String> stringOperations = mock(ValueOperations.class);
+            when(stringRedisTemplate.opsForValue()).thenReturn(stringOperations);
+            when(stringOperations.get(anyString())).thenAnswer(invocation -> strings.get(invocation.getArgument(0)));
+            doAnswer(invocation -> strings.put(invocation.getArgument(0), invocation.getArgument(1)))
+                    .when(stringOperations).set(anyString(), anyString());
+            when(stringRedisTemplate.hasKey(anyString())).thenAnswer(invocation -> strings.containsKey(invocation.<String>getArgument(0)));
+            when(stringOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                    .thenAnswer(invocation -> strings.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+            when(stringOperations.increment(anyString())).thenAnswer(invocation -> {
+                synchronized (this) {
+                    long version = Long.parseLong(strings.getOrDefault(invocation.getArgument(0), "0")) + 1;
+                    strings.put(invocation.getArgument(0), String.valueOf(version));
+                    return version;
+                }
+            });
+            //解锁脚本
+            when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(invocation -> {
+                List<String> keys = invocation.getArgument(1);
+                return strings.remove(keys.get(0), invocation.getArgument(2)) ? 1L : 0L;
+            });
+            doAnswer(invocation -> {
+                byte[] body = ((String) invocation.getArgument(1)).getBytes(StandardCharsets.UTF_8);
+                for (MenuCache node : new ArrayList<>(nodes)) {
+                    node.onMessage(new DefaultMessage(new byte[0], body), null);
+                }
+                return 1L;
+            }).when(stringRedisTemplate).convertAndSend(anyString(), anyString());
+
+            MenuCacheProperties properties = new MenuCacheProperties();
+            properties.setLockWaitMillis(5000);
+            MenuCache menuCache = new MenuCache();
+            ReflectionTestUtils.setField(menuCache, "redisTemplate", redisTemplate);
+            ReflectionTestUtils.setField(menuCache, "stringRedisTemplate", stringRedisTemplate);
+            ReflectionTestUtils.setField(menuCache, "redisMessageListenerContainer", mock(RedisMessageListenerContainer.class));
+            ReflectionTestUtils.setField(menuCache, "menuCacheProperties", properties);
+            menuCache.init();
+            synchronized (nodes) {
+                nodes.add(menuCache);
+            }
+            return menuCache;
+        }
+
+        private static String string(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.sky.cache;
+
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VerifiedTokenCacheTest {
+
+    private static final String SECRET = "itcast";
+
+    //内存中redis已注销令牌的key
+    private final Set<String> revokedKeys = ConcurrentHashMap.newKeySet();
+
+    private final StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+    private final JwtProperties jwtProperties = new JwtProperties();
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        jwtProperties.setAdminTtl(7200000);
+        jwtProperties.setUserTtl(7200000);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(stringRedisTemplate.hasKey(anyString())).thenAnswer(invocation -> revokedKeys.contains(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> revokedKeys.add(invocation.getArgument(0)))
+                .when(valueOperations).set(anyString(), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS));
+
+        verifiedTokenCache = new VerifiedTokenCache();
+        ReflectionTestUtils.setField(verifiedTokenCache, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(verifiedTokenCache, "redisMessageListenerContainer", mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(verifiedTokenCache, "jwtProperties", jwtProperties);
+        verifiedTokenCache.init();
+    }
+
+    /**
+     * 同一个令牌只在第一次校验时解析并查询注销记录，之后直接从缓存中取出id
+     */
+    @Test
+    void repeatedVerifyHitsCache() {
+        String token = token(JwtClaimsConstant.EMP_ID, 1L, 60000);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(1L, verifiedTokenCache.verify(SECRET, token, JwtClaimsConstant.EMP_ID));
+        }
+
+        verify(stringRedisTemplate, times(1)).hasKey(anyString());
+    }
+
+    /**
+     * 缓存的令牌不能用于另一端：按用户端的claim校验管理端令牌时重新解析，找不到claim而失败
+     */
+    @Test
+    void cachedTokenIsBoundToClaimName() {
+        String token = token(JwtClaimsConstant.EMP_ID, 1L, 60000);
+        verifiedTokenCache.verify(SECRET, token, JwtClaimsConstant.EMP_ID);
+
+        assertThrows(RuntimeException.class, () -> verifiedTokenCache.verify(SECRET, token, JwtClaimsConstant.USER_ID));
+    }
+
+    /**
+     * 签名错误、已过期的令牌被拒绝，且不会进入缓存
+     */
+    @Test
+    void invalidTokensAreRejected() {
+        String forged = JwtUtil.createJWT("another-secret", 60000, claims(JwtClaimsConstant.EMP_ID, 1L));
+        String expired = token(JwtClaimsConstant.EMP_ID, 1L, -1000);
+
+        assertThrows(RuntimeException.class, () -> verifiedTokenCache.verify(SECRET, forged, JwtClaimsConstant.EMP_ID));
+        assertThrows(RuntimeException.class, () -> verifiedTokenCache.verify(SECRET, expired, JwtClaimsConstant.EMP_ID));
+        assertThrows(RuntimeException.class, () -> verifiedTokenCache.verify(SECRET, forged, JwtClaimsConstant.EMP_ID));
+    }
+
+    /**
+     * 注销已缓存的令牌：本节点立即拒绝，并广播给其它节点
+     */
+    @Test
+    void revokedTokenIsRejected() {
+        String token = token(JwtClaimsConstant.EMP_ID, 1L, 60000);
+        verifiedTokenCache.verify(SECRET, token, JwtClaimsConstant.EMP_ID);
+
+        verifiedTokenCache.revoke(token);
+
+        assertThrows(IllegalStateException.class, () -> verifiedTokenCache.verify(SECRET, token, JwtClaimsConstant.EMP_ID));
+        verify(stringRedisTemplate).convertAndSend(eq(jwtProperties.getRevokedChannel()), anyString());
+    }
+
+    /**
+     * 其它节点广播的注销消息清理本节点的缓存，之后该令牌被拒绝
+     */
+    @Test
+    void revocationBroadcastInvalidatesCache() {
+        String token = token(JwtClaimsConstant.USER_ID, 2L, 60000);
+        assertEquals(2L, verifiedTokenCache.verify(SECRET, token, JwtClaimsConstant.USER_ID));
+
+        //另一个节点注销该令牌，本节点的缓存仍然有效，直到收到广播
+        VerifiedTokenCache otherNode = new VerifiedTokenCache();
+        ReflectionTestUtils.setField(otherNode, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(otherNode, "redisMessageListenerContainer", mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(otherNode, "jwtProperties", jwtProperties);
+        otherNode.init();
+        doAnswer(invocation -> {
+            verifiedTokenCache.onMessage(new DefaultMessage(
+                    jwtProperties.getRevokedChannel().getBytes(StandardCharsets.UTF_8),
+                    invocation.<String>getArgument(1).getBytes(StandardCharsets.UTF_8)), null);
+            return null;
+        }).when(stringRedisTemplate).convertAndSend(anyString(), anyString());
+
+        otherNode.revoke(token);
+
+        assertThrows(IllegalStateException.class, () -> verifiedTokenCache.verify(SECRET, token, JwtClaimsConstant.USER_ID));
+    }
+
+    /**
+     * 没有收到注销广播的节点：缓存期内仍接受该令牌，缓存到期后重新查询注销记录并拒绝
+     */
+    @Test
+    void missedBroadcastIsCaughtAfterCacheTtl() throws Exception {
+        jwtProperties.setTokenCacheTtl(200);
+        VerifiedTokenCache node = new VerifiedTokenCache();
+        ReflectionTestUtils.setField(node, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(node, "redisMessageListenerContainer", mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(node, "jwtProperties", jwtProperties);
+        node.init();
+        String token = token(JwtClaimsConstant.EMP_ID, 1L, 60000);
+        assertEquals(1L, node.verify(SECRET, token, JwtClaimsConstant.EMP_ID));
+
+        //另一个节点注销该令牌，广播丢失
+        verifiedTokenCache.revoke(token);
+        assertEquals(1L, node.verify(SECRET, token, JwtClaimsConstant.EMP_ID));
+
+        Thread.sleep(300);
+        assertThrows(IllegalStateException.class, () -> node.verify(SECRET, token, JwtClaimsConstant.EMP_ID));
+    }
+
+    private static String token(String claimName, Long id, long ttlMillis) {
+        return JwtUtil.createJWT(SECRET, ttlMillis, claims(claimName, id));
+    }
+
+    private static Map<String, Object> claims(String claimName, Long id) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(claimName, id);
+        return claims;
+    }
+}
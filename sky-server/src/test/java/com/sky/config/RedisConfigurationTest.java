@@ -0,0 +1,91 @@
+package com.sky.config;
+
+import com.sky.entity.DishFlavor;
+import com.sky.properties.RedisSerializerProperties;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RedisConfigurationTest {
+
+    private final RedisConfiguration redisConfiguration = new RedisConfiguration();
+
+    /**
+     * json方式写入的一个分类的菜品列表，读取后类型和数据与写入前一致
+     */
+    @Test
+    void jsonRoundTripKeepsTypes() {
+        RedisSerializer<Object> serializer = serializer(RedisConfiguration.SERIALIZER_JSON, true);
+        List<DishVO> dishes = dishes(50);
+
+        Object result = serializer.deserialize(serializer.serialize(dishes));
+
+        assertEquals(dishes, result);
+        assertEquals(DishVO.class, ((List<?>) result).get(0).getClass());
+    }
+
+    /**
+     * 切换为json后，仍能读取切换前jdk序列化写入的数据
+     */
+    @Test
+    void jsonSerializerReadsJdkDataInMigrationMode() {
+        List<DishVO> dishes = dishes(50);
+        byte[] jdkBytes = new JdkSerializationRedisSerializer().serialize(dishes);
+
+        assertEquals(dishes, serializer(RedisConfiguration.SERIALIZER_JSON, true).deserialize(jdkBytes));
+        assertThrows(SerializationException.class,
+                () -> serializer(RedisConfiguration.SERIALIZER_JSON, false).deserialize(jdkBytes));
+    }
+
+    @Test
+    void jdkRoundTrip() {
+        RedisSerializer<Object> serializer = serializer(RedisConfiguration.SERIALIZER_JDK, false);
+        List<DishVO> dishes = dishes(50);
+
+        assertEquals(dishes, serializer.deserialize(serializer.serialize(dishes)));
+    }
+
+    @Test
+    void unknownTypeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> serializer("xml", true));
+    }
+
+    private RedisSerializer<Object> serializer(String type, boolean readJdk) {
+        RedisSerializerProperties properties = new RedisSerializerProperties();
+        properties.setType(type);
+        properties.setReadJdk(readJdk);
+        return redisConfiguration.redisValueSerializer(properties);
+    }
+
+    private static List<DishVO> dishes(int size) {
+        List<DishVO> dishes = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123000000);
+        for (long id = 1; id <= size; id++) {
+            DishVO dishVO = new DishVO();
+            dishVO.setId(id);
+            dishVO.setName("菜品" + id);
+            dishVO.setCategoryId(11L);
+            dishVO.setPrice(new BigDecimal("38.50"));
+            dishVO.setImage("http://localhost:9000/sky/" + id + ".png");
+            dishVO.setDescription("描述" + id);
+            dishVO.setStatus(1);
+            dishVO.setUpdateTime(now);
+            dishVO.setFlavors(new ArrayList<>(Arrays.asList(
+                    DishFlavor.builder().id(id * 2).dishId(id).name("辣度").value("[\"不辣\",\"微辣\",\"中辣\"]").build(),
+                    DishFlavor.builder().id(id * 2 + 1).dishId(id).name("忌口").value("[\"不要葱\",\"不要蒜\"]").build())));
+            dishes.add(dishVO);
+        }
+        return dishes;
+    }
+}
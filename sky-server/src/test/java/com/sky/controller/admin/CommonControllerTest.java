@@ -0,0 +1,249 @@
+package com.sky.controller.admin;
+
+import com.sky.cache.MenuCache;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.ImageThumbnailMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.properties.ThumbnailProperties;
+import com.sky.result.Result;
+import com.sky.task.ThumbnailTask;
+import com.sky.utils.ImageUtil;
+import com.sky.utils.MinioUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用本地的HTTP服务替代minio：按S3协议的路径风格保存、读取对象，上传走真实的MinioClient
+ */
+class CommonControllerTest {
+
+    private static final String BUCKET = "sky-take-out";
+
+    static {
+        //服务端分开写响应头和响应体，关闭Nagle算法，避免与客户端的延迟确认叠加
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    //minio中的对象：对象名称 -> 内容
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+    private String endpoint;
+    private ThreadPoolTaskExecutor thumbnailExecutor;
+    private final ImageThumbnailMapper imageThumbnailMapper = mock(ImageThumbnailMapper.class);
+    private final DishMapper dishMapper = mock(DishMapper.class);
+    private final SetmealMapper setmealMapper = mock(SetmealMapper.class);
+    private final MenuCache menuCache = mock(MenuCache.class);
+    private CommonController commonController;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        endpoint = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        MinioUtil minioUtil = new MinioUtil(endpoint, "minioadmin", "minioadmin", BUCKET);
+        thumbnailExecutor = new ThreadPoolTaskExecutor();
+        thumbnailExecutor.setCorePoolSize(1);
+        thumbnailExecutor.setMaxPoolSize(1);
+        thumbnailExecutor.setQueueCapacity(10);
+        thumbnailExecutor.initialize();
+
+        ThumbnailTask thumbnailTask = new ThumbnailTask();
+        ReflectionTestUtils.setField(thumbnailTask, "minioUtil", minioUtil);
+        ReflectionTestUtils.setField(thumbnailTask, "thumbnailProperties", new ThumbnailProperties());
+        ReflectionTestUtils.setField(thumbnailTask, "thumbnailExecutor", thumbnailExecutor);
+        ReflectionTestUtils.setField(thumbnailTask, "imageThumbnailMapper", imageThumbnailMapper);
+        ReflectionTestUtils.setField(thumbnailTask, "dishMapper", dishMapper);
+        ReflectionTestUtils.setField(thumbnailTask, "setmealMapper", setmealMapper);
+        ReflectionTestUtils.setField(thumbnailTask, "menuCache", menuCache);
+
+        commonController = new CommonController();
+        ReflectionTestUtils.setField(commonController, "minioUtil", minioUtil);
+        ReflectionTestUtils.setField(commonController, "thumbnailTask", thumbnailTask);
+    }
+
+    @AfterEach
+    void tearDown() {
+        thumbnailExecutor.shutdown();
+        server.stop(0);
+    }
+
+    /**
+     * 上传图片：原图原样保存，异步生成的小图、中图长边分别为200、480像素，
+     * 两个缩略图都保存后才记录已生成，并只清理使用该图片的菜品、套餐所在分类的列表缓存
+     */
+    @Test
+    void uploadImageStoresOriginalAndThumbnails() throws Exception {
+        byte[] png = png(1200, 900);
+        when(dishMapper.getCategoryIdsByImage(anyString())).thenReturn(Arrays.asList(3L, 4L));
+        when(setmealMapper.getCategoryIdsByImage(anyString())).thenReturn(Collections.singletonList(5L));
+
+        Result<String> result = commonController.upload(new MockMultipartFile("file", "宫保鸡丁.png", "image/png", png));
+        awaitThumbnails();
+
+        String objectName = ImageUtil.objectName(result.getData());
+        assertTrue(result.getData().startsWith(endpoint + "/" + BUCKET + "/"));
+        assertTrue(objectName.endsWith(".png"));
+        assertArrayEquals(png, objects.get(objectName));
+        assertEquals("image/png", contentTypes.get(objectName));
+
+        BufferedImage small = ImageIO.read(new ByteArrayInputStream(objects.get(ImageUtil.thumbnailName(objectName, ImageUtil.SMALL))));
+        BufferedImage medium = ImageIO.read(new ByteArrayInputStream(objects.get(ImageUtil.thumbnailName(objectName, ImageUtil.MEDIUM))));
+        assertEquals(200, small.getWidth());
+        assertEquals(150, small.getHeight());
+        assertEquals(480, medium.getWidth());
+        assertEquals(360, medium.getHeight());
+        assertEquals(ImageUtil.THUMBNAIL_CONTENT_TYPE, contentTypes.get(ImageUtil.thumbnailName(objectName, ImageUtil.SMALL)));
+
+        verify(imageThumbnailMapper).insert(eq(objectName), any(LocalDateTime.class));
+        verify(dishMapper).getCategoryIdsByImage(objectName);
+        verify(setmealMapper).getCategoryIdsByImage(objectName);
+        verify(menuCache).evict(Arrays.asList(MenuCache.dishKey(3L), MenuCache.dishKey(4L), MenuCache.setmealKey(5L)));
+        verify(menuCache, never()).evictByPrefix(anyString());
+    }
+
+    /**
+     * 声明为图片但无法解码的文件：原图照常保存，不生成缩略图，也不记录已生成
+     */
+    @Test
+    void undecodableImageHasNoThumbnails() throws Exception {
+        byte[] data = "not an image".getBytes(StandardCharsets.UTF_8);
+
+        Result<String> result = commonController.upload(new MockMultipartFile("file", "a.png", "image/png", data));
+        awaitThumbnails();
+
+        assertEquals(1, objects.size());
+        assertArrayEquals(data, objects.get(ImageUtil.objectName(result.getData())));
+        verify(imageThumbnailMapper, never()).insert(anyString(), any());
+        verify(menuCache, never()).evict(anyList());
+    }
+
+    /**
+     * 上传不是图片的文件不生成缩略图
+     */
+    @Test
+    void nonImageUploadSkipsThumbnails() throws Exception {
+        byte[] data = "%PDF-1.4".getBytes(StandardCharsets.UTF_8);
+
+        Result<String> result = commonController.upload(new MockMultipartFile("file", "menu.pdf", "application/pdf", data));
+        awaitThumbnails();
+
+        assertNotNull(result.getData());
+        assertEquals(1, objects.size());
+        assertFalse(objects.keySet().stream().anyMatch(name -> name.endsWith(".jpg")));
+        verify(imageThumbnailMapper, never()).insert(anyString(), any());
+    }
+
+    private void awaitThumbnails() throws InterruptedException {
+        thumbnailExecutor.getThreadPoolExecutor().shutdown();
+        assertTrue(thumbnailExecutor.getThreadPoolExecutor().awaitTermination(30, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 处理S3请求：查询存储桶所在区域、判断存储桶是否存在、上传对象、下载对象
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getQuery();
+        String method = exchange.getRequestMethod();
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = readAll(in);
+        }
+
+        String prefix = "/" + BUCKET;
+        if (!path.startsWith(prefix)) {
+            respond(exchange, 404, new byte[0]);
+        } else if (path.length() <= prefix.length() + 1) {
+            if ("GET".equals(method) && query != null && query.startsWith("location")) {
+                respond(exchange, 200, ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                        + "<LocationConstraint xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">us-east-1</LocationConstraint>")
+                        .getBytes(StandardCharsets.UTF_8));
+            } else {
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            }
+        } else {
+            String objectName = path.substring(prefix.length() + 1);
+            if ("PUT".equals(method)) {
+                objects.put(objectName, body);
+                contentTypes.put(objectName, exchange.getRequestHeaders().getFirst("Content-Type"));
+                exchange.getResponseHeaders().add("ETag", "\"" + Integer.toHexString(objectName.hashCode()) + "\"");
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            } else if ("GET".equals(method) && objects.containsKey(objectName)) {
+                respond(exchange, 200, objects.get(objectName));
+            } else {
+                respond(exchange, 404, new byte[0]);
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
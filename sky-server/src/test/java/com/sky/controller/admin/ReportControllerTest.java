@@ -0,0 +1,155 @@
+package com.sky.controller.admin;
+
+import com.sky.constant.MessageConstant;
+import com.sky.entity.BusinessDailyStat;
+import com.sky.exception.ReportBusinessException;
+import com.sky.mapper.BusinessDailyStatMapper;
+import com.sky.properties.ReportProperties;
+import com.sky.service.ReportService;
+import com.sky.service.impl.ReportServiceImpl;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class ReportControllerTest {
+
+    private static final LocalDate END = LocalDate.now().minusDays(1);
+
+    @Mock
+    private ReportService reportService;
+    @Spy
+    private ReportProperties reportProperties = new ReportProperties();
+    @InjectMocks
+    private ReportController reportController;
+
+    /**
+     * 导出一年（366天）的报表
+     */
+    @Test
+    void exportAcceptsMaxRange() throws Exception {
+        LocalDate begin = END.minusDays(reportProperties.getExportMaxDays() - 1);
+
+        reportController.export(begin, END, new MockHttpServletResponse());
+
+        verify(reportService).exportBusinessData(eq(begin), eq(END), any(OutputStream.class));
+    }
+
+    /**
+     * 超过最大天数、或开始日期晚于结束日期时拒绝导出
+     */
+    @Test
+    void exportRejectsInvalidRange() throws Exception {
+        LocalDate tooEarly = END.minusDays(reportProperties.getExportMaxDays());
+        ReportBusinessException e = assertThrows(ReportBusinessException.class,
+                () -> reportController.export(tooEarly, END, new MockHttpServletResponse()));
+        assertEquals(MessageConstant.REPORT_DATE_RANGE_INVALID, e.getMessage());
+        assertThrows(ReportBusinessException.class,
+                () -> reportController.export(END.plusDays(1), END, new MockHttpServletResponse()));
+        assertThrows(ReportBusinessException.class,
+                () -> reportController.export(LocalDate.of(2000, 1, 1), END, new MockHttpServletResponse()));
+
+        verify(reportService, never()).exportBusinessData(any(), any(), any());
+    }
+
+    /**
+     * 统计接口：缺少日期、开始日期晚于结束日期、超过最大天数时拒绝查询，不调用统计服务
+     */
+    @Test
+    void statisticsRejectInvalidRange() {
+        LocalDate tooEarly = END.minusDays(reportProperties.getStatisticsMaxDays());
+        for (LocalDate[] range : new LocalDate[][]{{null, END}, {END, null}, {END.plusDays(1), END}, {tooEarly, END}}) {
+            assertThrows(ReportBusinessException.class, () -> reportController.turnoverStatistics(range[0], range[1]));
+            assertThrows(ReportBusinessException.class, () -> reportController.userStatistics(range[0], range[1]));
+            assertThrows(ReportBusinessException.class, () -> reportController.ordersStatistics(range[0], range[1]));
+            assertThrows(ReportBusinessException.class, () -> reportController.top10(range[0], range[1]));
+        }
+        verifyNoInteractions(reportService);
+
+        LocalDate begin = END.minusDays(reportProperties.getStatisticsMaxDays() - 1);
+        reportController.turnoverStatistics(begin, END);
+        verify(reportService).getTurnoverStatistics(begin, END);
+    }
+
+    /**
+     * 在64MB堆内存的子进程中导出一年的报表，不发生内存溢出，导出的文件每天一行
+     */
+    @Test
+    void exportYearFitsIn64MbHeap(@TempDir Path dir) throws Exception {
+        File file = dir.resolve("report.xlsx").toFile();
+        File log = dir.resolve("export.log").toFile();
+        Process process = new ProcessBuilder(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-Xmx64m", "-XX:+ExitOnOutOfMemoryError",
+                "-cp", System.getProperty("java.class.path"),
+                ExportYear.class.getName(), file.getAbsolutePath())
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+        assertTrue(process.waitFor(120, TimeUnit.SECONDS), "导出超时");
+        assertEquals(0, process.exitValue(), new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8));
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(file)) {
+            //表头 + 366天
+            assertEquals(367, workbook.getSheet("明细").getPhysicalNumberOfRows());
+            assertEquals(366 * 100.0, workbook.getSheet("概览").getRow(2).getCell(0).getNumericCellValue(), 0.001);
+        }
+    }
+
+    /**
+     * 子进程：汇总表中有完整的一年数据，导出到参数指定的文件
+     */
+    static class ExportYear {
+
+        public static void main(String[] args) throws Exception {
+            ReportServiceImpl reportService = new ReportServiceImpl();
+            ReflectionTestUtils.setField(reportService, "businessDailyStatMapper", new BusinessDailyStatMapper() {
+                @Override
+                public List<BusinessDailyStat> getByDateRange(LocalDate begin, LocalDate end) {
+                    List<BusinessDailyStat> stats = new ArrayList<>();
+                    for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+                        stats.add(BusinessDailyStat.builder().statDate(date).turnover(new BigDecimal("100"))
+                                .orderCount(12).validOrderCount(10).newUserCount(3).build());
+                    }
+                    return stats;
+                }
+
+                @Override
+                public void upsertBatch(List<BusinessDailyStat> stats) {
+                }
+            });
+            ReflectionTestUtils.setField(reportService, "reportProperties", new ReportProperties());
+            try (OutputStream out = new FileOutputStream(args[0])) {
+                reportService.exportBusinessData(END.minusDays(365), END, out);
+            }
+        }
+    }
+}
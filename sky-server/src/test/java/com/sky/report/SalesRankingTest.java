@@ -0,0 +1,224 @@
+package com.sky.report;
+
+import com.sky.dto.DailyGoodsSalesDTO;
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.ReportProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SalesRankingTest {
+
+    private static final LocalDate DAY = LocalDate.now().minusDays(10);
+    private static final String PREFIX = new ReportProperties().getSalesRankKeyPrefix();
+
+    //内存中的redis：有序集合和字符串
+    private final Map<String, Map<String, Double>> zsets = new ConcurrentHashMap<>();
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+
+    private final OrderMapper orderMapper = mock(OrderMapper.class);
+    private SalesRanking salesRanking;
+
+    @BeforeEach
+    void setUp() {
+        salesRanking = new SalesRanking();
+        ReflectionTestUtils.setField(salesRanking, "stringRedisTemplate", redis());
+        ReflectionTestUtils.setField(salesRanking, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(salesRanking, "reportProperties", new ReportProperties());
+    }
+
+    /**
+     * 7天中第2天和第5、6天没有统计过：只从数据库统计这三天（两段），不统计中间已有的日期
+     */
+    @Test
+    void topRebuildsOnlyMissingDays() {
+        for (int i : new int[]{0, 2, 3, 6}) {
+            markBuilt(DAY.plusDays(i));
+        }
+        zsets.put(dayKey(DAY), new ConcurrentHashMap<>(Collections.singletonMap("宫保鸡丁", 5.0)));
+        when(orderMapper.sumSalesByOrderDate(DAY.plusDays(1).atStartOfDay(), DAY.plusDays(2).atStartOfDay()))
+                .thenReturn(Collections.singletonList(new DailyGoodsSalesDTO(DAY.plusDays(1), "宫保鸡丁", 2)));
+        when(orderMapper.sumSalesByOrderDate(DAY.plusDays(4).atStartOfDay(), DAY.plusDays(6).atStartOfDay()))
+                .thenReturn(Collections.singletonList(new DailyGoodsSalesDTO(DAY.plusDays(5), "辣子鸡", 3)));
+
+        List<GoodsSalesDTO> top = salesRanking.top(DAY, DAY.plusDays(6), 10);
+
+        verify(orderMapper, times(2)).sumSalesByOrderDate(any(), any());
+        assertEquals(new GoodsSalesDTO("宫保鸡丁", 7), top.get(0));
+        assertEquals(new GoodsSalesDTO("辣子鸡", 3), top.get(1));
+    }
+
+    /**
+     * 重新统计时分组查询之后、RENAME之前有订单完成并累加：发现版本号变化后重新统计，累加不会丢失
+     */
+    @Test
+    void incrementDuringRebuildIsNotLost() {
+        markBuilt(DAY);
+        zsets.put(dayKey(DAY), new ConcurrentHashMap<>(Collections.singletonMap("宫保鸡丁", 2.0)));
+        when(orderMapper.sumSalesByIds(Collections.singletonList(99L)))
+                .thenReturn(Collections.singletonList(new DailyGoodsSalesDTO(DAY, "宫保鸡丁", 1)));
+        AtomicInteger queries = new AtomicInteger();
+        when(orderMapper.sumSalesByOrderDate(DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay())).thenAnswer(invocation -> {
+            if (queries.incrementAndGet() == 1) {
+                //分组查询读到的是订单99完成之前的数据，随后订单99完成并累加
+                salesRanking.increment(Collections.singletonList(99L));
+                return Collections.singletonList(new DailyGoodsSalesDTO(DAY, "宫保鸡丁", 2));
+            }
+            return Collections.singletonList(new DailyGoodsSalesDTO(DAY, "宫保鸡丁", 3));
+        });
+
+        salesRanking.rebuild(DAY, DAY);
+
+        assertEquals(2, queries.get());
+        assertEquals(3.0, zsets.get(dayKey(DAY)).get("宫保鸡丁"));
+    }
+
+    /**
+     * 没有统计过的日期不累加，查询时从数据库完整统计
+     */
+    @Test
+    void incrementSkipsDaysNotBuilt() {
+        markBuilt(DAY);
+        when(orderMapper.sumSalesByIds(Collections.singletonList(1L))).thenReturn(Arrays.asList(
+                new DailyGoodsSalesDTO(DAY, "宫保鸡丁", 2), new DailyGoodsSalesDTO(DAY.plusDays(1), "辣子鸡", 1)));
+
+        salesRanking.increment(Collections.singletonList(1L));
+
+        assertEquals(2.0, zsets.get(dayKey(DAY)).get("宫保鸡丁"));
+        assertNull(zsets.get(dayKey(DAY.plusDays(1))));
+    }
+
+    /**
+     * 超出保留天数的日期：查询直接使用数据库的分组统计，不写入redis，也不记录为已统计
+     */
+    @Test
+    void daysBeyondRetentionAreQueriedFromDatabase() {
+        int retentionDays = new ReportProperties().getSalesRankRetentionDays();
+        LocalDate begin = LocalDate.now().minusDays(retentionDays + 30);
+        LocalDate end = begin.plusDays(60);
+        List<GoodsSalesDTO> expected = Collections.singletonList(new GoodsSalesDTO("宫保鸡丁", 9));
+        when(orderMapper.getSalesTop(begin.atStartOfDay(), end.plusDays(1).atStartOfDay(), 10)).thenReturn(expected);
+
+        assertEquals(expected, salesRanking.top(begin, end, 10));
+        verify(orderMapper, never()).sumSalesByOrderDate(any(), any());
+        assertTrue(zset(PREFIX + "days").isEmpty());
+
+        //重新统计跨过保留期限的范围时只统计保留期内的日期
+        LocalDate firstRetained = LocalDate.now().minusDays(retentionDays);
+        salesRanking.rebuild(begin, end);
+        verify(orderMapper).sumSalesByOrderDate(firstRetained.atStartOfDay(), end.plusDays(1).atStartOfDay());
+        assertEquals(end.toEpochDay() - firstRetained.toEpochDay() + 1, zset(PREFIX + "days").size());
+        assertNull(zset(PREFIX + "days").get(firstRetained.minusDays(1).format(DateTimeFormatter.BASIC_ISO_DATE)));
+    }
+
+    private void markBuilt(LocalDate date) {
+        zsets.computeIfAbsent(PREFIX + "days", k -> new ConcurrentHashMap<>())
+                .put(date.format(DateTimeFormatter.BASIC_ISO_DATE), (double) date.toEpochDay());
+    }
+
+    private static String dayKey(LocalDate date) {
+        return PREFIX + date.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+
+    private Map<String, Double> zset(String key) {
+        return zsets.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private StringRedisTemplate redis() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ZSetOperations<String, String> zSetOperations = mock(ZSetOperations.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        when(zSetOperations.rangeByScore(anyString(), anyDouble(), anyDouble())).thenAnswer(invocation -> {
+            double min = invocation.getArgument(1);
+            double max = invocation.getArgument(2);
+            return zset(invocation.getArgument(0)).entrySet().stream()
+                    .filter(entry -> entry.getValue() >= min && entry.getValue() <= max)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+        });
+        when(zSetOperations.add(anyString(), anySet())).thenAnswer(invocation -> {
+            Set<ZSetOperations.TypedTuple<String>> tuples = invocation.getArgument(1);
+            tuples.forEach(tuple -> zset(invocation.getArgument(0)).put(tuple.getValue(), tuple.getScore()));
+            return (long) tuples.size();
+        });
+        when(zSetOperations.add(anyString(), anyString(), anyDouble())).thenAnswer(invocation ->
+                zset(invocation.getArgument(0)).put(invocation.getArgument(1), invocation.getArgument(2)) == null);
+        when(zSetOperations.incrementScore(anyString(), anyString(), anyDouble())).thenAnswer(invocation ->
+                zset(invocation.getArgument(0)).merge(invocation.getArgument(1), invocation.getArgument(2), Double::sum));
+        when(zSetOperations.score(anyString(), (Object) anyString())).thenAnswer(invocation ->
+                zset(invocation.getArgument(0)).get(invocation.getArgument(1)));
+        when(zSetOperations.unionAndStore(anyString(), anyCollection(), anyString())).thenAnswer(invocation -> {
+            Map<String, Double> union = new ConcurrentHashMap<>(zset(invocation.getArgument(0)));
+            for (String key : (Collection<String>) invocation.getArgument(1)) {
+                zset(key).forEach((member, score) -> union.merge(member, score, Double::sum));
+            }
+            zsets.put(invocation.getArgument(2), union);
+            return (long) union.size();
+        });
+        when(zSetOperations.reverseRangeWithScores(anyString(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            Set<ZSetOperations.TypedTuple<String>> result = new LinkedHashSet<>();
+            zset(invocation.getArgument(0)).entrySet().stream()
+                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                    .limit((long) invocation.getArgument(2) + 1)
+                    .forEach(entry -> result.add(new DefaultTypedTuple<>(entry.getKey(), entry.getValue())));
+            return result;
+        });
+        doAnswer(invocation -> {
+            zsets.put(invocation.getArgument(1), zsets.remove(invocation.getArgument(0)));
+            return null;
+        }).when(redisTemplate).rename(anyString(), anyString());
+        when(redisTemplate.delete(anyString())).thenAnswer(invocation -> zsets.remove(invocation.getArgument(0)) != null);
+
+        when(valueOperations.increment(anyString())).thenAnswer(invocation ->
+                Long.valueOf(strings.merge(invocation.getArgument(0), "1",
+                        (old, one) -> String.valueOf(Long.parseLong(old) + 1))));
+        when(valueOperations.multiGet(anyList())).thenAnswer(invocation -> {
+            List<String> values = new ArrayList<>();
+            for (String key : (List<String>) invocation.getArgument(0)) {
+                values.add(strings.get(key));
+            }
+            return values;
+        });
+        return redisTemplate;
+    }
+}
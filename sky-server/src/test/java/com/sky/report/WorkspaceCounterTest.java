@@ -0,0 +1,103 @@
+package com.sky.report;
+
+import com.sky.dto.StatusCountDTO;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.ReportProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WorkspaceCounterTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+    @Mock
+    private OrderMapper orderMapper;
+    @Spy
+    private ReportProperties reportProperties = new ReportProperties();
+    @InjectMocks
+    private WorkspaceCounter workspaceCounter;
+
+    private String todayKey;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        todayKey = reportProperties.getWorkspaceKeyPrefix() + "orders:"
+                + LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    /**
+     * 下单、支付、批量修改状态在事务提交后才累加
+     */
+    @Test
+    void countersAreUpdatedAfterCommit() {
+        List<Long> ids = Arrays.asList(1L, 2L);
+        when(orderMapper.countByIdsAndOrderTimeGE(any(), any())).thenReturn(Collections.singletonList(
+                new StatusCountDTO(Orders.COMPLETED, 2, new BigDecimal("88.50"))));
+
+        workspaceCounter.orderSubmitted();
+        workspaceCounter.orderPaid(LocalDateTime.now());
+        workspaceCounter.ordersStatusChanged(ids, Orders.DELIVERY_IN_PROGRESS, Orders.COMPLETED, 2);
+        verifyNoInteractions(stringRedisTemplate, orderMapper);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        verify(hashOperations).increment(todayKey, Orders.PENDING_PAYMENT.toString(), 1L);
+        verify(hashOperations).increment(todayKey, Orders.PENDING_PAYMENT.toString(), -1L);
+        verify(hashOperations).increment(todayKey, Orders.TO_BE_CONFIRMED.toString(), 1L);
+        verify(hashOperations).increment(todayKey, Orders.DELIVERY_IN_PROGRESS.toString(), -2L);
+        verify(hashOperations).increment(todayKey, Orders.COMPLETED.toString(), 2L);
+        verify(hashOperations).increment(todayKey, WorkspaceCounter.TURNOVER, 8850L);
+    }
+
+    /**
+     * 事务回滚时不计数
+     */
+    @Test
+    void rolledBackOrderIsNotCounted() {
+        workspaceCounter.orderSubmitted();
+        workspaceCounter.orderPaid(LocalDateTime.now());
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verify(hashOperations, never()).increment(anyString(), any(), anyLong());
+    }
+}
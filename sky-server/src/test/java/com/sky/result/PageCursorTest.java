@@ -0,0 +1,102 @@
+package com.sky.result;
+
+import com.sky.exception.PageCursorInvalidException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PageCursorTest {
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        LocalDateTime createTime = LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123000000);
+
+        PageCursor cursor = PageCursor.decode(PageCursor.encode(createTime, 42L));
+
+        assertEquals(createTime, cursor.getCreateTime());
+        assertEquals(42L, cursor.getId());
+    }
+
+    /**
+     * 空游标表示第一页
+     */
+    @Test
+    void emptyCursorIsFirstPage() {
+        assertNull(PageCursor.decode(null));
+        assertNull(PageCursor.decode(""));
+    }
+
+    @Test
+    void tamperedCursorIsRejected() {
+        assertThrows(PageCursorInvalidException.class, () -> PageCursor.decode("not-a-cursor"));
+        assertThrows(PageCursorInvalidException.class, () -> PageCursor.decode("###"));
+    }
+
+    @Test
+    void pageSizeDefaultsWhenMissing() {
+        assertEquals(PageCursor.DEFAULT_PAGE_SIZE, PageCursor.pageSize(0));
+        assertEquals(20, PageCursor.pageSize(20));
+    }
+
+    /**
+     * 按游标翻完10000条记录（每10条创建时间相同），每条记录按顺序恰好出现一次，不统计总数，最后一页没有下一页游标
+     */
+    @Test
+    void walkingAllPagesReturnsEveryRowOnce() {
+        List<Row> table = new ArrayList<>();
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (long id = 1; id <= 10000; id++) {
+            table.add(new Row(id, base.plusSeconds(id / 10)));
+        }
+        table.sort(Comparator.comparing((Row row) -> row.createTime).thenComparing(row -> row.id).reversed());
+
+        Set<Long> seen = new HashSet<>();
+        List<Long> sequence = new ArrayList<>();
+        String cursor = "";
+        int pages = 0;
+        do {
+            PageCursor position = PageCursor.decode(cursor);
+            //模拟 where (create_time, id) < (?, ?) order by create_time desc, id desc limit pageSize + 1
+            List<Row> rows = table.stream()
+                    .filter(row -> position == null || row.createTime.isBefore(position.getCreateTime())
+                            || row.createTime.equals(position.getCreateTime()) && row.id < position.getId())
+                    .limit(7 + 1)
+                    .collect(Collectors.toList());
+            PageResult page = PageCursor.page(rows, 7, (Row row) -> row.createTime, (Row row) -> row.id);
+
+            assertEquals(PageResult.TOTAL_NOT_COUNTED, page.getTotal());
+            for (Object record : page.getRecords()) {
+                Long id = ((Row) record).id;
+                assertTrue(seen.add(id), "记录重复：" + id);
+                sequence.add(id);
+            }
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(10000, seen.size());
+        assertEquals(table.stream().map(row -> row.id).collect(Collectors.toList()), sequence);
+        assertEquals((10000 + 6) / 7, pages);
+    }
+
+    private static class Row {
+        private final Long id;
+        private final LocalDateTime createTime;
+
+        Row(Long id, LocalDateTime createTime) {
+            this.id = id;
+            this.createTime = createTime;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.sky.search;
+
+import com.sky.entity.Dish;
+import com.sky.mapper.DishMapper;
+import com.sky.properties.SearchProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DishSearchIndexTest {
+
+    private final DishMapper dishMapper = mock(DishMapper.class);
+    private DishSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new DishSearchIndex();
+        ReflectionTestUtils.setField(index, "dishMapper", dishMapper);
+        ReflectionTestUtils.setField(index, "stringRedisTemplate", mock(StringRedisTemplate.class));
+        ReflectionTestUtils.setField(index, "redisMessageListenerContainer", mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(index, "searchProperties", new SearchProperties());
+        index.init();
+    }
+
+    /**
+     * 查询结果与 name like '%关键字%' 一致，可按状态过滤
+     */
+    @Test
+    void searchMatchesSubstrings() {
+        when(dishMapper.list(any())).thenReturn(Arrays.asList(dish(1L, "宫保鸡丁", 1), dish(2L, "辣子鸡", 1),
+                dish(3L, "鸡蛋汤", 0), dish(4L, "水煮鱼", 1)));
+
+        assertNull(index.search("鸡"));
+        index.build();
+
+        assertEquals(Arrays.asList(1L, 2L, 3L), sorted(index.search("鸡")));
+        assertEquals(Collections.singletonList(1L), index.search("保鸡"));
+        assertEquals(Arrays.asList(1L, 2L), sorted(index.search("鸡", 1)));
+        assertTrue(index.search("鸡汤").isEmpty());
+    }
+
+    /**
+     * 全量构建查询期间菜品被修改、删除：构建完成后索引是修改后的数据，而不是构建时读到的旧数据
+     */
+    @Test
+    void refreshDuringBuildIsNotOverwritten() {
+        when(dishMapper.list(any())).thenAnswer(invocation -> {
+            //全量查询读到旧数据后，菜品1改名、菜品2删除，增量更新先于全量数据写入索引
+            when(dishMapper.getByIds(any())).thenReturn(Collections.singletonList(dish(1L, "麻婆豆腐", 1)));
+            index.onMessage(new DefaultMessage(new byte[0], "1,2".getBytes(StandardCharsets.UTF_8)), null);
+            return Arrays.asList(dish(1L, "宫保鸡丁", 1), dish(2L, "辣子鸡", 1));
+        });
+
+        index.build();
+
+        assertTrue(index.search("鸡").isEmpty());
+        assertEquals(Collections.singletonList(1L), index.search("豆腐"));
+    }
+
+    /**
+     * 构建完成后的增量更新直接生效
+     */
+    @Test
+    void refreshAfterBuildUpdatesIndex() {
+        when(dishMapper.list(any())).thenReturn(new ArrayList<>(Collections.singletonList(dish(1L, "宫保鸡丁", 1))));
+        index.build();
+        when(dishMapper.getByIds(any())).thenReturn(Collections.singletonList(dish(1L, "宫保鸡丁", 0)));
+
+        index.onMessage(new DefaultMessage(new byte[0], "1".getBytes(StandardCharsets.UTF_8)), null);
+
+        assertTrue(index.search("宫保", 1).isEmpty());
+        assertEquals(Collections.singletonList(1L), index.search("宫保", 0));
+    }
+
+    private static Dish dish(Long id, String name, Integer status) {
+        return Dish.builder().id(id).name(name).categoryId(11L).status(status).build();
+    }
+
+    private static List<Long> sorted(List<Long> ids) {
+        List<Long> result = new ArrayList<>(ids);
+        Collections.sort(result);
+        return result;
+    }
+}
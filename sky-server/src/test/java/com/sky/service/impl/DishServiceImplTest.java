@@ -0,0 +1,254 @@
+package com.sky.service.impl;
+
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageHelper;
+import com.sky.constant.StatusConstant;
+import com.sky.dto.DishDTO;
+import com.sky.dto.DishPageQueryDTO;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.exception.DeletionNotAllowedException;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealDishMapper;
+import com.sky.properties.SearchProperties;
+import com.sky.report.WorkspaceCounter;
+import com.sky.search.DishSearchIndex;
+import com.sky.task.ThumbnailTask;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DishServiceImplTest {
+
+    @Mock
+    private DishMapper dishMapper;
+    @Mock
+    private DishFlavorMapper dishFlavorMapper;
+    @Mock
+    private SetmealDishMapper setmealDishMapper;
+    @Mock
+    private DishSearchIndex dishSearchIndex;
+    @Mock
+    private WorkspaceCounter workspaceCounter;
+    @Mock
+    private ThumbnailTask thumbnailTask;
+    @Spy
+    private SearchProperties searchProperties = new SearchProperties();
+    @InjectMocks
+    private DishServiceImpl dishService;
+
+    /**
+     * 不论分类下有多少菜品，都只查询一次菜品、一次口味
+     */
+    @Test
+    void listWithFlavorQueriesFlavorsOnce() {
+        for (int size : new int[]{10, 100, 1000}) {
+            List<Dish> dishes = new ArrayList<>();
+            List<DishFlavor> flavors = new ArrayList<>();
+            for (long id = 1; id <= size; id++) {
+                dishes.add(Dish.builder().id(id).name("菜品" + id).build());
+                flavors.add(DishFlavor.builder().id(id * 2).dishId(id).name("辣度").value("[\"微辣\"]").build());
+                flavors.add(DishFlavor.builder().id(id * 2 + 1).dishId(id).name("忌口").value("[\"不要葱\"]").build());
+            }
+            when(dishMapper.list(any())).thenReturn(dishes);
+            when(dishFlavorMapper.getByDishIds(anyList())).thenReturn(flavors);
+
+            List<DishVO> result = dishService.listWithFlavor(new Dish());
+
+            assertEquals(size, result.size());
+            for (DishVO dishVO : result) {
+                assertEquals(2, dishVO.getFlavors().size());
+                assertTrue(dishVO.getFlavors().stream().allMatch(f -> f.getDishId().equals(dishVO.getId())));
+            }
+        }
+        verify(dishMapper, times(3)).list(any());
+        verify(dishFlavorMapper, times(3)).getByDishIds(anyList());
+        verify(dishFlavorMapper, never()).getByDishId(anyLong());
+    }
+
+    /**
+     * 只为已生成缩略图的图片返回缩略图地址，没有生成的返回null
+     */
+    @Test
+    void listWithFlavorReturnsOnlyGeneratedThumbnails() {
+        String generated = "http://minio/sky/a.png";
+        String pending = "http://minio/sky/b.png";
+        when(dishMapper.list(any())).thenReturn(Arrays.asList(
+                Dish.builder().id(1L).image(generated).build(), Dish.builder().id(2L).image(pending).build()));
+        when(dishFlavorMapper.getByDishIds(anyList())).thenReturn(new ArrayList<>());
+        when(thumbnailTask.generated(Arrays.asList(generated, pending))).thenReturn(Collections.singleton(generated));
+
+        List<DishVO> result = dishService.listWithFlavor(new Dish());
+
+        assertEquals("http://minio/sky/a_small.jpg", result.get(0).getImageSmall());
+        assertEquals("http://minio/sky/a_medium.jpg", result.get(0).getImageMedium());
+        assertNull(result.get(1).getImageSmall());
+        assertNull(result.get(1).getImageMedium());
+    }
+
+    /**
+     * 没有菜品时不查询口味
+     */
+    @Test
+    void listWithFlavorSkipsFlavorQueryWhenEmpty() {
+        when(dishMapper.list(any())).thenReturn(new ArrayList<>());
+
+        assertTrue(dishService.listWithFlavor(new Dish()).isEmpty());
+        verify(dishFlavorMapper, never()).getByDishIds(anyList());
+    }
+
+    /**
+     * 批量删除1、10、200个菜品，执行的sql语句数量相同：查询起售数量、查询关联套餐、删除菜品、删除口味
+     */
+    @Test
+    void deleteBatchUsesConstantStatementCount() {
+        for (int size : new int[]{1, 10, 200}) {
+            List<Long> ids = LongStream.rangeClosed(1, size).boxed().collect(Collectors.toList());
+            when(dishMapper.countByIdsAndStatus(ids, StatusConstant.ENABLE)).thenReturn(0);
+            when(setmealDishMapper.getSetmealIdsByDishIds(ids)).thenReturn(new ArrayList<>());
+
+            dishService.deleteBatch(ids);
+
+            assertEquals(4, statements());
+            verify(dishMapper).deleteByIds(ids);
+            verify(dishFlavorMapper).deleteByDishIds(ids);
+            clearInvocations(dishMapper, dishFlavorMapper, setmealDishMapper);
+        }
+        verify(dishMapper, never()).getById(anyLong());
+    }
+
+    /**
+     * 存在起售中的菜品时只执行一条查询
+     */
+    @Test
+    void deleteBatchRejectsDishOnSale() {
+        List<Long> ids = LongStream.rangeClosed(1, 200).boxed().collect(Collectors.toList());
+        when(dishMapper.countByIdsAndStatus(eq(ids), eq(StatusConstant.ENABLE))).thenReturn(1);
+
+        assertThrows(DeletionNotAllowedException.class, () -> dishService.deleteBatch(ids));
+        assertEquals(1, statements());
+    }
+
+    /**
+     * 只有口味变化时，菜品表只更新修改时间、修改人
+     */
+    @Test
+    void flavorOnlyChangeTouchesDish() {
+        Dish stored = Dish.builder().id(1L).name("宫保鸡丁").price(new BigDecimal("38.00")).build();
+        when(dishMapper.getById(1L)).thenReturn(stored);
+        when(dishFlavorMapper.getByDishId(1L)).thenReturn(new ArrayList<>(Collections.singletonList(
+                DishFlavor.builder().id(2L).dishId(1L).name("辣度").value("[\"微辣\"]").build())));
+        DishDTO dishDTO = new DishDTO();
+        dishDTO.setId(1L);
+        dishDTO.setName("宫保鸡丁");
+        dishDTO.setPrice(new BigDecimal("38"));
+        dishDTO.setFlavors(new ArrayList<>(Collections.singletonList(
+                DishFlavor.builder().name("辣度").value("[\"微辣\",\"中辣\"]").build())));
+
+        assertTrue(dishService.updateWithFlavor(dishDTO));
+
+        ArgumentCaptor<Dish> updated = ArgumentCaptor.forClass(Dish.class);
+        verify(dishMapper).update(updated.capture());
+        assertEquals(Dish.builder().id(1L).build(), updated.getValue());
+        verify(dishFlavorMapper).updateBatch(anyList());
+        verify(workspaceCounter, never()).dishChanged();
+    }
+
+    /**
+     * 修改时停售菜品，重新统计工作台的菜品计数
+     */
+    @Test
+    void statusChangeRecountsWorkspace() {
+        when(dishMapper.getById(1L)).thenReturn(Dish.builder().id(1L).name("宫保鸡丁").status(StatusConstant.ENABLE).build());
+        when(dishFlavorMapper.getByDishId(1L)).thenReturn(new ArrayList<>());
+        DishDTO dishDTO = new DishDTO();
+        dishDTO.setId(1L);
+        dishDTO.setName("宫保鸡丁");
+        dishDTO.setStatus(StatusConstant.DISABLE);
+
+        assertTrue(dishService.updateWithFlavor(dishDTO));
+        verify(dishMapper).update(any(Dish.class));
+        verify(workspaceCounter).dishChanged();
+    }
+
+    /**
+     * 没有任何变化时不执行修改
+     */
+    @Test
+    void unchangedDishIsNotUpdated() {
+        when(dishMapper.getById(1L)).thenReturn(Dish.builder().id(1L).name("宫保鸡丁").build());
+        when(dishFlavorMapper.getByDishId(1L)).thenReturn(new ArrayList<>());
+        DishDTO dishDTO = new DishDTO();
+        dishDTO.setId(1L);
+        dishDTO.setName("宫保鸡丁");
+
+        assertFalse(dishService.updateWithFlavor(dishDTO));
+        verify(dishMapper, never()).update(any());
+    }
+
+/**
+     * 按名称分页查询：搜索命中的菜品不多时按id查询，命中超过上限时不拼接in列表，退回数据库模糊查询
+     */
+    @Test
+    void pageQueryFallsBackToLikeForManyHits() {
+        searchProperties.setMaxPageQueryIds(3);
+        when(dishMapper.pageQuery(any())).thenReturn(new Page<>());
+        when(dishSearchIndex.search("鸡")).thenReturn(Arrays.asList(1L, 2L, 3L));
+        when(dishSearchIndex.search("菜")).thenReturn(Arrays.asList(1L, 2L, 3L, 4L));
+        try {
+            DishPageQueryDTO few = new DishPageQueryDTO();
+            few.setPage(1);
+            few.setPageSize(10);
+            few.setName("鸡");
+            dishService.pageQuery(few);
+            assertEquals(Arrays.asList(1L, 2L, 3L), few.getIds());
+
+            DishPageQueryDTO many = new DishPageQueryDTO();
+            many.setPage(1);
+            many.setPageSize(10);
+            many.setName("菜");
+            dishService.pageQuery(many);
+            assertNull(many.getIds());
+            verify(dishMapper).pageQuery(many);
+        } finally {
+            PageHelper.clearPage();
+        }
+    }
+
+        private int statements() {
+        return mockingDetails(dishMapper).getInvocations().size()
+                + mockingDetails(dishFlavorMapper).getInvocations().size()
+                + mockingDetails(setmealDishMapper).getInvocations().size();
+    }
+}
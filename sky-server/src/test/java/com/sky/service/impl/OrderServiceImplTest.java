@@ -0,0 +1,293 @@
+package com.sky.service.impl;
+
+import com.sky.context.BaseContext;
+import com.sky.dto.OrdersSubmitDTO;
+import com.sky.entity.AddressBook;
+import com.sky.entity.Orders;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.AddressBookMapper;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import com.sky.report.WorkspaceCounter;
+import com.sky.service.ReportService;
+import com.sky.service.ShoppingCartService;
+import com.sky.task.OrderTimeoutTask;
+import com.sky.utils.SnowflakeIdGenerator;
+import com.sky.vo.OrderSubmitVO;
+import com.sky.websocket.WebSocketBroadcaster;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderServiceImplTest {
+
+    private static final Long USER_ID = 7L;
+
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private OrderDetailMapper orderDetailMapper;
+    @Mock
+    private AddressBookMapper addressBookMapper;
+    @Mock
+    private ShoppingCartService shoppingCartService;
+    @Mock
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+    @Mock
+    private OrderTimeoutTask orderTimeoutTask;
+    @Mock
+    private WorkspaceCounter workspaceCounter;
+    @Mock
+    private WebSocketBroadcaster webSocketBroadcaster;
+    @Mock
+    private ReportService reportService;
+    @Spy
+    private OrderProperties orderProperties = new OrderProperties();
+    @InjectMocks
+    private OrderServiceImpl orderService;
+
+    @BeforeEach
+    void setUp() {
+        BaseContext.setCurrentId(USER_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    /**
+     * 订单金额 = 购物车每项单价×数量之和 + 每份打包费 + 配送费，前端提交的金额和打包费被忽略
+     */
+    @Test
+    void submitOrderComputesAmountFromCart() {
+        AddressBook addressBook = new AddressBook();
+        addressBook.setUserId(USER_ID);
+        when(addressBookMapper.getById(1L)).thenReturn(addressBook);
+        List<ShoppingCart> cart = Arrays.asList(
+                ShoppingCart.builder().dishId(11L).name("宫保鸡丁").number(2).amount(new BigDecimal("10.50")).build(),
+                ShoppingCart.builder().setmealId(21L).name("双人套餐").number(1).amount(new BigDecimal("20")).build());
+        when(shoppingCartService.showShoppingCart()).thenReturn(cart);
+        when(snowflakeIdGenerator.nextId()).thenReturn(1001L);
+
+        OrdersSubmitDTO dto = new OrdersSubmitDTO();
+        dto.setAddressBookId(1L);
+        dto.setAmount(new BigDecimal("0.01"));
+        dto.setPackAmount(0);
+        dto.setTablewareNumber(0);
+        OrderSubmitVO vo = orderService.submitOrder(dto);
+
+        ArgumentCaptor<Orders> inserted = ArgumentCaptor.forClass(Orders.class);
+        verify(orderMapper).insert(inserted.capture());
+        //10.50×2 + 20×1 + 打包费3×1 + 配送费6
+        assertEquals(0, new BigDecimal("50").compareTo(inserted.getValue().getAmount()));
+        assertEquals(3, inserted.getValue().getPackAmount());
+        assertEquals(0, new BigDecimal("50").compareTo(vo.getOrderAmount()));
+        verify(orderDetailMapper).insertBatch(anyList());
+    }
+
+    /**
+     * 清空购物车和登记超时取消在事务提交后执行，事务回滚时都不执行
+     */
+    @Test
+    void submitOrderCleansCartAfterCommit() {
+        AddressBook addressBook = new AddressBook();
+        addressBook.setUserId(USER_ID);
+        when(addressBookMapper.getById(1L)).thenReturn(addressBook);
+        when(shoppingCartService.showShoppingCart()).thenReturn(Collections.singletonList(
+                ShoppingCart.builder().dishId(11L).name("宫保鸡丁").number(1).amount(new BigDecimal("10")).build()));
+        when(snowflakeIdGenerator.nextId()).thenReturn(1001L);
+        OrdersSubmitDTO dto = new OrdersSubmitDTO();
+        dto.setAddressBookId(1L);
+        dto.setTablewareNumber(0);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            orderService.submitOrder(dto);
+            verify(shoppingCartService, never()).cleanShoppingCart();
+            verify(orderTimeoutTask, never()).schedule(any(), any());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(shoppingCartService).cleanShoppingCart();
+            verify(orderTimeoutTask).schedule(any(), any(LocalDateTime.class));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            orderService.submitOrder(dto);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            verify(shoppingCartService, times(1)).cleanShoppingCart();
+            verify(orderTimeoutTask, times(1)).schedule(any(), any());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * 待付款订单支付成功：修改状态并执行后续操作
+     */
+    @Test
+    void paySuccessUpdatesPendingOrder() {
+        Orders pending = Orders.builder().id(5L).number("1001").status(Orders.PENDING_PAYMENT)
+                .orderTime(LocalDateTime.now()).build();
+        when(orderMapper.getByNumber("1001")).thenReturn(pending);
+        when(orderMapper.updateStatusByIds(eq(Collections.singletonList(5L)), eq(Orders.PENDING_PAYMENT), any()))
+                .thenReturn(1);
+
+        orderService.paySuccess("1001");
+
+        verify(orderTimeoutTask).unschedule(5L);
+        verify(workspaceCounter).orderPaid(pending.getOrderTime());
+        verify(webSocketBroadcaster).push(eq(WebSocketBroadcaster.NEW_ORDER), eq(5L), anyString());
+    }
+
+    /**
+     * 重复或迟到的支付通知（订单已取消）：条件修改不生效，不执行任何后续操作
+     */
+    @Test
+    void paySuccessIgnoresOrderNoLongerPending() {
+        Orders cancelled = Orders.builder().id(5L).number("1001").status(Orders.CANCELLED)
+                .orderTime(LocalDateTime.now()).build();
+        when(orderMapper.getByNumber("1001")).thenReturn(cancelled);
+        when(orderMapper.updateStatusByIds(eq(Collections.singletonList(5L)), eq(Orders.PENDING_PAYMENT), any()))
+                .thenReturn(0);
+
+        orderService.paySuccess("1001");
+
+        verify(orderMapper, never()).update(any());
+        verify(orderTimeoutTask, never()).unschedule(anyLong());
+        verify(workspaceCounter, never()).orderPaid(any());
+        verify(webSocketBroadcaster, never()).push(anyInt(), anyLong(), anyString());
+    }
+
+    /**
+     * 批量完成订单：每批只返回需要重新计算的日期，全部批次修改后每日汇总数据只重新计算一次，多批共有的日期不重复计算
+     */
+    @Test
+    void bulkCompleteRebuildsReportOnce() {
+        orderProperties.setBulkUpdateBatchSize(2);
+        LocalDateTime orderTime = LocalDateTime.now();
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        when(orderMapper.getIdsByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, orderTime, 0L, 2))
+                .thenReturn(Arrays.asList(1L, 2L));
+        when(orderMapper.getIdsByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, orderTime, 2L, 2))
+                .thenReturn(Arrays.asList(3L, 4L));
+        when(orderMapper.getIdsByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, orderTime, 4L, 2))
+                .thenReturn(Collections.singletonList(5L));
+        when(orderMapper.updateStatusByIds(anyList(), eq(Orders.DELIVERY_IN_PROGRESS), any()))
+                .thenAnswer(invocation -> invocation.<List<Long>>getArgument(0).size());
+        when(reportService.onOrdersCompleted(anyList(), anyInt()))
+                .thenReturn(new HashSet<>(Collections.singletonList(yesterday)))
+                .thenReturn(new HashSet<>(Arrays.asList(yesterday, yesterday.minusDays(1))))
+                .thenReturn(new HashSet<>());
+
+        int rows = orderService.updateStatusByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, orderTime,
+                Orders.builder().status(Orders.COMPLETED).build());
+
+        assertEquals(5, rows);
+        verify(reportService, times(3)).onOrdersCompleted(anyList(), anyInt());
+        verify(reportService).rebuild(new TreeSet<>(Arrays.asList(yesterday.minusDays(1), yesterday)));
+    }
+
+    /**
+     * 按id批量修改：先排序再按批次大小分批，每批一条update并带上原状态条件，返回各批实际修改行数之和
+     */
+    @Test
+    void updateStatusByIdsUpdatesSortedBatches() {
+        orderProperties.setBulkUpdateBatchSize(2);
+        List<List<Long>> batches = new ArrayList<>();
+        when(orderMapper.updateStatusByIds(anyList(), eq(Orders.PENDING_PAYMENT), any())).thenAnswer(invocation -> {
+            List<Long> batch = new ArrayList<>(invocation.getArgument(0));
+            batches.add(batch);
+            //订单4已被支付，不再是待付款状态
+            return (int) batch.stream().filter(id -> id != 4L).count();
+        });
+        Orders orders = Orders.builder().status(Orders.CANCELLED).build();
+
+        int rows = orderService.updateStatusByIds(Arrays.asList(5L, 1L, 4L, 2L, 3L), Orders.PENDING_PAYMENT, orders);
+
+        assertEquals(4, rows);
+        assertEquals(Arrays.asList(Arrays.asList(1L, 2L), Arrays.asList(3L, 4L), Collections.singletonList(5L)), batches);
+        verify(workspaceCounter).ordersStatusChanged(Arrays.asList(3L, 4L), Orders.PENDING_PAYMENT, Orders.CANCELLED, 1);
+        verify(reportService, never()).onOrdersCompleted(anyList(), anyInt());
+        assertEquals(0, orderService.updateStatusByIds(Collections.emptyList(), Orders.PENDING_PAYMENT, orders));
+    }
+
+    /**
+     * 按状态和下单时间批量修改：每次从上一批最后一个id之后查询，不足一批时结束，不再多查一次
+     */
+    @Test
+    void updateStatusByStatusAndOrderTimeLTAdvancesLastId() {
+        orderProperties.setBulkUpdateBatchSize(2);
+        LocalDateTime orderTime = LocalDateTime.now();
+        when(orderMapper.getIdsByStatusAndOrderTimeLT(Orders.CONFIRMED, orderTime, 0L, 2)).thenReturn(Arrays.asList(1L, 2L));
+        when(orderMapper.getIdsByStatusAndOrderTimeLT(Orders.CONFIRMED, orderTime, 2L, 2)).thenReturn(Arrays.asList(5L, 7L));
+        when(orderMapper.getIdsByStatusAndOrderTimeLT(Orders.CONFIRMED, orderTime, 7L, 2)).thenReturn(Collections.singletonList(9L));
+        when(orderMapper.updateStatusByIds(anyList(), eq(Orders.CONFIRMED), any()))
+                .thenAnswer(invocation -> invocation.<List<Long>>getArgument(0).size());
+
+        int rows = orderService.updateStatusByStatusAndOrderTimeLT(Orders.CONFIRMED, orderTime,
+                Orders.builder().status(Orders.CANCELLED).build());
+
+        assertEquals(5, rows);
+        verify(orderMapper).updateStatusByIds(eq(Arrays.asList(1L, 2L)), eq(Orders.CONFIRMED), any());
+        verify(orderMapper).updateStatusByIds(eq(Arrays.asList(5L, 7L)), eq(Orders.CONFIRMED), any());
+        verify(orderMapper).updateStatusByIds(eq(Collections.singletonList(9L)), eq(Orders.CONFIRMED), any());
+        verify(orderMapper, times(3)).getIdsByStatusAndOrderTimeLT(any(), any(), anyLong(), anyInt());
+        verify(orderMapper, never()).getIdsByStatusAndOrderTimeLT(any(), any(), eq(9L), anyInt());
+    }
+
+    /**
+     * 恰好整批时再查询一次，查不到订单时结束且不执行update
+     */
+    @Test
+    void updateStatusByStatusAndOrderTimeLTStopsOnEmptyBatch() {
+        orderProperties.setBulkUpdateBatchSize(2);
+        LocalDateTime orderTime = LocalDateTime.now();
+        when(orderMapper.getIdsByStatusAndOrderTimeLT(Orders.CONFIRMED, orderTime, 0L, 2)).thenReturn(Arrays.asList(1L, 2L));
+        when(orderMapper.getIdsByStatusAndOrderTimeLT(Orders.CONFIRMED, orderTime, 2L, 2)).thenReturn(new ArrayList<>());
+        when(orderMapper.updateStatusByIds(anyList(), eq(Orders.CONFIRMED), any())).thenReturn(2);
+
+        int rows = orderService.updateStatusByStatusAndOrderTimeLT(Orders.CONFIRMED, orderTime,
+                Orders.builder().status(Orders.CANCELLED).build());
+
+        assertEquals(2, rows);
+        verify(orderMapper, times(2)).getIdsByStatusAndOrderTimeLT(any(), any(), anyLong(), anyInt());
+        verify(orderMapper, times(1)).updateStatusByIds(anyList(), anyInt(), any());
+    }
+}
@@ -0,0 +1,326 @@
+package com.sky.service.impl;
+
+import com.sky.cache.ProductSnapshot;
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.constant.StatusConstant;
+import com.sky.context.BaseContext;
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.mapper.ShoppingCartMapper;
+import com.sky.properties.ShoppingCartProperties;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RedisShoppingCartServiceImplTest {
+
+    private static final Long USER_ID = 7L;
+
+    //内存中的redis：key -> hash
+    private final Map<String, Map<Object, Object>> hashes = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+
+    private final ShoppingCartMapper shoppingCartMapper = mock(ShoppingCartMapper.class);
+    private final ProductSnapshotCache productSnapshotCache = mock(ProductSnapshotCache.class);
+    //商品数量的hash操作，用于验证加购只调用HINCRBY
+    @SuppressWarnings("rawtypes")
+    private final HashOperations stringHashOperations = mock(HashOperations.class);
+
+    /**
+     * 同一用户100个并发加购同一菜品：每次加购都是一次HINCRBY 1，不在应用中先读数量再写回，
+     * 数量为100，回写数据库时只有一条记录
+     */
+    @Test
+    void parallelAddsLoseNoIncrements() throws Exception {
+        RedisShoppingCartServiceImpl service = service();
+        when(productSnapshotCache.getDish(11L)).thenReturn(ProductSnapshot.builder().id(11L).name("宫保鸡丁")
+                .image("a.png").price(new BigDecimal("38")).status(StatusConstant.ENABLE).build());
+
+        ExecutorService executor = Executors.newFixedThreadPool(100);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    BaseContext.setCurrentId(USER_ID);
+                    try {
+                        ShoppingCartDTO dto = new ShoppingCartDTO();
+                        dto.setDishId(11L);
+                        dto.setDishFlavor("微辣");
+                        service.addShoppingCart(dto);
+                    } finally {
+                        BaseContext.removeCurrentId();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(stringHashOperations, times(100)).increment("sky:cart:" + USER_ID, "d:11:微辣", 1L);
+        verify(stringHashOperations, never()).get(any(), any());
+        verify(stringHashOperations, never()).put(any(), any(), any());
+        verify(stringHashOperations, never()).putAll(any(), any());
+
+        BaseContext.setCurrentId(USER_ID);
+        try {
+            List<ShoppingCart> cart = service.showShoppingCart();
+            assertEquals(1, cart.size());
+            assertEquals(100, cart.get(0).getNumber());
+            assertEquals(new BigDecimal("38"), cart.get(0).getAmount());
+        } finally {
+            BaseContext.removeCurrentId();
+        }
+
+        service.flush();
+        verify(shoppingCartMapper).deleteByUserId(USER_ID);
+        verify(shoppingCartMapper, times(1)).insertBatch(anyList());
+    }
+
+    /**
+     * 已停售或不存在的商品不能加入购物车，购物车中不留下数量
+     */
+    @Test
+    void addRejectsUnavailableProduct() {
+        RedisShoppingCartServiceImpl service = service();
+        when(productSnapshotCache.getDish(11L)).thenReturn(ProductSnapshot.builder().id(11L).name("宫保鸡丁")
+                .price(new BigDecimal("38")).status(StatusConstant.DISABLE).build());
+
+        BaseContext.setCurrentId(USER_ID);
+        try {
+            ShoppingCartDTO disabled = new ShoppingCartDTO();
+            disabled.setDishId(11L);
+            assertThrows(ShoppingCartBusinessException.class, () -> service.addShoppingCart(disabled));
+            ShoppingCartDTO missing = new ShoppingCartDTO();
+            missing.setSetmealId(21L);
+            assertThrows(ShoppingCartBusinessException.class, () -> service.addShoppingCart(missing));
+
+            assertTrue(service.showShoppingCart().isEmpty());
+            assertTrue(dirty.isEmpty());
+        } finally {
+            BaseContext.removeCurrentId();
+        }
+    }
+
+    /**
+     * redis中还没有购物车时载入数据库中的购物车，之后加购在原有数量上累加，数据库只查询一次
+     */
+    @Test
+    void databaseCartIsLoadedBeforeFirstChange() {
+        RedisShoppingCartServiceImpl service = service();
+        when(shoppingCartMapper.list(any(ShoppingCart.class))).thenReturn(Arrays.asList(
+                ShoppingCart.builder().id(1L).userId(USER_ID).dishId(11L).dishFlavor("微辣").name("宫保鸡丁")
+                        .number(2).amount(new BigDecimal("38")).createTime(LocalDateTime.now().minusMinutes(1)).build(),
+                ShoppingCart.builder().id(2L).userId(USER_ID).setmealId(21L).name("商务套餐")
+                        .number(1).amount(new BigDecimal("58")).createTime(LocalDateTime.now()).build()));
+
+        BaseContext.setCurrentId(USER_ID);
+        try {
+            ShoppingCartDTO dto = new ShoppingCartDTO();
+            dto.setDishId(11L);
+            dto.setDishFlavor("微辣");
+            service.addShoppingCart(dto);
+
+            List<ShoppingCart> cart = service.showShoppingCart();
+            assertEquals(2, cart.size());
+            assertEquals(21L, cart.get(0).getSetmealId());
+            assertEquals(1, cart.get(0).getNumber());
+            assertEquals(11L, cart.get(1).getDishId());
+            assertEquals(3, cart.get(1).getNumber());
+        } finally {
+            BaseContext.removeCurrentId();
+        }
+        verify(shoppingCartMapper, times(1)).list(any(ShoppingCart.class));
+        verify(productSnapshotCache, never()).getDish(anyLong());
+
+        service.flush();
+        ArgumentCaptor<List<ShoppingCart>> captor = ArgumentCaptor.forClass(List.class);
+        verify(shoppingCartMapper).insertBatch(captor.capture());
+        assertEquals(2, captor.getValue().size());
+    }
+
+    /**
+     * 切换前已使用redis的购物车不重复载入数据库中的数量；清空后回写也不会再载入旧购物车
+     */
+    @Test
+    void existingRedisCartIsNotLoadedTwice() {
+        RedisShoppingCartServiceImpl service = service();
+        hash("sky:cart:" + USER_ID).put("s:21", "4");
+        hash("sky:cart:" + USER_ID + ":item").put("s:21", ShoppingCart.builder().userId(USER_ID).setmealId(21L)
+                .name("商务套餐").amount(new BigDecimal("58")).createTime(LocalDateTime.now()).build());
+        when(shoppingCartMapper.list(any(ShoppingCart.class))).thenReturn(Collections.singletonList(
+                ShoppingCart.builder().id(2L).userId(USER_ID).setmealId(21L).name("商务套餐")
+                        .number(3).amount(new BigDecimal("58")).createTime(LocalDateTime.now()).build()));
+
+        BaseContext.setCurrentId(USER_ID);
+        try {
+            assertEquals(4, service.showShoppingCart().get(0).getNumber());
+            service.cleanShoppingCart();
+            assertTrue(service.showShoppingCart().isEmpty());
+        } finally {
+            BaseContext.removeCurrentId();
+        }
+
+        service.flush();
+        verify(shoppingCartMapper).deleteByUserId(USER_ID);
+        verify(shoppingCartMapper, never()).insertBatch(anyList());
+    }
+
+    /**
+     * 其他节点正在回写同一用户时跳过并重新标记，锁释放后下一次回写写入最新的购物车，回写后释放锁
+     */
+    @Test
+    void flushSkipsUserLockedByOtherNode() {
+        RedisShoppingCartServiceImpl service = service();
+        when(productSnapshotCache.getSetmeal(21L)).thenReturn(ProductSnapshot.builder().id(21L).name("商务套餐")
+                .price(new BigDecimal("58")).status(StatusConstant.ENABLE).build());
+        BaseContext.setCurrentId(USER_ID);
+        try {
+            ShoppingCartDTO dto = new ShoppingCartDTO();
+            dto.setSetmealId(21L);
+            service.addShoppingCart(dto);
+        } finally {
+            BaseContext.removeCurrentId();
+        }
+
+        String lockKey = "sky:cart:" + USER_ID + ":flush";
+        values.put(lockKey, "other-node");
+        service.flush();
+        verify(shoppingCartMapper, never()).deleteByUserId(anyLong());
+        assertTrue(dirty.contains(USER_ID.toString()));
+        assertEquals("other-node", values.get(lockKey));
+
+        values.remove(lockKey);
+        service.flush();
+        verify(shoppingCartMapper).deleteByUserId(USER_ID);
+        verify(shoppingCartMapper).insertBatch(anyList());
+        assertTrue(dirty.isEmpty());
+        assertFalse(values.containsKey(lockKey));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private RedisShoppingCartServiceImpl service() {
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        SetOperations setOperations = mock(SetOperations.class);
+        when(stringRedisTemplate.opsForHash()).thenReturn(stringHashOperations);
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+        ValueOperations valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> values.get(invocation.<String>getArgument(0)));
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenAnswer(invocation -> values.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        when(stringRedisTemplate.delete(anyString())).thenAnswer(invocation -> hashes.remove(invocation.<String>getArgument(0)) != null);
+        //回写锁的释放脚本（key以:flush结尾）和载入脚本（参数依次为商品标识、数量）
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(invocation -> {
+            synchronized (hashes) {
+                List<String> keys = invocation.getArgument(1);
+                if (keys.get(0).endsWith(":flush")) {
+                    return values.remove(keys.get(0), invocation.getArgument(2)) ? 1L : 0L;
+                }
+                if (values.containsKey(keys.get(1))) {
+                    return 0L;
+                }
+                if (!hashes.containsKey(keys.get(0))) {
+                    Object[] args = Arrays.copyOfRange(invocation.getArguments(), 2, invocation.getArguments().length);
+                    for (int i = 0; i < args.length; i += 2) {
+                        hash(keys.get(0)).merge(args[i], args[i + 1], (a, b) ->
+                                String.valueOf(Long.parseLong((String) a) + Long.parseLong((String) b)));
+                    }
+                }
+                values.put(keys.get(1), "1");
+                return 1L;
+            }
+        });
+        when(stringHashOperations.increment(anyString(), any(), anyLong())).thenAnswer(invocation -> {
+            //HINCRBY：redis单线程执行命令，读取、累加、写回之间不会插入其他命令，数量以字符串保存
+            synchronized (hashes) {
+                Map<Object, Object> hash = hash(invocation.getArgument(0));
+                Object value = hash.get(invocation.getArgument(1));
+                long result = (value == null ? 0 : Long.parseLong((String) value)) + (long) invocation.getArgument(2);
+                hash.put(invocation.getArgument(1), String.valueOf(result));
+                return result;
+            }
+        });
+        when(stringHashOperations.entries(anyString())).thenAnswer(invocation -> new ConcurrentHashMap<>(hash(invocation.getArgument(0))));
+        when(setOperations.add(anyString(), any())).thenAnswer(invocation -> dirty.add(invocation.getArgument(1)) ? 1L : 0L);
+        when(setOperations.pop(anyString(), anyLong())).thenAnswer(invocation -> {
+            List<String> popped = new ArrayList<>(dirty);
+            dirty.removeAll(popped);
+            return popped;
+        });
+
+        RedisTemplate redisTemplate = mock(RedisTemplate.class);
+        HashOperations hashOperations = mock(HashOperations.class);
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.hasKey(any(), any())).thenAnswer(invocation -> hash(invocation.getArgument(0)).containsKey(invocation.getArgument(1)));
+        when(hashOperations.putIfAbsent(any(), any(), any())).thenAnswer(invocation ->
+                hash(invocation.getArgument(0)).putIfAbsent(invocation.getArgument(1), invocation.getArgument(2)) == null);
+        when(redisTemplate.delete(anyString())).thenAnswer(invocation -> hashes.remove(invocation.<String>getArgument(0)) != null);
+        when(hashOperations.entries(any())).thenAnswer(invocation -> new ConcurrentHashMap<>(hash(invocation.getArgument(0))));
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> {
+            ((Consumer) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        RedisShoppingCartServiceImpl service = new RedisShoppingCartServiceImpl();
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(service, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(service, "shoppingCartMapper", shoppingCartMapper);
+        ReflectionTestUtils.setField(service, "productSnapshotCache", productSnapshotCache);
+        ReflectionTestUtils.setField(service, "shoppingCartProperties", new ShoppingCartProperties());
+        ReflectionTestUtils.setField(service, "transactionTemplate", transactionTemplate);
+        return service;
+    }
+
+    private Map<Object, Object> hash(String key) {
+        return hashes.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+    }
+}
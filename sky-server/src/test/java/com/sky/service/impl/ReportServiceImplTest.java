@@ -0,0 +1,155 @@
+package com.sky.service.impl;
+
+import com.sky.entity.BusinessDailyStat;
+import com.sky.mapper.BusinessDailyStatMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.properties.ReportProperties;
+import com.sky.report.SalesRanking;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReportServiceImplTest {
+
+    private static final LocalDate BEGIN = LocalDate.now().minusDays(30);
+
+    @Mock
+    private BusinessDailyStatMapper businessDailyStatMapper;
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private UserMapper userMapper;
+    @Mock
+    private SalesRanking salesRanking;
+    @Spy
+    private ReportProperties reportProperties = new ReportProperties();
+    @InjectMocks
+    private ReportServiceImpl reportService;
+
+    /**
+     * 汇总表缺少第5天和第11、12天：只补算这三天（两段），其它日期直接使用汇总表
+     */
+    @Test
+    void getDailyStatsComputesOnlyMissingDates() {
+        LocalDate end = BEGIN.plusDays(19);
+        List<BusinessDailyStat> stored = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            if (i != 5 && i != 11 && i != 12) {
+                stored.add(stat(BEGIN.plusDays(i), "10"));
+            }
+        }
+        when(businessDailyStatMapper.getByDateRange(BEGIN, end)).thenReturn(stored);
+        when(orderMapper.sumByOrderDate(any(), any())).thenReturn(new ArrayList<>());
+        when(userMapper.countByCreateDate(any(), any())).thenReturn(new ArrayList<>());
+
+        List<BusinessDailyStat> stats = reportService.getDailyStats(BEGIN, end);
+
+        assertEquals(20, stats.size());
+        verify(orderMapper).sumByOrderDate(day(5), day(6));
+        verify(orderMapper).sumByOrderDate(day(11), day(13));
+        verify(orderMapper, times(2)).sumByOrderDate(any(), any());
+        verify(businessDailyStatMapper, times(2)).upsertBatch(anyList());
+        assertEquals(0, new BigDecimal("10").compareTo(stats.get(4).getTurnover()));
+        assertEquals(BEGIN.plusDays(5), stats.get(5).getStatDate());
+        assertEquals(0, BigDecimal.ZERO.compareTo(stats.get(5).getTurnover()));
+    }
+
+    /**
+     * 汇总表完整时不补算
+     */
+    @Test
+    void getDailyStatsSkipsComputeWhenComplete() {
+        LocalDate end = BEGIN.plusDays(2);
+        when(businessDailyStatMapper.getByDateRange(BEGIN, end)).thenReturn(Arrays.asList(
+                stat(BEGIN, "1"), stat(BEGIN.plusDays(1), "2"), stat(end, "3")));
+
+        assertEquals(3, reportService.getDailyStats(BEGIN, end).size());
+        verify(orderMapper, never()).sumByOrderDate(any(), any());
+        verify(businessDailyStatMapper, never()).upsertBatch(anyList());
+    }
+
+    /**
+     * 完成的订单分布在第1天和第20天：返回这两天由调用方统一计算，重新计算时不计算中间的日期
+     */
+    @Test
+    void onOrdersCompletedRebuildsDistinctDates() {
+        List<Long> orderIds = Arrays.asList(1L, 2L, 3L);
+        when(orderMapper.getOrderDatesByIds(orderIds)).thenReturn(Arrays.asList(
+                BEGIN.plusDays(1), BEGIN.plusDays(20), BEGIN.plusDays(1), LocalDate.now()));
+        when(orderMapper.sumByOrderDate(any(), any())).thenReturn(new ArrayList<>());
+        when(userMapper.countByCreateDate(any(), any())).thenReturn(new ArrayList<>());
+
+        Set<LocalDate> dates = reportService.onOrdersCompleted(orderIds, 4);
+        assertEquals(new TreeSet<>(Arrays.asList(BEGIN.plusDays(1), BEGIN.plusDays(20))), dates);
+        verify(orderMapper, never()).sumByOrderDate(any(), any());
+
+        reportService.rebuild(dates);
+
+        verify(orderMapper).sumByOrderDate(day(1), day(2));
+        verify(orderMapper).sumByOrderDate(day(20), day(21));
+        verify(orderMapper, times(2)).sumByOrderDate(any(), any());
+    }
+
+    /**
+     * 在事务中完成订单：事务提交后才累加商品销量；只有部分订单修改成功时重新统计这些订单的下单日期
+     */
+    @Test
+    void onOrdersCompletedUpdatesRankingAfterCommit() {
+        List<Long> orderIds = Arrays.asList(1L, 2L);
+        LocalDate today = LocalDate.now();
+        when(orderMapper.getOrderDatesByIds(orderIds)).thenReturn(Arrays.asList(today, today.minusDays(40)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            reportService.onOrdersCompleted(orderIds, 2);
+            reportService.onOrdersCompleted(orderIds, 1);
+            verify(salesRanking, never()).increment(anyList());
+            verify(salesRanking, never()).rebuild(anyCollection());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(salesRanking).increment(orderIds);
+        verify(salesRanking).rebuild(Arrays.asList(today, today.minusDays(40)));
+    }
+
+    private static LocalDateTime day(int offset) {
+        return BEGIN.plusDays(offset).atStartOfDay();
+    }
+
+    private static BusinessDailyStat stat(LocalDate date, String turnover) {
+        return BusinessDailyStat.builder()
+                .statDate(date)
+                .turnover(new BigDecimal(turnover))
+                .orderCount(1)
+                .validOrderCount(1)
+                .newUserCount(0)
+                .build();
+    }
+}
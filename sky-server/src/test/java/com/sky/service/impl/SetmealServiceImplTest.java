@@ -0,0 +1,128 @@
+package com.sky.service.impl;
+
+import com.sky.constant.StatusConstant;
+import com.sky.dto.SetmealDTO;
+import com.sky.entity.Setmeal;
+import com.sky.entity.SetmealDish;
+import com.sky.exception.DeletionNotAllowedException;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealDishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.report.WorkspaceCounter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SetmealServiceImplTest {
+
+    @Mock
+    private SetmealDishMapper setmealDishMapper;
+    @Mock
+    private SetmealMapper setmealMapper;
+    @Mock
+    private DishMapper dishMapper;
+    @Mock
+    private WorkspaceCounter workspaceCounter;
+    @InjectMocks
+    private SetmealServiceImpl setmealService;
+
+    /**
+     * 批量删除1、10、200个套餐，执行的sql语句数量相同：查询起售数量、删除套餐、删除套餐菜品关系
+     */
+    @Test
+    void deleteBatchUsesConstantStatementCount() {
+        for (int size : new int[]{1, 10, 200}) {
+            List<Long> ids = LongStream.rangeClosed(1, size).boxed().collect(Collectors.toList());
+            when(setmealMapper.countByIdsAndStatus(ids, StatusConstant.ENABLE)).thenReturn(0);
+
+            setmealService.deleteBatch(ids);
+
+            assertEquals(3, statements());
+            verify(setmealMapper).deleteByIds(ids);
+            verify(setmealDishMapper).deleteBySetmealIds(ids);
+            clearInvocations(setmealMapper, setmealDishMapper);
+        }
+    }
+
+    /**
+     * 存在起售中的套餐时只执行一条查询，不删除任何数据
+     */
+    @Test
+    void deleteBatchRejectsSetmealOnSale() {
+        List<Long> ids = LongStream.rangeClosed(1, 200).boxed().collect(Collectors.toList());
+        when(setmealMapper.countByIdsAndStatus(ids, StatusConstant.ENABLE)).thenReturn(1);
+
+        assertThrows(DeletionNotAllowedException.class, () -> setmealService.deleteBatch(ids));
+        assertEquals(1, statements());
+        verify(setmealDishMapper, never()).deleteBySetmealIds(anyList());
+    }
+
+    /**
+     * 只有套餐菜品关系变化时，套餐表只更新修改时间、修改人
+     */
+    @Test
+    void setmealDishOnlyChangeTouchesSetmeal() {
+        when(setmealMapper.getById(1L)).thenReturn(Setmeal.builder().id(1L).name("双人套餐")
+                .price(new BigDecimal("60.00")).build());
+        when(setmealDishMapper.getBySetmealId(1L)).thenReturn(new ArrayList<>(Collections.singletonList(
+                SetmealDish.builder().id(3L).setmealId(1L).dishId(11L).name("宫保鸡丁").copies(1).build())));
+        SetmealDTO setmealDTO = new SetmealDTO();
+        setmealDTO.setId(1L);
+        setmealDTO.setName("双人套餐");
+        setmealDTO.setPrice(new BigDecimal("60"));
+        setmealDTO.setSetmealDishes(new ArrayList<>(Collections.singletonList(
+                SetmealDish.builder().dishId(11L).name("宫保鸡丁").copies(2).build())));
+
+        assertTrue(setmealService.update(setmealDTO));
+
+        ArgumentCaptor<Setmeal> updated = ArgumentCaptor.forClass(Setmeal.class);
+        verify(setmealMapper).update(updated.capture());
+        assertEquals(Setmeal.builder().id(1L).build(), updated.getValue());
+        verify(setmealDishMapper).updateBatch(anyList());
+        verify(workspaceCounter, never()).setmealChanged();
+    }
+
+    /**
+     * 修改时起售套餐，重新统计工作台的套餐计数
+     */
+    @Test
+    void statusChangeRecountsWorkspace() {
+        when(setmealMapper.getById(1L)).thenReturn(Setmeal.builder().id(1L).name("双人套餐").status(StatusConstant.DISABLE).build());
+        when(setmealDishMapper.getBySetmealId(1L)).thenReturn(new ArrayList<>());
+        SetmealDTO setmealDTO = new SetmealDTO();
+        setmealDTO.setId(1L);
+        setmealDTO.setName("双人套餐");
+        setmealDTO.setStatus(StatusConstant.ENABLE);
+
+        assertTrue(setmealService.update(setmealDTO));
+        verify(setmealMapper).update(any(Setmeal.class));
+        verify(workspaceCounter).setmealChanged();
+    }
+
+    private int statements() {
+        return mockingDetails(setmealMapper).getInvocations().size()
+                + mockingDetails(setmealDishMapper).getInvocations().size();
+    }
+}
@@ -0,0 +1,100 @@
+package com.sky.service.impl;
+
+import com.sky.cache.ProductSnapshot;
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.context.BaseContext;
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.mapper.ShoppingCartMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ShoppingCartServiceImplTest {
+
+    @Mock
+    private ShoppingCartMapper shoppingCartMapper;
+    @Mock
+    private ProductSnapshotCache productSnapshotCache;
+    @InjectMocks
+    private ShoppingCartServiceImpl shoppingCartService;
+
+    @BeforeEach
+    void setUp() {
+        BaseContext.setCurrentId(7L);
+        when(shoppingCartMapper.list(any())).thenReturn(new ArrayList<>());
+    }
+
+    @AfterEach
+    void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    /**
+     * 首次加购从快照中复制名称、图片、价格
+     */
+    @Test
+    void addCopiesSnapshot() {
+        when(productSnapshotCache.getDish(11L)).thenReturn(new ProductSnapshot(11L, "宫保鸡丁", "a.png",
+                new BigDecimal("38"), StatusConstant.ENABLE));
+
+        shoppingCartService.addShoppingCart(dish(11L));
+
+        ArgumentCaptor<ShoppingCart> inserted = ArgumentCaptor.forClass(ShoppingCart.class);
+        verify(shoppingCartMapper).insert(inserted.capture());
+        assertEquals("宫保鸡丁", inserted.getValue().getName());
+        assertEquals(new BigDecimal("38"), inserted.getValue().getAmount());
+        assertEquals(1, inserted.getValue().getNumber());
+    }
+
+    /**
+     * 菜品不存在时拒绝加购
+     */
+    @Test
+    void addRejectsMissingDish() {
+        ShoppingCartBusinessException e = assertThrows(ShoppingCartBusinessException.class,
+                () -> shoppingCartService.addShoppingCart(dish(11L)));
+
+        assertEquals(MessageConstant.PRODUCT_NOT_AVAILABLE, e.getMessage());
+        verify(shoppingCartMapper, never()).insert(any());
+    }
+
+    /**
+     * 套餐已停售时拒绝加购
+     */
+    @Test
+    void addRejectsDisabledSetmeal() {
+        when(productSnapshotCache.getSetmeal(21L)).thenReturn(new ProductSnapshot(21L, "双人套餐", "b.png",
+                new BigDecimal("60"), StatusConstant.DISABLE));
+        ShoppingCartDTO dto = new ShoppingCartDTO();
+        dto.setSetmealId(21L);
+
+        assertThrows(ShoppingCartBusinessException.class, () -> shoppingCartService.addShoppingCart(dto));
+        verify(shoppingCartMapper, never()).insert(any());
+    }
+
+    private static ShoppingCartDTO dish(Long dishId) {
+        ShoppingCartDTO dto = new ShoppingCartDTO();
+        dto.setDishId(dishId);
+        return dto;
+    }
+}
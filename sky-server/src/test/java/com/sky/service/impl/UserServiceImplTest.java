@@ -0,0 +1,161 @@
+package com.sky.service.impl;
+
+import com.sky.dto.UserLoginDTO;
+import com.sky.entity.User;
+import com.sky.mapper.UserMapper;
+import com.sky.properties.UserLoginProperties;
+import com.sky.properties.WeChatProperties;
+import com.sky.report.WorkspaceCounter;
+import com.sky.utils.HttpClientUtil;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 用本地的HTTP服务替代微信接口，每次code换取openid耗时200毫秒
+ */
+class UserServiceImplTest {
+
+    private static final long WX_LATENCY_MILLIS = 200;
+    private static final int POOL_SIZE = 16;
+
+    static {
+        //服务端分开写响应头和响应体，关闭Nagle算法，避免与客户端的延迟确认叠加
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private ThreadPoolTaskExecutor wxLoginExecutor;
+
+    private final UserMapper userMapper = mock(UserMapper.class);
+    private final AtomicLong ids = new AtomicLong();
+    private UserServiceImpl userService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/sns/jscode2session", exchange -> {
+            //js_code=<code>时返回openid o-<code>
+            String code = null;
+            for (String parameter : exchange.getRequestURI().getQuery().split("&")) {
+                if (parameter.startsWith("js_code=")) {
+                    code = parameter.substring("js_code=".length());
+                }
+            }
+            try {
+                Thread.sleep(WX_LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("{\"openid\":\"o-" + code + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(POOL_SIZE * 2));
+        server.start();
+
+        PoolingHttpClientConnectionManager manager = HttpClientUtil.createConnectionManager(POOL_SIZE * 2, POOL_SIZE * 2);
+        httpClient = HttpClientUtil.createHttpClient(manager, 5000, 30000, 30000);
+        HttpClientUtil.init(httpClient, manager);
+
+        UserLoginProperties userLoginProperties = new UserLoginProperties();
+        userLoginProperties.setWxLoginUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/sns/jscode2session");
+        wxLoginExecutor = new ThreadPoolTaskExecutor();
+        wxLoginExecutor.setCorePoolSize(POOL_SIZE);
+        wxLoginExecutor.setMaxPoolSize(POOL_SIZE);
+        wxLoginExecutor.setQueueCapacity(1000);
+        wxLoginExecutor.initialize();
+
+        doAnswer(invocation -> {
+            invocation.<User>getArgument(0).setId(ids.incrementAndGet());
+            return null;
+        }).when(userMapper).insert(any(User.class));
+
+        userService = new UserServiceImpl();
+        ReflectionTestUtils.setField(userService, "weChatProperties", new WeChatProperties());
+        ReflectionTestUtils.setField(userService, "userMapper", userMapper);
+        ReflectionTestUtils.setField(userService, "workspaceCounter", mock(WorkspaceCounter.class));
+        ReflectionTestUtils.setField(userService, "userLoginProperties", userLoginProperties);
+        ReflectionTestUtils.setField(userService, "wxLoginExecutor", wxLoginExecutor);
+        userService.init();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        wxLoginExecutor.shutdown();
+        HttpClientUtil.init(null, null);
+        httpClient.close();
+        server.stop(0);
+    }
+
+    /**
+     * 64个用户同时登录：调用方线程不等待微信接口立即返回，登录在微信登录线程池中并行完成
+     */
+    @Test
+    void asyncLoginReleasesCallerThread() {
+        long start = System.nanoTime();
+        List<CompletableFuture<User>> futures = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            futures.add(userService.wxLoginAsync(login("c" + i)));
+        }
+        long submitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals("o-c" + i, futures.get(i).join().getOpenid());
+        }
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        //依次调用需要 64 * 200ms，线程池中16个线程并行约 4 * 200ms
+        assertTrue(submitMillis < WX_LATENCY_MILLIS, "提交耗时：" + submitMillis);
+        assertTrue(totalMillis < 64 * WX_LATENCY_MILLIS / 2, "完成耗时：" + totalMillis);
+    }
+
+    /**
+     * 老用户再次登录命中openid缓存，不再查询用户表
+     */
+    @Test
+    void repeatLoginSkipsUserQuery() {
+        User first = userService.wxLoginAsync(login("c1")).join();
+        User second = userService.wxLoginAsync(login("c1")).join();
+        User third = userService.wxLogin(login("c1"));
+
+        assertEquals(first.getId(), second.getId());
+        assertEquals(first.getId(), third.getId());
+        assertEquals("o-c1", third.getOpenid());
+        verify(userMapper, times(1)).getByOpenid(anyString());
+        verify(userMapper, times(1)).insert(any(User.class));
+    }
+
+    private static UserLoginDTO login(String code) {
+        UserLoginDTO userLoginDTO = new UserLoginDTO();
+        userLoginDTO.setCode(code);
+        return userLoginDTO;
+    }
+}
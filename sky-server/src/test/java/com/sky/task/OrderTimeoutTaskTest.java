@@ -0,0 +1,249 @@
+package com.sky.task;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import com.sky.report.WorkspaceCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderTimeoutTaskTest {
+
+    private static final String KEY = new OrderProperties().getTimeoutKey();
+    private static final String INIT_KEY = KEY + ":init";
+
+    //内存中的redis：超时队列（订单id -> 到期时间毫秒）和字符串
+    private final Map<String, Double> queue = new ConcurrentHashMap<>();
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+
+    private final OrderMapper orderMapper = mock(OrderMapper.class);
+    private final WorkspaceCounter workspaceCounter = mock(WorkspaceCounter.class);
+    private final OrderProperties orderProperties = new OrderProperties();
+
+    @BeforeEach
+    void setUp() {
+        when(orderMapper.updateStatusByIds(anyList(), eq(Orders.PENDING_PAYMENT), any(Orders.class)))
+                .thenAnswer(invocation -> invocation.<List<Long>>getArgument(0).size());
+    }
+
+    /**
+     * 时间轮转到到期的格子时取消订单并移出超时队列，未到期的订单不受影响
+     */
+    @Test
+    void tickCancelsExpiredOrders() {
+        OrderTimeoutTask task = task();
+        LocalDateTime expiredOrderTime = LocalDateTime.now().minusMinutes(orderProperties.getPayTimeoutMinutes()).minusSeconds(3);
+        task.schedule(1L, expiredOrderTime);
+        task.schedule(2L, LocalDateTime.now().minusMinutes(orderProperties.getPayTimeoutMinutes()).plusMinutes(5));
+
+        task.tick();
+
+        ArgumentCaptor<Orders> captor = ArgumentCaptor.forClass(Orders.class);
+        verify(orderMapper).updateStatusByIds(eq(Collections.singletonList(1L)), eq(Orders.PENDING_PAYMENT), captor.capture());
+        assertEquals(Orders.CANCELLED, captor.getValue().getStatus());
+        verify(workspaceCounter).ordersStatusChanged(Collections.singletonList(1L), Orders.PENDING_PAYMENT, Orders.CANCELLED, 1);
+        assertFalse(queue.containsKey("1"));
+        assertTrue(queue.containsKey("2"));
+        assertTrue(deadlines(task).containsKey(2L));
+
+        //已取消的订单不会再次取消
+        task.tick();
+        verify(orderMapper, times(1)).updateStatusByIds(anyList(), anyInt(), any());
+    }
+
+    /**
+     * 取消登记后订单从超时队列和时间轮中移除，到期后不会被取消
+     */
+    @Test
+    void unscheduleRemovesOrder() {
+        OrderTimeoutTask task = task();
+        task.schedule(1L, LocalDateTime.now().minusMinutes(orderProperties.getPayTimeoutMinutes()).minusSeconds(3));
+
+        task.unschedule(1L);
+        task.tick();
+
+        assertTrue(queue.isEmpty());
+        assertNull(deadlines(task).get(1L));
+        verify(orderMapper, never()).updateStatusByIds(anyList(), anyInt(), any());
+    }
+
+    /**
+     * 重启后时间轮为空：扫描redis取消重启期间已过期的订单，把即将到期的订单重新加载到时间轮，
+     * 超出预加载范围的订单留在redis中等待后续扫描
+     */
+    @Test
+    void sweepRecoversOrdersAfterRestart() {
+        values.put(INIT_KEY, "1");
+        long now = System.currentTimeMillis();
+        queue.put("1", (double) (now - 60_000));
+        queue.put("2", (double) (now + 60_000));
+        queue.put("3", (double) (now + (orderProperties.getTimeoutLoadAheadSeconds() + 60) * 1000L));
+        OrderTimeoutTask task = task();
+
+        task.sweep();
+
+        verify(orderMapper).updateStatusByIds(eq(Collections.singletonList(1L)), eq(Orders.PENDING_PAYMENT), any(Orders.class));
+        assertEquals(Arrays.asList("2", "3"), sorted(queue.keySet()));
+        assertEquals(Collections.singleton(2L), deadlines(task).keySet());
+        verify(orderMapper, never()).getPageByStatusAndOrderTimeLT(any(), any(), anyLong(), anyInt());
+    }
+
+    /**
+     * 大量订单同时过期：按批次大小分批修改状态，每批一条update
+     */
+    @Test
+    void sweepCancelsExpiredOrdersInBatches() {
+        orderProperties.setTimeoutBatchSize(2);
+        values.put(INIT_KEY, "1");
+        long now = System.currentTimeMillis();
+        for (long id = 1; id <= 5; id++) {
+            queue.put(String.valueOf(id), (double) (now - id * 1000));
+        }
+
+        task().sweep();
+
+        ArgumentCaptor<List<Long>> captor = ArgumentCaptor.forClass(List.class);
+        verify(orderMapper, times(3)).updateStatusByIds(captor.capture(), eq(Orders.PENDING_PAYMENT), any(Orders.class));
+        assertEquals(Arrays.asList(2, 2, 1), Arrays.asList(captor.getAllValues().get(0).size(),
+                captor.getAllValues().get(1).size(), captor.getAllValues().get(2).size()));
+        assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * 首次运行按主键分批导入待付款订单，全部导入后才标记已导入；中途失败时下次扫描重新导入
+     */
+    @Test
+    void importIsMarkedOnlyAfterSuccess() {
+        orderProperties.setTimeoutBatchSize(2);
+        LocalDateTime orderTime = LocalDateTime.now();
+        when(orderMapper.getPageByStatusAndOrderTimeLT(eq(Orders.PENDING_PAYMENT), any(), eq(0L), eq(2)))
+                .thenReturn(Arrays.asList(order(1L, orderTime), order(2L, orderTime)));
+        when(orderMapper.getPageByStatusAndOrderTimeLT(eq(Orders.PENDING_PAYMENT), any(), eq(2L), eq(2)))
+                .thenThrow(new RuntimeException("connection reset"))
+                .thenReturn(Collections.singletonList(order(3L, orderTime)));
+        OrderTimeoutTask task = task();
+
+        task.sweep();
+        assertFalse(values.containsKey(INIT_KEY));
+        assertEquals(Arrays.asList("1", "2"), sorted(queue.keySet()));
+
+        task.sweep();
+        assertEquals("1", values.get(INIT_KEY));
+        assertEquals(Arrays.asList("1", "2", "3"), sorted(queue.keySet()));
+        long deadline = orderTime.plusMinutes(orderProperties.getPayTimeoutMinutes())
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        assertEquals(deadline, queue.get("3").longValue());
+
+        //已导入后不再查询
+        task.sweep();
+        verify(orderMapper, times(4)).getPageByStatusAndOrderTimeLT(any(), any(), anyLong(), anyInt());
+    }
+
+    private static Orders order(Long id, LocalDateTime orderTime) {
+        return Orders.builder().id(id).orderTime(orderTime).build();
+    }
+
+    private static List<String> sorted(Set<String> members) {
+        List<String> list = new ArrayList<>(members);
+        Collections.sort(list);
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Long, Long> deadlines(OrderTimeoutTask task) {
+        return (Map<Long, Long>) ReflectionTestUtils.getField(task, "deadlines");
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private OrderTimeoutTask task() {
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        ZSetOperations<String, String> zSetOperations = mock(ZSetOperations.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(stringRedisTemplate.hasKey(anyString())).thenAnswer(invocation -> values.containsKey(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> values.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(anyString(), anyString());
+
+        when(zSetOperations.add(anyString(), anyString(), anyDouble())).thenAnswer(invocation ->
+                queue.put(invocation.getArgument(1), invocation.getArgument(2)) == null);
+        when(zSetOperations.add(anyString(), anySet())).thenAnswer(invocation -> {
+            Set<ZSetOperations.TypedTuple<String>> tuples = invocation.getArgument(1);
+            tuples.forEach(tuple -> queue.put(tuple.getValue(), tuple.getScore()));
+            return (long) tuples.size();
+        });
+        when(zSetOperations.remove(anyString(), any())).thenAnswer(invocation -> {
+            long removed = 0;
+            for (int i = 1; i < invocation.getArguments().length; i++) {
+                removed += queue.remove(invocation.getArgument(i)) == null ? 0 : 1;
+            }
+            return removed;
+        });
+        when(zSetOperations.rangeByScore(anyString(), anyDouble(), anyDouble(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            double min = invocation.getArgument(1);
+            double max = invocation.getArgument(2);
+            Set<String> result = new LinkedHashSet<>();
+            queue.entrySet().stream()
+                    .filter(entry -> entry.getValue() >= min && entry.getValue() <= max)
+                    .sorted(Map.Entry.comparingByValue())
+                    .skip(invocation.<Long>getArgument(3))
+                    .limit(invocation.<Long>getArgument(4))
+                    .forEach(entry -> result.add(entry.getKey()));
+            return result;
+        });
+        when(zSetOperations.rangeByScoreWithScores(anyString(), anyDouble(), anyDouble())).thenAnswer(invocation -> {
+            double min = invocation.getArgument(1);
+            double max = invocation.getArgument(2);
+            Set<ZSetOperations.TypedTuple<String>> result = new LinkedHashSet<>();
+            queue.entrySet().stream()
+                    .filter(entry -> entry.getValue() >= min && entry.getValue() <= max)
+                    .forEach(entry -> result.add(new DefaultTypedTuple<>(entry.getKey(), entry.getValue())));
+            return result;
+        });
+
+        OrderTimeoutTask task = new OrderTimeoutTask();
+        ReflectionTestUtils.setField(task, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(task, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(task, "orderProperties", orderProperties);
+        ReflectionTestUtils.setField(task, "workspaceCounter", workspaceCounter);
+        //时间轮从5秒前开始转动，已过期的订单放入的下一格在本次tick范围内
+        ReflectionTestUtils.setField(task, "lastTick", System.currentTimeMillis() / 1000 - 5);
+        return task;
+    }
+}
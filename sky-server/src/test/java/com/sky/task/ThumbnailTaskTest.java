@@ -0,0 +1,50 @@
+package com.sky.task;
+
+import com.sky.mapper.ImageThumbnailMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ThumbnailTaskTest {
+
+    @Mock
+    private ImageThumbnailMapper imageThumbnailMapper;
+    @InjectMocks
+    private ThumbnailTask thumbnailTask;
+
+    /**
+     * 按图片地址中的对象名称一次查询，返回已生成缩略图的图片地址
+     */
+    @Test
+    void generatedMatchesByObjectName() {
+        String a = "http://minio:9000/sky-take-out/a.png";
+        String b = "http://minio:9000/sky-take-out/b.jpg";
+        when(imageThumbnailMapper.getByObjectNames(new HashSet<>(Arrays.asList("a.png", "b.jpg"))))
+                .thenReturn(Collections.singletonList("a.png"));
+
+        assertEquals(Collections.singleton(a), thumbnailTask.generated(Arrays.asList(a, b, null, a)));
+    }
+
+    /**
+     * 没有图片时不查询
+     */
+    @Test
+    void generatedSkipsQueryWithoutImages() {
+        assertTrue(thumbnailTask.generated(Arrays.asList(null, "")).isEmpty());
+        verify(imageThumbnailMapper, never()).getByObjectNames(any());
+    }
+}
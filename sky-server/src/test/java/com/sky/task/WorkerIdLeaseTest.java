@@ -0,0 +1,139 @@
+package com.sky.task;
+
+import com.sky.properties.OrderProperties;
+import com.sky.utils.SnowflakeIdGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WorkerIdLeaseTest {
+
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 多个节点同时启动，租用到的机器id各不相同
+     */
+    @Test
+    void nodesLeaseDistinctWorkerIds() {
+        WorkerIdLease first = lease();
+        WorkerIdLease second = lease();
+        //两个节点拿到相同的起始位置
+        sequence.set(0);
+        long firstId = first.acquire();
+        sequence.set(0);
+        long secondId = second.acquire();
+
+        assertNotEquals(firstId, secondId);
+    }
+
+    /**
+     * 所有机器id都被占用时启动失败，不退回默认的机器id
+     */
+    @Test
+    void acquireFailsWhenAllWorkerIdsAreTaken() {
+        for (long id = 0; id <= SnowflakeIdGenerator.MAX_WORKER_ID; id++) {
+            redis.put("sky:order:worker:" + id, "other");
+        }
+
+        assertThrows(IllegalStateException.class, () -> lease().acquire());
+    }
+
+    /**
+     * 续期时发现机器id已被其它节点占用，重新租用并通知订单号生成器切换
+     */
+    @Test
+    void renewSwitchesWorkerIdWhenLeaseIsTaken() {
+        WorkerIdLease lease = lease();
+        long oldId = lease.acquire();
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(oldId);
+        lease.onChange(generator::setWorkerId);
+
+        //租约过期后被其它节点占用
+        redis.put("sky:order:worker:" + oldId, "other");
+        lease.renew();
+
+        assertNotEquals(oldId, generator.getWorkerId());
+        assertEquals("other", redis.get("sky:order:worker:" + oldId));
+        assertTrue(redis.containsKey("sky:order:worker:" + generator.getWorkerId()));
+    }
+
+    /**
+     * 租约过期但没有被占用时继续使用原机器id
+     */
+    @Test
+    void renewKeepsWorkerIdWhenLeaseExpiredButFree() {
+        WorkerIdLease lease = lease();
+        long id = lease.acquire();
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(id);
+        lease.onChange(generator::setWorkerId);
+
+        redis.remove("sky:order:worker:" + id);
+        lease.renew();
+
+        assertEquals(id, generator.getWorkerId());
+        assertTrue(redis.containsKey("sky:order:worker:" + id));
+    }
+
+    /**
+     * 停止时只释放自己的租约
+     */
+    @Test
+    void releaseDeletesOwnLease() {
+        WorkerIdLease lease = lease();
+        long id = lease.acquire();
+
+        lease.release();
+
+        assertFalse(redis.containsKey("sky:order:worker:" + id));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private WorkerIdLease lease() {
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.increment(anyString())).thenAnswer(invocation -> sequence.incrementAndGet());
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenAnswer(invocation -> redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        //续期脚本和释放脚本：key属于当前节点时返回1
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(invocation -> {
+            String key = ((List<String>) invocation.getArgument(1)).get(0);
+            String token = invocation.getArgument(2);
+            if (!token.equals(redis.get(key))) {
+                return 0L;
+            }
+            redis.remove(key);
+            return 1L;
+        });
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any())).thenAnswer(invocation -> {
+            String key = ((List<String>) invocation.getArgument(1)).get(0);
+            return ((String) invocation.getArgument(2)).equals(redis.get(key)) ? 1L : 0L;
+        });
+
+        WorkerIdLease lease = new WorkerIdLease();
+        ReflectionTestUtils.setField(lease, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(lease, "orderProperties", new OrderProperties());
+        return lease;
+    }
+}
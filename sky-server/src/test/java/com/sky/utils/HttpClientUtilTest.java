@@ -0,0 +1,121 @@
+package com.sky.utils;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用本地的HTTP服务替代微信接口，按客户端地址（端口）统计服务端收到的TCP连接数
+ */
+class HttpClientUtilTest {
+
+    private static final int MAX_PER_ROUTE = 4;
+
+    static {
+        //服务端分开写响应头和响应体，关闭Nagle算法，避免与客户端的延迟确认叠加，每个请求多等几十毫秒
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private HttpServer server;
+    private String url;
+
+    //服务端看到的客户端地址，每个TCP连接一个
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private CloseableHttpClient httpClient;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/sns/jscode2session", exchange -> {
+            connections.add(exchange.getRemoteAddress());
+            requests.incrementAndGet();
+            try (InputStream in = exchange.getRequestBody()) {
+                while (in.read() != -1) {
+                    //读完请求体，连接才能被复用
+                }
+            }
+            byte[] body = "{\"openid\":\"o-1\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(MAX_PER_ROUTE * 2));
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/sns/jscode2session";
+
+        PoolingHttpClientConnectionManager manager = HttpClientUtil.createConnectionManager(MAX_PER_ROUTE * 2, MAX_PER_ROUTE);
+        httpClient = HttpClientUtil.createHttpClient(manager, 5000, 30000, 30000);
+        HttpClientUtil.init(httpClient, manager);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        HttpClientUtil.init(null, null);
+        httpClient.close();
+        server.stop(0);
+    }
+
+    /**
+     * 依次发送200个GET、POST请求，全部复用同一个TCP连接
+     */
+    @Test
+    void sequentialRequestsReuseOneConnection() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            assertEquals("{\"openid\":\"o-1\"}", HttpClientUtil.doGet(url, Collections.singletonMap("js_code", "c" + i)));
+            assertEquals("{\"openid\":\"o-1\"}", HttpClientUtil.doPost4Json(url, Collections.singletonMap("js_code", "c" + i)));
+        }
+
+        assertEquals(200, requests.get());
+        assertEquals(1, connections.size());
+    }
+
+    /**
+     * 16个线程并发发送800个请求，新建的连接数不超过每个目标地址的连接池上限
+     */
+    @Test
+    void concurrentRequestsAreBoundedByPool() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 800; i++) {
+                futures.add(executor.submit(() -> HttpClientUtil.doGet(url, null)));
+            }
+            for (Future<String> future : futures) {
+                assertEquals("{\"openid\":\"o-1\"}", future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(800, requests.get());
+        assertTrue(connections.size() <= MAX_PER_ROUTE, "连接数：" + connections.size());
+        //全部请求结束后连接都已归还连接池，没有等待连接的请求
+        String stats = HttpClientUtil.stats();
+        assertTrue(stats.contains("使用中：0，"), stats);
+        assertTrue(stats.contains("等待中：0，"), stats);
+        assertTrue(stats.endsWith("最大：" + MAX_PER_ROUTE * 2), stats);
+    }
+}
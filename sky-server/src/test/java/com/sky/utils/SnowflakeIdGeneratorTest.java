@@ -0,0 +1,84 @@
+package com.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeIdGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 500_000;
+
+    /**
+     * 两个节点（机器id不同）各8个线程并发生成共800万个id，没有重复，每个线程内单调递增
+     */
+    @Test
+    void concurrentIdsAcrossNodesAreUnique() throws Exception {
+        SnowflakeIdGenerator[] nodes = {new SnowflakeIdGenerator(1), new SnowflakeIdGenerator(2)};
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS * nodes.length);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS * nodes.length; t++) {
+                SnowflakeIdGenerator generator = nodes[t % nodes.length];
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long[] ids = new long[IDS_PER_THREAD];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+
+            long[] all = new long[THREADS * nodes.length * IDS_PER_THREAD];
+            int offset = 0;
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get(60, TimeUnit.SECONDS);
+                for (int i = 1; i < ids.length; i++) {
+                    assertTrue(ids[i] > ids[i - 1], "单个线程内id必须单调递增");
+                }
+                System.arraycopy(ids, 0, all, offset, ids.length);
+                offset += ids.length;
+            }
+
+            Arrays.sort(all);
+            for (int i = 1; i < all.length; i++) {
+                assertNotEquals(all[i - 1], all[i], "id重复");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 切换机器id后生成的id带新的机器id
+     */
+    @Test
+    void workerIdIsEncodedAndSwitchable() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5);
+        assertEquals(5, (generator.nextId() >> 12) & SnowflakeIdGenerator.MAX_WORKER_ID);
+
+        generator.setWorkerId(1023);
+        assertEquals(1023, (generator.nextId() >> 12) & SnowflakeIdGenerator.MAX_WORKER_ID);
+    }
+
+    @Test
+    void invalidWorkerIdIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(1024));
+    }
+}
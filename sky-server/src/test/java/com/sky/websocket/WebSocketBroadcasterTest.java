@@ -0,0 +1,68 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class WebSocketBroadcasterTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Spy
+    private WebSocketProperties webSocketProperties = new WebSocketProperties();
+    @InjectMocks
+    private WebSocketBroadcaster webSocketBroadcaster;
+
+    @BeforeEach
+    void setUp() {
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    /**
+     * 在事务中推送：事务提交后才广播
+     */
+    @Test
+    void pushIsSentAfterCommit() {
+        webSocketBroadcaster.push(WebSocketBroadcaster.NEW_ORDER, 1L, "订单号：1");
+        verifyNoInteractions(stringRedisTemplate);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        verify(stringRedisTemplate).convertAndSend(eq(webSocketProperties.getChannel()), contains("订单号：1"));
+    }
+
+    /**
+     * 事务回滚时不推送
+     */
+    @Test
+    void rolledBackPushIsDropped() {
+        webSocketBroadcaster.push(WebSocketBroadcaster.NEW_ORDER, 1L, "订单号：1");
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verify(stringRedisTemplate, never()).convertAndSend(anyString(), anyString());
+    }
+}
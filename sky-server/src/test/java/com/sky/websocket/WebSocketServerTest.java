@@ -0,0 +1,116 @@
+package com.sky.websocket;
+
+import com.sky.cache.VerifiedTokenCache;
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.properties.WebSocketProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.websocket.CloseReason;
+import javax.websocket.HandshakeResponse;
+import javax.websocket.Session;
+import javax.websocket.server.HandshakeRequest;
+import javax.websocket.server.ServerEndpointConfig;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebSocketServerTest {
+
+    private static final String VALID = "valid-token";
+
+    private final JwtProperties jwtProperties = new JwtProperties();
+    private final VerifiedTokenCache verifiedTokenCache = mock(VerifiedTokenCache.class);
+    private final AdminHandshakeConfigurator configurator = new AdminHandshakeConfigurator();
+
+    @BeforeEach
+    void setUp() {
+        jwtProperties.setAdminSecretKey("itcast");
+        jwtProperties.setAdminTokenName("token");
+        configurator.setJwtProperties(jwtProperties);
+        configurator.setVerifiedTokenCache(verifiedTokenCache);
+        new WebSocketServer().setWebSocketProperties(new WebSocketProperties());
+        when(verifiedTokenCache.verify(eq("itcast"), anyString(), eq(JwtClaimsConstant.EMP_ID))).thenAnswer(invocation -> {
+            if (!VALID.equals(invocation.getArgument(1))) {
+                throw new IllegalStateException("令牌无效");
+            }
+            return 7L;
+        });
+    }
+
+    /**
+     * 查询参数或请求头中的有效令牌通过校验，员工id保存到连接属性中
+     */
+    @Test
+    void handshakeWithValidTokenStoresEmpId() {
+        assertEquals(7L, handshake(Collections.emptyMap(), params(VALID)).get(AdminHandshakeConfigurator.EMP_ID));
+        assertEquals(7L, handshake(Collections.singletonMap("token", Collections.singletonList(VALID)),
+                Collections.emptyMap()).get(AdminHandshakeConfigurator.EMP_ID));
+    }
+
+    /**
+     * 没有令牌、令牌无效时不保存员工id
+     */
+    @Test
+    void handshakeWithoutValidTokenStoresNothing() {
+        assertNull(handshake(Collections.emptyMap(), Collections.emptyMap()).get(AdminHandshakeConfigurator.EMP_ID));
+        assertNull(handshake(Collections.emptyMap(), params("forged")).get(AdminHandshakeConfigurator.EMP_ID));
+    }
+
+    /**
+     * 未通过令牌校验的连接被关闭，不接收推送；通过校验的连接接收推送
+     */
+    @Test
+    void onlyAuthenticatedSessionsAreRegistered() throws Exception {
+        int before = WebSocketServer.size();
+
+        Session anonymous = session("1", handshake(Collections.emptyMap(), params("forged")));
+        new WebSocketServer().onOpen(anonymous, "anonymous");
+        ArgumentCaptor<CloseReason> reason = ArgumentCaptor.forClass(CloseReason.class);
+        verify(anonymous).close(reason.capture());
+        assertEquals(CloseReason.CloseCodes.VIOLATED_POLICY, reason.getValue().getCloseCode());
+        assertEquals(before, WebSocketServer.size());
+
+        Session admin = session("2", handshake(Collections.emptyMap(), params(VALID)));
+        new WebSocketServer().onOpen(admin, "admin");
+        assertEquals(before + 1, WebSocketServer.size());
+        verify(admin, never()).close(any());
+
+        new WebSocketServer().onClose(admin, "admin");
+        new WebSocketServer().onClose(anonymous, "anonymous");
+        assertEquals(before, WebSocketServer.size());
+    }
+
+    private Map<String, Object> handshake(Map<String, List<String>> headers, Map<String, List<String>> parameters) {
+        ServerEndpointConfig sec = ServerEndpointConfig.Builder.create(WebSocketServer.class, "/ws/{sid}").build();
+        HandshakeRequest request = mock(HandshakeRequest.class);
+        when(request.getHeaders()).thenReturn(headers);
+        when(request.getParameterMap()).thenReturn(parameters);
+        configurator.modifyHandshake(sec, request, mock(HandshakeResponse.class));
+        return sec.getUserProperties();
+    }
+
+    private static Map<String, List<String>> params(String token) {
+        return Collections.singletonMap(AdminHandshakeConfigurator.TOKEN_PARAMETER, Collections.singletonList(token));
+    }
+
+    private static Session session(String id, Map<String, Object> userProperties) {
+        Session session = mock(Session.class);
+        when(session.getId()).thenReturn(id);
+        when(session.getUserProperties()).thenReturn(new HashMap<>(userProperties));
+        return session;
+    }
+}